@@ -0,0 +1,119 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.common;
+
+import java.time.Duration;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares FrameRateTimer with TimingWheelTimer for starting and stopping timers and for the work done at each frame
+ * with many live timers, as on a seed node with many connections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TimerBenchmark {
+    private static final Duration DELAY = Duration.ofHours(1);
+    private static final Runnable NO_OP = () -> {
+    };
+
+    @Param({"10000"})
+    public int numTimers;
+
+    // Live timers with periodic intervals between 1 and 60 sec
+    private FrameRateTimer[] frameRateTimers;
+    private TimingWheel timingWheel;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        frameRateTimers = new FrameRateTimer[numTimers];
+        // Expired tasks run on the ticking thread and reschedule themselves, so the number of timers stays constant
+        timingWheel = new TimingWheel(512, MasterTimer.FRAME_INTERVAL_MS, Runnable::run);
+        for (int i = 0; i < numTimers; i++) {
+            Duration interval = Duration.ofSeconds(1 + random.nextInt(60));
+            frameRateTimers[i] = new FrameRateTimer();
+            frameRateTimers[i].runPeriodically(interval, NO_OP);
+            schedulePeriodically(interval.toMillis());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (FrameRateTimer timer : frameRateTimers) {
+            timer.stop();
+        }
+    }
+
+    private void schedulePeriodically(long interval) {
+        timingWheel.schedule(interval, () -> schedulePeriodically(interval));
+    }
+
+    @Benchmark
+    public void frameRateTimerStartAndStop() {
+        Timer[] timers = new Timer[numTimers];
+        for (int i = 0; i < numTimers; i++) {
+            timers[i] = new FrameRateTimer().runLater(DELAY, NO_OP);
+        }
+        for (Timer timer : timers) {
+            timer.stop();
+        }
+    }
+
+    @Benchmark
+    public void timingWheelTimerStartAndStop() {
+        Timer[] timers = new Timer[numTimers];
+        for (int i = 0; i < numTimers; i++) {
+            timers[i] = new TimingWheelTimer().runLater(DELAY, NO_OP);
+        }
+        for (Timer timer : timers) {
+            timer.stop();
+        }
+    }
+
+    // Same work as the MasterTimer does at each frame
+    @Benchmark
+    public void frameRateTimerFrame() {
+        for (FrameRateTimer timer : frameRateTimers) {
+            timer.run();
+        }
+    }
+
+    @Benchmark
+    public void timingWheelFrame() {
+        timingWheel.tick();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Hashed timing wheel used by {@link TimingWheelTimer}. Entries are kept in a ring of buckets, each bucket covering
+ * one tick. Scheduling and cancelling an entry are O(1) and a tick only visits the entries of the current bucket.
+ * Entries with a delay longer than one revolution of the wheel are kept in their bucket until their remaining rounds
+ * are used up.
+ * Expired tasks are passed to the executor after the tick released the lock, so tasks can schedule new entries.
+ */
+class TimingWheel {
+    static final class Entry {
+        private final Runnable task;
+        private long remainingRounds;
+        private int bucket = -1;
+        private Entry prev;
+        private Entry next;
+
+        private Entry(Runnable task) {
+            this.task = task;
+        }
+    }
+
+    private final long tickMs;
+    private final Entry[] buckets;
+    private final int mask;
+    private final Executor executor;
+    // Index of the bucket processed at the last tick
+    private int cursor;
+    private int size;
+
+    TimingWheel(int numBuckets, long tickMs, Executor executor) {
+        checkArgument(numBuckets > 0 && Integer.bitCount(numBuckets) == 1, "numBuckets must be a power of 2");
+        checkArgument(tickMs > 0, "tickMs must be positive");
+        this.tickMs = tickMs;
+        this.buckets = new Entry[numBuckets];
+        this.mask = numBuckets - 1;
+        this.executor = executor;
+    }
+
+    long getTickMs() {
+        return tickMs;
+    }
+
+    /**
+     * Schedules the task to be executed at the first tick after the delay has passed. As part of the current tick has
+     * already passed, we count the ticks from the next tick on. So the task is never executed before the delay but
+     * up to one tick later.
+     */
+    synchronized Entry schedule(long delayMs, Runnable task) {
+        long ticks = (Math.max(0, delayMs) + tickMs - 1) / tickMs + 1;
+        Entry entry = new Entry(task);
+        entry.remainingRounds = (ticks - 1) / buckets.length;
+        entry.bucket = (int) ((cursor + ticks) & mask);
+        entry.next = buckets[entry.bucket];
+        if (entry.next != null)
+            entry.next.prev = entry;
+        buckets[entry.bucket] = entry;
+        size++;
+        return entry;
+    }
+
+    /**
+     * Removes the entry if it is still scheduled. Calling it for an expired or cancelled entry has no effect.
+     */
+    synchronized void cancel(Entry entry) {
+        if (entry.bucket >= 0)
+            unlink(entry);
+    }
+
+    /**
+     * Advances the wheel by one tick and executes the expired tasks.
+     */
+    void tick() {
+        List<Runnable> expired = new ArrayList<>();
+        synchronized (this) {
+            cursor = (cursor + 1) & mask;
+            Entry entry = buckets[cursor];
+            while (entry != null) {
+                Entry next = entry.next;
+                if (entry.remainingRounds == 0) {
+                    unlink(entry);
+                    expired.add(entry.task);
+                } else {
+                    entry.remainingRounds--;
+                }
+                entry = next;
+            }
+        }
+        expired.forEach(executor::execute);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.prev != null)
+            entry.prev.next = entry.next;
+        else
+            buckets[entry.bucket] = entry.next;
+        if (entry.next != null)
+            entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+        entry.bucket = -1;
+        size--;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.common;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.time.Duration;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+
+/**
+ * Alternative to {@link FrameRateTimer} for headless apps with many timers. All timers share a {@link TimingWheel}
+ * which is advanced with the same frame interval as the {@link MasterTimer}. Starting and stopping a timer is O(1)
+ * and each frame only visits the timers due in that frame, whereas the MasterTimer calls all timers at every frame
+ * and copies its listener set on every change.
+ * Activate it with UserThread.setTimerClass(TimingWheelTimer.class).
+ */
+@Slf4j
+public class TimingWheelTimer implements Timer {
+    // With 512 buckets one revolution of the wheel takes 51.2 sec, longer delays need multiple rounds.
+    private static final TimingWheel wheel = new TimingWheel(512, MasterTimer.FRAME_INTERVAL_MS, UserThread::execute);
+
+    static {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("TimingWheelTimer")
+                .setDaemon(true)
+                .build());
+        scheduler.scheduleAtFixedRate(wheel::tick, wheel.getTickMs(), wheel.getTickMs(), TimeUnit.MILLISECONDS);
+    }
+
+    private long interval;
+    private Runnable runnable;
+    private boolean isPeriodically;
+    private volatile boolean stopped;
+    @Nullable
+    private volatile TimingWheel.Entry entry;
+
+    public TimingWheelTimer() {
+    }
+
+    @Override
+    public Timer runLater(Duration delay, Runnable runnable) {
+        return start(delay, runnable, false);
+    }
+
+    @Override
+    public Timer runPeriodically(Duration interval, Runnable runnable) {
+        return start(interval, runnable, true);
+    }
+
+    @Override
+    public void stop() {
+        stopped = true;
+        TimingWheel.Entry entry = this.entry;
+        if (entry != null)
+            wheel.cancel(entry);
+    }
+
+    private Timer start(Duration interval, Runnable runnable, boolean isPeriodically) {
+        this.interval = interval.toMillis();
+        this.runnable = runnable;
+        this.isPeriodically = isPeriodically;
+        entry = wheel.schedule(this.interval, this::onExpired);
+        return this;
+    }
+
+    // Called on the user thread
+    private void onExpired() {
+        if (stopped)
+            return;
+
+        try {
+            runnable.run();
+        } catch (Throwable t) {
+            log.error("exception in TimingWheelTimer", t);
+            stop();
+            throw t;
+        }
+
+        if (isPeriodically && !stopped)
+            entry = wheel.schedule(interval, this::onExpired);
+        else
+            stopped = true;
+    }
+}
@@ -95,8 +95,14 @@ public class Config {
     public static final String TOR_STREAM_ISOLATION = "torStreamIsolation";
     public static final String MSG_THROTTLE_PER_SEC = "msgThrottlePerSec";
     public static final String MSG_THROTTLE_PER_10_SEC = "msgThrottlePer10Sec";
+    public static final String SEND_MSG_RATE_PER_SEC = "sendMsgRatePerSec";
+    public static final String SEND_MSG_BURST = "sendMsgBurst";
+    public static final String RECEIVE_MSG_RATE_PER_SEC = "receiveMsgRatePerSec";
+    public static final String RECEIVE_MSG_BURST = "receiveMsgBurst";
+    // Deprecated, replaced by SEND_MSG_RATE_PER_SEC and SEND_MSG_BURST
     public static final String SEND_MSG_THROTTLE_TRIGGER = "sendMsgThrottleTrigger";
     public static final String SEND_MSG_THROTTLE_SLEEP = "sendMsgThrottleSleep";
+    public static final String SHARED_CONNECTION_THREADS = "sharedConnectionThreads";
     public static final String IGNORE_LOCAL_BTC_NODE = "ignoreLocalBtcNode";
     public static final String BITCOIN_REGTEST_HOST = "bitcoinRegtestHost";
     public static final String BTC_NODES = "btcNodes";
@@ -108,6 +114,7 @@ public class Config {
     public static final String ALLOW_FAULTY_DELAYED_TXS = "allowFaultyDelayedTxs";
     public static final String API_PASSWORD = "apiPassword";
     public static final String API_PORT = "apiPort";
+    public static final String API_NUM_THREADS = "apiNumThreads";
     public static final String PREVENT_PERIODIC_SHUTDOWN_AT_SEED_NODE = "preventPeriodicShutdownAtSeedNode";
     public static final String REPUBLISH_MAILBOX_ENTRIES = "republishMailboxEntries";
     public static final String BTC_TX_FEE = "btcTxFee";
@@ -174,8 +181,11 @@ public class Config {
     public final boolean torStreamIsolation;
     public final int msgThrottlePerSec;
     public final int msgThrottlePer10Sec;
-    public final int sendMsgThrottleTrigger;
-    public final int sendMsgThrottleSleep;
+    public final int sendMsgRatePerSec;
+    public final int sendMsgBurst;
+    public final int receiveMsgRatePerSec;
+    public final int receiveMsgBurst;
+    public final boolean sharedConnectionThreads;
     public final String btcNodes;
     public final boolean useTorForBtc;
     public final boolean useTorForBtcOptionSetExplicitly;
@@ -187,6 +197,7 @@ public class Config {
     public final boolean allowFaultyDelayedTxs;
     public final String apiPassword;
     public final int apiPort;
+    public final int apiNumThreads;
     public final boolean preventPeriodicShutdownAtSeedNode;
     public final boolean republishMailboxEntries;
     public final boolean bypassMempoolValidation;
@@ -484,17 +495,54 @@ public class Config {
                         // With PERMITTED_MESSAGE_SIZE of 200kb results in bandwidth of 20MB/sec or 2.5 mbit/sec
                         .defaultsTo(1000);
 
-        ArgumentAcceptingOptionSpec<Integer> sendMsgThrottleTriggerOpt =
-                parser.accepts(SEND_MSG_THROTTLE_TRIGGER, "Time in ms when we trigger a sleep if 2 messages are sent")
+        ArgumentAcceptingOptionSpec<Integer> sendMsgRatePerSecOpt =
+                parser.accepts(SEND_MSG_RATE_PER_SEC, "Max. number of messages per sec sent to a connection before " +
+                        "further messages get queued and bundled")
                         .withRequiredArg()
                         .ofType(int.class)
-                        .defaultsTo(20); // Time in ms when we trigger a sleep if 2 messages are sent
+                        .defaultsTo(50);
 
-        ArgumentAcceptingOptionSpec<Integer> sendMsgThrottleSleepOpt =
-                parser.accepts(SEND_MSG_THROTTLE_SLEEP, "Pause in ms to sleep if we get too many messages to send")
+        ArgumentAcceptingOptionSpec<Integer> sendMsgBurstOpt =
+                parser.accepts(SEND_MSG_BURST, "Number of messages which can be sent to a connection at once " +
+                        "without getting throttled")
                         .withRequiredArg()
                         .ofType(int.class)
-                        .defaultsTo(50); // Pause in ms to sleep if we get too many messages to send
+                        .defaultsTo(10);
+
+        ArgumentAcceptingOptionSpec<Integer> receiveMsgRatePerSecOpt =
+                parser.accepts(RECEIVE_MSG_RATE_PER_SEC, "Max. number of messages per sec read from a connection " +
+                        "before reading gets paused. Values below the limits of " + MSG_THROTTLE_PER_SEC + " and " +
+                        MSG_THROTTLE_PER_10_SEC + " are raised above them, so flooding peers still get reported")
+                        .withRequiredArg()
+                        .ofType(int.class)
+                        .defaultsTo(250);
+
+        ArgumentAcceptingOptionSpec<Integer> receiveMsgBurstOpt =
+                parser.accepts(RECEIVE_MSG_BURST, "Number of messages which can be read from a connection at once " +
+                        "without getting throttled")
+                        .withRequiredArg()
+                        .ofType(int.class)
+                        .defaultsTo(50);
+
+        // The sleep based throttling got replaced by the token buckets above. We still accept the old options, so
+        // existing start scripts do not fail, but their values are ignored.
+        parser.accepts(SEND_MSG_THROTTLE_TRIGGER, "Deprecated and ignored. Use " + SEND_MSG_RATE_PER_SEC +
+                " and " + SEND_MSG_BURST + " instead")
+                .withRequiredArg()
+                .ofType(int.class);
+
+        parser.accepts(SEND_MSG_THROTTLE_SLEEP, "Deprecated and ignored. Use " + SEND_MSG_RATE_PER_SEC +
+                " and " + SEND_MSG_BURST + " instead")
+                .withRequiredArg()
+                .ofType(int.class);
+
+        ArgumentAcceptingOptionSpec<Boolean> sharedConnectionThreadsOpt =
+                parser.accepts(SHARED_CONNECTION_THREADS, "Use thread pools shared by all connections for writing " +
+                        "and scheduling of messages instead of dedicated threads per connection. Recommended for " +
+                        "seed nodes with many connections.")
+                        .withRequiredArg()
+                        .ofType(boolean.class)
+                        .defaultsTo(false);
 
         ArgumentAcceptingOptionSpec<String> btcNodesOpt =
                 parser.accepts(BTC_NODES, "Custom nodes used for BitcoinJ as comma separated IP addresses.")
@@ -558,6 +606,13 @@ public class Config {
                         .ofType(Integer.class)
                         .defaultsTo(9998);
 
+        ArgumentAcceptingOptionSpec<Integer> apiNumThreadsOpt =
+                parser.accepts(API_NUM_THREADS, "Number of threads for read-only gRPC API calls. " +
+                        "With 0 all calls are executed on the user thread")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(4);
+
         ArgumentAcceptingOptionSpec<Boolean> preventPeriodicShutdownAtSeedNodeOpt =
                 parser.accepts(PREVENT_PERIODIC_SHUTDOWN_AT_SEED_NODE,
                         "Prevents periodic shutdown at seed nodes")
@@ -669,8 +724,11 @@ public class Config {
             this.socks5ProxyHttpAddress = options.valueOf(socks5ProxyHttpAddressOpt);
             this.msgThrottlePerSec = options.valueOf(msgThrottlePerSecOpt);
             this.msgThrottlePer10Sec = options.valueOf(msgThrottlePer10SecOpt);
-            this.sendMsgThrottleTrigger = options.valueOf(sendMsgThrottleTriggerOpt);
-            this.sendMsgThrottleSleep = options.valueOf(sendMsgThrottleSleepOpt);
+            this.sendMsgRatePerSec = options.valueOf(sendMsgRatePerSecOpt);
+            this.sendMsgBurst = options.valueOf(sendMsgBurstOpt);
+            this.receiveMsgRatePerSec = options.valueOf(receiveMsgRatePerSecOpt);
+            this.receiveMsgBurst = options.valueOf(receiveMsgBurstOpt);
+            this.sharedConnectionThreads = options.valueOf(sharedConnectionThreadsOpt);
             this.btcNodes = options.valueOf(btcNodesOpt);
             this.useTorForBtc = options.valueOf(useTorForBtcOpt);
             this.useTorForBtcOptionSetExplicitly = options.has(useTorForBtcOpt);
@@ -683,6 +741,7 @@ public class Config {
             this.allowFaultyDelayedTxs = options.valueOf(allowFaultyDelayedTxsOpt);
             this.apiPassword = options.valueOf(apiPasswordOpt);
             this.apiPort = options.valueOf(apiPortOpt);
+            this.apiNumThreads = options.valueOf(apiNumThreadsOpt);
             this.preventPeriodicShutdownAtSeedNode = options.valueOf(preventPeriodicShutdownAtSeedNodeOpt);
             this.republishMailboxEntries = options.valueOf(republishMailboxEntriesOpt);
             this.bypassMempoolValidation = options.valueOf(bypassMempoolValidationOpt);
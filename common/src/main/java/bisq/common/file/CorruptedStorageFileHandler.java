@@ -22,7 +22,9 @@ import javax.inject.Singleton;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -30,6 +32,8 @@ import lombok.extern.slf4j.Slf4j;
 @Singleton
 public class CorruptedStorageFileHandler {
     private final List<String> files = new ArrayList<>();
+    // File names of the corrupted files we could restore from a backup, with the name of the backup file
+    private final Map<String, String> restoredFiles = new ConcurrentHashMap<>();
 
     @Inject
     public CorruptedStorageFileHandler() {
@@ -39,6 +43,14 @@ public class CorruptedStorageFileHandler {
         files.add(fileName);
     }
 
+    public void addRestoredFile(String fileName, String backupFileName) {
+        restoredFiles.put(fileName, backupFileName);
+    }
+
+    public Optional<Map<String, String>> getRestoredFiles() {
+        return restoredFiles.isEmpty() ? Optional.empty() : Optional.of(restoredFiles);
+    }
+
     public Optional<List<String>> getFiles() {
         if (files.isEmpty()) {
             return Optional.empty();
@@ -32,6 +32,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Date;
@@ -44,6 +45,20 @@ import javax.annotation.Nullable;
 @Slf4j
 public class FileUtil {
     public static void rollingBackup(File dir, String fileName, int numMaxBackupFiles) {
+        rollingBackup(dir, fileName, numMaxBackupFiles, 0, false);
+    }
+
+    /**
+     * @param minBackupInterval If the most recent backup is younger than that (in ms) we don't create a new backup.
+     * @param useHardLink       If supported by the file system we create a hard link instead of copying the file. Must
+     *                          only be used for files which get replaced by renaming a new file to it and are never
+     *                          written in place, as the backup shares its content with the original file.
+     */
+    public static void rollingBackup(File dir,
+                                     String fileName,
+                                     int numMaxBackupFiles,
+                                     long minBackupInterval,
+                                     boolean useHardLink) {
         if (dir.exists()) {
             File backupDir = new File(Paths.get(dir.getAbsolutePath(), "backup").toString());
             if (!backupDir.exists())
@@ -52,18 +67,23 @@ public class FileUtil {
 
             File origFile = new File(Paths.get(dir.getAbsolutePath(), fileName).toString());
             if (origFile.exists()) {
-                String dirName = "backups_" + fileName;
-                if (dirName.contains("."))
-                    dirName = dirName.replace(".", "_");
-                File backupFileDir = new File(Paths.get(backupDir.getAbsolutePath(), dirName).toString());
+                File backupFileDir = getBackupFileDir(dir, fileName);
                 if (!backupFileDir.exists())
                     if (!backupFileDir.mkdir())
                         log.warn("make backupFileDir failed.\nBackupFileDir=" + backupFileDir.getAbsolutePath());
 
-                File backupFile = new File(Paths.get(backupFileDir.getAbsolutePath(), new Date().getTime() + "_" + fileName).toString());
+                long now = new Date().getTime();
+                if (minBackupInterval > 0) {
+                    List<File> backupFiles = getBackupFiles(dir, fileName);
+                    if (!backupFiles.isEmpty() && now - getBackupTime(backupFiles.get(0)) < minBackupInterval)
+                        return;
+                }
+
+                File backupFile = new File(Paths.get(backupFileDir.getAbsolutePath(), now + "_" + fileName).toString());
 
                 try {
-                    Files.copy(origFile, backupFile);
+                    if (!useHardLink || !createHardLink(backupFile, origFile))
+                        Files.copy(origFile, backupFile);
 
                     pruneBackup(backupFileDir, numMaxBackupFiles);
                 } catch (IOException e) {
@@ -74,6 +94,48 @@ public class FileUtil {
         }
     }
 
+    /**
+     * @return The backups created by rollingBackup, the most recent first.
+     */
+    public static List<File> getBackupFiles(File dir, String fileName) {
+        File[] files = getBackupFileDir(dir, fileName).listFiles(file -> file.isFile() && getBackupTime(file) > 0);
+        if (files == null) {
+            return new ArrayList<>();
+        }
+
+        List<File> backupFiles = new ArrayList<>(Arrays.asList(files));
+        backupFiles.sort(Comparator.comparingLong(FileUtil::getBackupTime).reversed());
+        return backupFiles;
+    }
+
+    private static File getBackupFileDir(File dir, String fileName) {
+        String dirName = "backups_" + fileName;
+        if (dirName.contains("."))
+            dirName = dirName.replace(".", "_");
+        return new File(Paths.get(dir.getAbsolutePath(), "backup", dirName).toString());
+    }
+
+    // Backup files are prefixed with the time of the backup. Returns 0 if the file name does not have that format.
+    private static long getBackupTime(File backupFile) {
+        String name = backupFile.getName();
+        int index = name.indexOf('_');
+        try {
+            return index > 0 ? Long.parseLong(name.substring(0, index)) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static boolean createHardLink(File link, File existingFile) {
+        try {
+            java.nio.file.Files.createLink(link.toPath(), existingFile.toPath());
+            return true;
+        } catch (UnsupportedOperationException | IOException e) {
+            log.debug("Creating hard link {} failed, we copy the file instead. {}", link, e.toString());
+            return false;
+        }
+    }
+
     private static void pruneBackup(File backupDir, int numMaxBackupFiles) {
         if (backupDir.isDirectory()) {
             File[] files = backupDir.listFiles();
@@ -26,7 +26,7 @@ import bisq.common.file.FileUtil;
 import bisq.common.handlers.ResultHandler;
 import bisq.common.proto.persistable.PersistableEnvelope;
 import bisq.common.proto.persistable.PersistenceProtoResolver;
-import bisq.common.util.Utilities;
+import bisq.common.proto.persistable.SnapshotPersistableEnvelope;
 
 import com.google.inject.Inject;
 
@@ -42,11 +42,11 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -80,6 +80,7 @@ public class PersistenceManager<T extends PersistableEnvelope> {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     public static final Map<String, PersistenceManager<?>> ALL_PERSISTENCE_MANAGERS = new HashMap<>();
+    private static final PersistenceScheduler SCHEDULER = new PersistenceScheduler();
     private static boolean flushAtShutdownCalled;
     private static final AtomicBoolean allServicesInitialized = new AtomicBoolean(false);
 
@@ -95,6 +96,11 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         });
     }
 
+    // Writes to disk are only permitted once all services are initialized
+    public static boolean isAllServicesInitialized() {
+        return allServicesInitialized.get();
+    }
+
     public static void flushAllDataToDiskAtBackup(ResultHandler completeHandler) {
         flushAllDataToDisk(completeHandler, false);
     }
@@ -166,7 +172,7 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         }
 
         if (openInstances.decrementAndGet() == 0) {
-            log.info("flushAllDataToDisk completed");
+            log.info("flushAllDataToDisk completed. Write statistics:{}", SCHEDULER.getWriteStatistics());
             completeHandler.handleResult();
         }
     }
@@ -178,13 +184,13 @@ public class PersistenceManager<T extends PersistableEnvelope> {
 
     public enum Source {
         // For data stores we received from the network and which could be rebuilt. We store only for avoiding too much network traffic.
-        NETWORK(1, TimeUnit.MINUTES.toMillis(5), false),
+        NETWORK(1, TimeUnit.MINUTES.toMillis(5), false, TimeUnit.HOURS.toMillis(1), 2),
 
         // For data stores which are created from private local data. This data could only be rebuilt from backup files.
-        PRIVATE(10, 200, true),
+        PRIVATE(10, 200, true, 0, 0),
 
         // For data stores which are created from private local data. Loss of that data would not have critical consequences.
-        PRIVATE_LOW_PRIO(4, TimeUnit.MINUTES.toMillis(1), false);
+        PRIVATE_LOW_PRIO(4, TimeUnit.MINUTES.toMillis(1), false, TimeUnit.MINUTES.toMillis(10), 1);
 
 
         @Getter
@@ -193,11 +199,19 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         private final long delay;
         @Getter
         private final boolean flushAtShutDown;
+        // We only create a backup before a write if the last backup is older than that.
+        @Getter
+        private final long minBackupInterval;
+        // Files of a lower value get written first if multiple writes are pending.
+        @Getter
+        private final int writePriority;
 
-        Source(int numMaxBackupFiles, long delay, boolean flushAtShutDown) {
+        Source(int numMaxBackupFiles, long delay, boolean flushAtShutDown, long minBackupInterval, int writePriority) {
             this.numMaxBackupFiles = numMaxBackupFiles;
             this.delay = delay;
             this.flushAtShutDown = flushAtShutDown;
+            this.minBackupInterval = minBackupInterval;
+            this.writePriority = writePriority;
         }
     }
 
@@ -215,9 +229,10 @@ public class PersistenceManager<T extends PersistableEnvelope> {
     private Source source = Source.PRIVATE_LOW_PRIO;
     private Path usedTempFilePath;
     private volatile boolean persistenceRequested;
+    // Result of the most recent write
+    private volatile boolean lastWriteSucceeded;
     @Nullable
     private Timer timer;
-    private ExecutorService writeToDiskExecutor;
     public final AtomicBoolean initCalled = new AtomicBoolean(false);
     public final AtomicBoolean readCalled = new AtomicBoolean(false);
 
@@ -274,16 +289,16 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         ALL_PERSISTENCE_MANAGERS.put(fileName, this);
     }
 
+    public PersistenceProtoResolver getPersistenceProtoResolver() {
+        return persistenceProtoResolver;
+    }
+
     public void shutdown() {
         ALL_PERSISTENCE_MANAGERS.remove(fileName);
 
         if (timer != null) {
             timer.stop();
         }
-
-        if (writeToDiskExecutor != null) {
-            writeToDiskExecutor.shutdown();
-        }
     }
 
 
@@ -302,7 +317,7 @@ public class PersistenceManager<T extends PersistableEnvelope> {
     }
 
     /**
-     * Read persisted file in a thread.
+     * Read persisted file in a thread of the shared read pool.
      * We map result handler calls to UserThread, so clients don't need to worry about threading
      *
      * @param fileName          File name of our persisted data.
@@ -315,14 +330,14 @@ public class PersistenceManager<T extends PersistableEnvelope> {
             return;
         }
 
-        new Thread(() -> {
+        SCHEDULER.read(() -> {
             T persisted = getPersisted(fileName);
             if (persisted != null) {
                 UserThread.execute(() -> resultHandler.accept(persisted));
             } else {
                 UserThread.execute(orElse);
             }
-        }, "PersistenceManager-read-" + fileName).start();
+        });
     }
 
     // API for synchronous reading of data. Not recommended to be used in application code.
@@ -347,10 +362,8 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         }
 
         long ts = System.currentTimeMillis();
-        try (FileInputStream fileInputStream = new FileInputStream(storageFile)) {
-            protobuf.PersistableEnvelope proto = protobuf.PersistableEnvelope.parseDelimitedFrom(fileInputStream);
-            //noinspection unchecked
-            T persistableEnvelope = (T) persistenceProtoResolver.fromProto(proto);
+        try {
+            T persistableEnvelope = readFromFile(storageFile);
             log.info("Reading {} completed in {} ms", fileName, System.currentTimeMillis() - ts);
             return persistableEnvelope;
         } catch (Throwable t) {
@@ -358,12 +371,19 @@ public class PersistenceManager<T extends PersistableEnvelope> {
             try {
                 // We keep a backup which might be used for recovery
                 FileUtil.removeAndBackupFile(dir, storageFile, fileName, "backup_of_corrupted_data");
-                DevEnv.logErrorAndThrowIfDevMode(t.toString());
             } catch (IOException e1) {
                 e1.printStackTrace();
                 log.error(e1.getMessage());
                 // We swallow Exception if backup fails
             }
+
+            // We try to restore before we throw in dev mode, so the restore path gets used in dev mode as well.
+            T restored = restoreFromBackup(storageFile, fileName);
+            if (restored != null) {
+                return restored;
+            }
+
+            DevEnv.logErrorAndThrowIfDevMode(t.toString());
             if (corruptedStorageFileHandler != null) {
                 corruptedStorageFileHandler.addFile(storageFile.getName());
             }
@@ -371,6 +391,33 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         return null;
     }
 
+    private T readFromFile(File file) throws IOException {
+        try (FileInputStream fileInputStream = new FileInputStream(file)) {
+            protobuf.PersistableEnvelope proto = protobuf.PersistableEnvelope.parseDelimitedFrom(fileInputStream);
+            //noinspection unchecked
+            return (T) persistenceProtoResolver.fromProto(proto);
+        }
+    }
+
+    // We try the backups from the most recent one and restore the first one we can read.
+    @Nullable
+    private T restoreFromBackup(File storageFile, String fileName) {
+        for (File backupFile : FileUtil.getBackupFiles(dir, fileName)) {
+            try {
+                T persistableEnvelope = readFromFile(backupFile);
+                FileUtil.copyFile(backupFile, storageFile);
+                log.warn("We restored {} from backup {}", fileName, backupFile.getName());
+                if (corruptedStorageFileHandler != null) {
+                    corruptedStorageFileHandler.addRestoredFile(fileName, backupFile.getName());
+                }
+                return persistableEnvelope;
+            } catch (Throwable t) {
+                log.warn("Reading backup {} failed with {}.", backupFile.getName(), t.getMessage());
+            }
+        }
+        return null;
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Write file to disk
@@ -405,16 +452,23 @@ public class PersistenceManager<T extends PersistableEnvelope> {
     }
 
     public void persistNow(@Nullable Runnable completeHandler) {
+        if (persistable instanceof SnapshotPersistableEnvelope) {
+            // We only take the snapshot on the user thread and serialize it on the write thread.
+            PersistableEnvelope snapshot = ((SnapshotPersistableEnvelope) persistable).getSnapshot();
+            writeToDisk(() -> (protobuf.PersistableEnvelope) snapshot.toPersistableMessage(), completeHandler);
+            return;
+        }
+
         long ts = System.currentTimeMillis();
         try {
             // The serialisation is done on the user thread to avoid threading issue with potential mutations of the
             // persistable object. Keeping it on the user thread we are in a synchronize model.
             protobuf.PersistableEnvelope serialized = (protobuf.PersistableEnvelope) persistable.toPersistableMessage();
 
-            // For the write to disk task we use a thread. We do not have any issues anymore if the persistable objects
-            // gets mutated while the thread is running as we have serialized it already and do not operate on the
-            // reference to the persistable object.
-            getWriteToDiskExecutor().execute(() -> writeToDisk(serialized, completeHandler));
+            // The write to disk is done by the write thread of the shared scheduler. We do not have any issues anymore
+            // if the persistable objects gets mutated while the thread is running as we have serialized it already and
+            // do not operate on the reference to the persistable object.
+            writeToDisk(serialized, completeHandler);
 
             long duration = System.currentTimeMillis() - ts;
             if (duration > 100) {
@@ -427,20 +481,47 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         }
     }
 
+    // Like persistNow but we only call the resultHandler if the storage file got replaced. As writes get coalesced the
+    // written data can be more recent than the data at the time of the call.
+    public void persistNow(ResultHandler resultHandler, Runnable failureHandler) {
+        if (!allServicesInitialized.get()) {
+            UserThread.execute(failureHandler);
+            return;
+        }
+
+        persistNow(() -> {
+            if (lastWriteSucceeded) {
+                resultHandler.handleResult();
+            } else {
+                failureHandler.run();
+            }
+        });
+    }
+
     public void writeToDisk(protobuf.PersistableEnvelope serialized, @Nullable Runnable completeHandler) {
+        writeToDisk(() -> serialized, completeHandler);
+    }
+
+    private void writeToDisk(Supplier<protobuf.PersistableEnvelope> serializer, @Nullable Runnable completeHandler) {
         if (!allServicesInitialized.get()) {
             log.warn("Application has not completed start up yet so we do not permit writing data to disk.");
             UserThread.execute(completeHandler);
             return;
         }
 
-        long ts = System.currentTimeMillis();
+        SCHEDULER.write(this, fileName, source, serializer, completeHandler);
+    }
+
+    // Called from the write thread of the scheduler. Writes the data to a temp file which gets synced to disk by the
+    // scheduler together with the other files of the same group. Returns null if the write failed.
+    @Nullable
+    PersistenceScheduler.TempFile writeTempFile(protobuf.PersistableEnvelope serialized) {
         File tempFile = null;
         FileOutputStream fileOutputStream = null;
-
         try {
-            // Before we write we backup existing file
-            FileUtil.rollingBackup(dir, fileName, source.getNumMaxBackupFiles());
+            // Before we write we backup existing file. As we replace the file by renaming the temp file to it and never
+            // write to it in place, we can use a hard link as backup instead of copying the file.
+            FileUtil.rollingBackup(dir, fileName, source.getNumMaxBackupFiles(), source.getMinBackupInterval(), true);
 
             if (!dir.exists() && !dir.mkdir())
                 log.warn("make dir failed {}", fileName);
@@ -452,58 +533,43 @@ public class PersistenceManager<T extends PersistableEnvelope> {
             tempFile.deleteOnExit();
 
             fileOutputStream = new FileOutputStream(tempFile);
-
             serialized.writeDelimitedTo(fileOutputStream);
-
-            // Attempt to force the bits to hit the disk. In reality the OS or hard disk itself may still decide
-            // to not write through to physical media for at least a few seconds, but this is the best we can do.
             fileOutputStream.flush();
-            fileOutputStream.getFD().sync();
-
-            // Close resources before replacing file with temp file because otherwise it causes problems on windows
-            // when rename temp file
-            fileOutputStream.close();
-
-            FileUtil.renameFile(tempFile, storageFile);
-            usedTempFilePath = tempFile.toPath();
+            return new PersistenceScheduler.TempFile(tempFile, fileOutputStream);
         } catch (Throwable t) {
             // If an error occurred, don't attempt to reuse this path again, in case temp file cleanup fails.
             usedTempFilePath = null;
             log.error("Error at saveToFile, storageFile={}", fileName, t);
-        } finally {
-            if (tempFile != null && tempFile.exists()) {
+            if (tempFile != null) {
                 log.warn("Temp file still exists after failed save. We will delete it now. storageFile={}", fileName);
-                if (!tempFile.delete()) {
-                    log.error("Cannot delete temp file.");
-                }
-            }
-
-            try {
-                if (fileOutputStream != null) {
-                    fileOutputStream.close();
-                }
-            } catch (IOException e) {
-                // We swallow that
-                e.printStackTrace();
-                log.error("Cannot close resources." + e.getMessage());
-            }
-            long duration = System.currentTimeMillis() - ts;
-            if (duration > 100) {
-                log.info("Writing the serialized {} completed in {} msec", fileName, duration);
-            }
-            persistenceRequested = false;
-            if (completeHandler != null) {
-                UserThread.execute(completeHandler);
+                new PersistenceScheduler.TempFile(tempFile, fileOutputStream).delete();
             }
+            return null;
         }
     }
 
-    private ExecutorService getWriteToDiskExecutor() {
-        if (writeToDiskExecutor == null) {
-            String name = "Write-" + fileName + "_to-disk";
-            writeToDiskExecutor = Utilities.getSingleThreadExecutor(name);
+    // Called from the write thread of the scheduler after the temp file got synced to disk, or with null if writing or
+    // syncing the temp file failed. Returns true if the storage file got replaced.
+    boolean completeWrite(@Nullable PersistenceScheduler.TempFile tempFile) {
+        boolean success = false;
+        if (tempFile != null) {
+            try {
+                tempFile.close();
+                FileUtil.renameFile(tempFile.getFile(), storageFile);
+                usedTempFilePath = tempFile.getFile().toPath();
+                success = true;
+            } catch (Throwable t) {
+                usedTempFilePath = null;
+                log.error("Error at saveToFile, storageFile={}", fileName, t);
+                log.warn("Temp file still exists after failed save. We will delete it now. storageFile={}", fileName);
+                tempFile.delete();
+            }
+        } else {
+            usedTempFilePath = null;
         }
-        return writeToDiskExecutor;
+        persistenceRequested = false;
+        lastWriteSucceeded = success;
+        return success;
     }
 
     @Override
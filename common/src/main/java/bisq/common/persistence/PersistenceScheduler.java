@@ -0,0 +1,311 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.common.persistence;
+
+import bisq.common.UserThread;
+import bisq.common.util.Utilities;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Shared scheduler for the disk I/O of all PersistenceManager instances.
+ *
+ * Writes are done by two write lanes with a single thread each. PRIVATE data, which could only be restored from
+ * backups, has its own lane, so its writes do not wait for the serialization and write of the large network stores.
+ * All other writes share the second lane. Within a lane write requests of a PersistenceManager which is still waiting for its write get
+ * coalesced, so only the most recent data gets written and all complete handlers get called after that write. All requests which
+ * are pending when the write thread becomes free get written as one group, ordered by the write priority of their
+ * {@link PersistenceManager.Source}: We write all temp files first, then sync them to disk and only then replace the
+ * storage files. This lets the OS and disk combine the flushes of the group instead of syncing file by file.
+ *
+ * The data gets serialized on the write thread, so snapshots of superseded write requests never get serialized.
+ *
+ * Startup reads are done on a small bounded thread pool instead of a new thread per file.
+ */
+@Slf4j
+class PersistenceScheduler {
+    private static final int NUM_READ_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private final WriteLane privateWriteLane = new WriteLane("PersistenceScheduler-write-private");
+    private final WriteLane writeLane = new WriteLane("PersistenceScheduler-write");
+    private final ExecutorService readExecutor = Utilities.getListeningExecutorService("PersistenceScheduler-read-%d",
+            NUM_READ_THREADS, NUM_READ_THREADS, 60, new LinkedBlockingQueue<>());
+    // Guarded by itself
+    private final Map<String, WriteStatistic> writeStatistics = new TreeMap<>();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    void read(Runnable readTask) {
+        readExecutor.execute(readTask);
+    }
+
+    // The source of a PersistenceManager does not change, so all requests of a manager go to the same lane.
+    void write(PersistenceManager<?> persistenceManager,
+               String fileName,
+               PersistenceManager.Source source,
+               Supplier<protobuf.PersistableEnvelope> serializer,
+               @Nullable Runnable completeHandler) {
+        WriteLane lane = source == PersistenceManager.Source.PRIVATE ? privateWriteLane : writeLane;
+        lane.write(persistenceManager, fileName, source, serializer, completeHandler);
+    }
+
+    String getWriteStatistics() {
+        synchronized (writeStatistics) {
+            StringBuilder sb = new StringBuilder();
+            writeStatistics.forEach((fileName, statistic) -> sb.append("\n     ").append(fileName).append(": ").append(statistic));
+            return sb.toString();
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Nullable
+    private protobuf.PersistableEnvelope serialize(WriteRequest writeRequest) {
+        long ts = System.currentTimeMillis();
+        try {
+            protobuf.PersistableEnvelope serialized = writeRequest.serializer.get();
+            long duration = System.currentTimeMillis() - ts;
+            if (duration > 100) {
+                log.info("Serializing {} took {} msec", writeRequest.fileName, duration);
+            }
+            return serialized;
+        } catch (Throwable t) {
+            log.error("Serializing {} failed", writeRequest.fileName, t);
+            return null;
+        }
+    }
+
+    private void addWriteStatistic(WriteRequest writeRequest, boolean success) {
+        long latency = System.currentTimeMillis() - writeRequest.requestTime;
+        int size = writeRequest.serialized != null ? writeRequest.serialized.getSerializedSize() : 0;
+        synchronized (writeStatistics) {
+            writeStatistics.computeIfAbsent(writeRequest.fileName, fileName -> new WriteStatistic())
+                    .add(latency, size, writeRequest.numCoalesced, success);
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private class WriteLane {
+        private final ExecutorService writeExecutor;
+        // Guarded by this. Keyed by the PersistenceManager, so a request of a new manager for the same file name (e.g.
+        // after the old one got shut down) is written with the new manager to its own directory.
+        private final Map<PersistenceManager<?>, WriteRequest> pendingWriteRequests = new LinkedHashMap<>();
+        private boolean writeScheduled;
+
+        WriteLane(String threadName) {
+            writeExecutor = Utilities.getSingleThreadExecutor(threadName);
+        }
+
+        synchronized void write(PersistenceManager<?> persistenceManager,
+                                String fileName,
+                                PersistenceManager.Source source,
+                                Supplier<protobuf.PersistableEnvelope> serializer,
+                                @Nullable Runnable completeHandler) {
+            WriteRequest writeRequest = pendingWriteRequests.get(persistenceManager);
+            if (writeRequest != null) {
+                // The previous data has not been written yet, so we replace it with the more recent data.
+                writeRequest.serializer = serializer;
+                writeRequest.numCoalesced++;
+            } else {
+                writeRequest = new WriteRequest(persistenceManager, fileName, source, serializer);
+                pendingWriteRequests.put(persistenceManager, writeRequest);
+            }
+            if (completeHandler != null) {
+                writeRequest.completeHandlers.add(completeHandler);
+            }
+
+            if (!writeScheduled) {
+                writeScheduled = true;
+                writeExecutor.execute(this::writePendingRequests);
+            }
+        }
+
+        // Called on the write thread
+        private void writePendingRequests() {
+            List<WriteRequest> writeRequests;
+            synchronized (this) {
+                writeRequests = new ArrayList<>(pendingWriteRequests.values());
+                pendingWriteRequests.clear();
+                writeScheduled = false;
+            }
+            writeRequests.sort(Comparator.comparingInt(writeRequest -> writeRequest.source.getWritePriority()));
+
+            long ts = System.currentTimeMillis();
+            long numBytes = 0;
+            for (WriteRequest writeRequest : writeRequests) {
+                writeRequest.serialized = serialize(writeRequest);
+                if (writeRequest.serialized != null) {
+                    writeRequest.tempFile = writeRequest.persistenceManager.writeTempFile(writeRequest.serialized);
+                    numBytes += writeRequest.serialized.getSerializedSize();
+                }
+            }
+
+            // Group commit: We sync all temp files before we replace any of the storage files.
+            for (WriteRequest writeRequest : writeRequests) {
+                TempFile tempFile = writeRequest.tempFile;
+                if (tempFile != null) {
+                    try {
+                        tempFile.sync();
+                    } catch (Throwable t) {
+                        log.error("Syncing temp file of {} failed", writeRequest.fileName, t);
+                        writeRequest.tempFile = null;
+                        tempFile.delete();
+                    }
+                }
+            }
+
+            for (WriteRequest writeRequest : writeRequests) {
+                boolean success = writeRequest.persistenceManager.completeWrite(writeRequest.tempFile);
+                addWriteStatistic(writeRequest, success);
+                writeRequest.completeHandlers.forEach(UserThread::execute);
+            }
+
+            long duration = System.currentTimeMillis() - ts;
+            if (duration > 100) {
+                log.info("Writing {} files with {} bytes completed in {} msec", writeRequests.size(), numBytes, duration);
+            }
+        }
+    }
+
+    private static class WriteRequest {
+        private final PersistenceManager<?> persistenceManager;
+        private final String fileName;
+        private final PersistenceManager.Source source;
+        private final long requestTime = System.currentTimeMillis();
+        private final List<Runnable> completeHandlers = new ArrayList<>();
+        private Supplier<protobuf.PersistableEnvelope> serializer;
+        @Nullable
+        private protobuf.PersistableEnvelope serialized;
+        private int numCoalesced;
+        @Nullable
+        private TempFile tempFile;
+
+        WriteRequest(PersistenceManager<?> persistenceManager,
+                     String fileName,
+                     PersistenceManager.Source source,
+                     Supplier<protobuf.PersistableEnvelope> serializer) {
+            this.persistenceManager = persistenceManager;
+            this.fileName = fileName;
+            this.source = source;
+            this.serializer = serializer;
+        }
+    }
+
+    // A written but not yet synced temp file. The output stream stays open until the file got synced.
+    static class TempFile {
+        @Getter
+        private final File file;
+        @Nullable
+        private final FileOutputStream fileOutputStream;
+
+        TempFile(File file, @Nullable FileOutputStream fileOutputStream) {
+            this.file = file;
+            this.fileOutputStream = fileOutputStream;
+        }
+
+        void sync() throws IOException {
+            checkNotNull(fileOutputStream, "fileOutputStream must not be null");
+            // Attempt to force the bits to hit the disk. In reality the OS or hard disk itself may still decide
+            // to not write through to physical media for at least a few seconds, but this is the best we can do.
+            fileOutputStream.getFD().sync();
+        }
+
+        // Must be called before renaming the file because otherwise it causes problems on windows
+        void close() throws IOException {
+            if (fileOutputStream != null) {
+                fileOutputStream.close();
+            }
+        }
+
+        void delete() {
+            try {
+                close();
+            } catch (IOException e) {
+                // We swallow that
+                log.error("Cannot close resources. {}", e.getMessage());
+            }
+            if (file.exists() && !file.delete()) {
+                log.error("Cannot delete temp file {}.", file);
+            }
+        }
+    }
+
+    // Latency is measured from the first write request until the data is on disk, so it includes the time the
+    // request was waiting for other writes.
+    private static class WriteStatistic {
+        private int numWrites;
+        private int numFailed;
+        private int numCoalesced;
+        private long totalLatency;
+        private long maxLatency;
+        private int lastSize;
+        private int maxSize;
+
+        void add(long latency, int size, int numCoalesced, boolean success) {
+            numWrites++;
+            if (!success) {
+                numFailed++;
+            }
+            this.numCoalesced += numCoalesced;
+            totalLatency += latency;
+            maxLatency = Math.max(maxLatency, latency);
+            lastSize = size;
+            maxSize = Math.max(maxSize, size);
+        }
+
+        @Override
+        public String toString() {
+            return "numWrites=" + numWrites +
+                    ", numFailed=" + numFailed +
+                    ", numCoalesced=" + numCoalesced +
+                    ", avgLatency=" + totalLatency / numWrites + " ms" +
+                    ", maxLatency=" + maxLatency + " ms" +
+                    ", lastSize=" + lastSize + " bytes" +
+                    ", maxSize=" + maxSize + " bytes";
+        }
+    }
+}
@@ -52,6 +52,14 @@ public abstract class NetworkEnvelope implements Envelope {
         return getNetworkEnvelopeBuilder().build();
     }
 
+    /**
+     * Returns the proto used for sending the envelope over the network. Envelopes which are immutable and sent to
+     * multiple peers can override it to build the proto only once and share it between all connections.
+     */
+    public protobuf.NetworkEnvelope getCachedProtoNetworkEnvelope() {
+        return toProtoNetworkEnvelope();
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // API
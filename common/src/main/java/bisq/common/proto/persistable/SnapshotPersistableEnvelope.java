@@ -0,0 +1,32 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.common.proto.persistable;
+
+/**
+ * A PersistableEnvelope which can provide a snapshot of its state which is safe to be serialized on another thread
+ * than the user thread. The PersistenceManager serializes such envelopes on its write thread instead of blocking the
+ * user thread with the serialization.
+ */
+public interface SnapshotPersistableEnvelope extends PersistableEnvelope {
+
+    /**
+     * Called on the user thread. Needs to be cheap compared to the serialization, e.g. a copy of the references to
+     * immutable items. Can return the envelope itself if it is safe to serialize it while it gets modified.
+     */
+    PersistableEnvelope getSnapshot();
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+    private final List<String> executed = new ArrayList<>();
+    private final TimingWheel timingWheel = new TimingWheel(8, 100, Runnable::run);
+
+    private void tick(int numTicks) {
+        for (int i = 0; i < numTicks; i++) {
+            timingWheel.tick();
+        }
+    }
+
+    @Test
+    public void tick_executesTaskWhenDelayPassed() {
+        timingWheel.schedule(250, () -> executed.add("a"));
+
+        tick(3);
+        assertTrue(executed.isEmpty());
+
+        tick(1);
+        assertEquals(List.of("a"), executed);
+        assertEquals(0, timingWheel.size());
+    }
+
+    @Test
+    public void tick_zeroDelayExecutedAtNextTick() {
+        timingWheel.schedule(0, () -> executed.add("a"));
+
+        tick(1);
+        assertEquals(List.of("a"), executed);
+    }
+
+    @Test
+    public void tick_delayLongerThanOneRevolution() {
+        // 8 buckets of 100 ms, so 2050 ms need 21 ticks after the current one
+        timingWheel.schedule(2050, () -> executed.add("a"));
+        timingWheel.schedule(800, () -> executed.add("b"));
+
+        tick(8);
+        assertTrue(executed.isEmpty());
+
+        tick(1);
+        assertEquals(List.of("b"), executed);
+
+        tick(12);
+        assertEquals(List.of("b"), executed);
+
+        tick(1);
+        assertEquals(List.of("b", "a"), executed);
+    }
+
+    @Test
+    public void cancel_removesEntry() {
+        TimingWheel.Entry entry = timingWheel.schedule(100, () -> executed.add("a"));
+        timingWheel.schedule(100, () -> executed.add("b"));
+
+        timingWheel.cancel(entry);
+        // Cancelling twice has no effect
+        timingWheel.cancel(entry);
+        assertEquals(1, timingWheel.size());
+
+        tick(2);
+        assertEquals(List.of("b"), executed);
+    }
+
+    @Test
+    public void tick_taskCanScheduleNewEntry() {
+        timingWheel.schedule(100, () -> timingWheel.schedule(100, () -> executed.add("a")));
+
+        tick(2);
+        assertTrue(executed.isEmpty());
+        assertEquals(1, timingWheel.size());
+
+        tick(2);
+        assertEquals(List.of("a"), executed);
+    }
+
+    @Test
+    public void tick_neverExecutesBeforeDelay() {
+        // We simulate a clock where the ticks happen every 100 ms and schedule at different times within a tick.
+        for (long offset : new long[]{0, 1, 50, 99}) {
+            for (long delay : new long[]{0, 1, 99, 100, 101, 250, 799, 800, 2050}) {
+                TimingWheel timingWheel = new TimingWheel(8, 100, Runnable::run);
+                long[] executionTime = {-1};
+                long[] now = {offset};
+                timingWheel.schedule(delay, () -> executionTime[0] = now[0]);
+
+                for (int i = 1; executionTime[0] < 0 && i < 100; i++) {
+                    now[0] = i * 100;
+                    timingWheel.tick();
+                }
+
+                long actualDelay = executionTime[0] - offset;
+                assertTrue("delay " + delay + " at offset " + offset + " executed after " + actualDelay + " ms",
+                        actualDelay >= delay && actualDelay < delay + 200);
+            }
+        }
+    }
+}
@@ -200,6 +200,13 @@ public class ConfigTests {
         assertTrue(configWithOpts(opt(HELP)).helpRequested);
     }
 
+    @Test
+    public void whenDeprecatedSendMsgThrottleOptionsAreSet_thenTheyAreIgnored() {
+        Config config = configWithOpts(opt(SEND_MSG_THROTTLE_TRIGGER, 20), opt(SEND_MSG_THROTTLE_SLEEP, 50));
+        assertThat(config.sendMsgRatePerSec, equalTo(new Config().sendMsgRatePerSec));
+        assertThat(config.sendMsgBurst, equalTo(new Config().sendMsgBurst));
+    }
+
     @Test
     public void whenConfigIsConstructed_thenNoConsoleOutputSideEffectsShouldOccur() {
         PrintStream outOrig = System.out;
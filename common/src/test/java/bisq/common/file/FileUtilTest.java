@@ -0,0 +1,97 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.common.file;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FileUtilTest {
+    private static final String FILE_NAME = "Store";
+
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("FileUtilTest").toFile();
+        file = new File(dir, FILE_NAME);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtil.deleteDirectory(dir);
+    }
+
+    private void writeAndRename(String content) throws IOException {
+        File tempFile = new File(dir, FILE_NAME + ".tmp");
+        Files.write(tempFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        FileUtil.renameFile(tempFile, file);
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testRollingBackupWithHardLink() throws IOException, InterruptedException {
+        writeAndRename("1");
+        FileUtil.rollingBackup(dir, FILE_NAME, 2, 0, true);
+        Thread.sleep(2);
+        writeAndRename("2");
+        FileUtil.rollingBackup(dir, FILE_NAME, 2, 0, true);
+        Thread.sleep(2);
+        writeAndRename("3");
+
+        // Replacing the file by renaming must not change the content of the backups
+        List<File> backupFiles = FileUtil.getBackupFiles(dir, FILE_NAME);
+        assertEquals(2, backupFiles.size());
+        assertEquals("2", read(backupFiles.get(0)));
+        assertEquals("1", read(backupFiles.get(1)));
+        assertEquals("3", read(file));
+    }
+
+    @Test
+    public void testRollingBackupSkippedWithinMinInterval() throws IOException {
+        writeAndRename("1");
+        FileUtil.rollingBackup(dir, FILE_NAME, 10, TimeUnit.HOURS.toMillis(1), true);
+        writeAndRename("2");
+        FileUtil.rollingBackup(dir, FILE_NAME, 10, TimeUnit.HOURS.toMillis(1), true);
+
+        List<File> backupFiles = FileUtil.getBackupFiles(dir, FILE_NAME);
+        assertEquals(1, backupFiles.size());
+        assertEquals("1", read(backupFiles.get(0)));
+    }
+
+    @Test
+    public void testGetBackupFilesWithoutBackup() {
+        assertTrue(FileUtil.getBackupFiles(dir, FILE_NAME).isEmpty());
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package bisq.common.persistence;
+
+import bisq.common.file.CorruptedStorageFileHandler;
+import bisq.common.file.FileUtil;
+import bisq.common.proto.persistable.PersistableEnvelope;
+
+import java.nio.file.Files;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PersistenceSchedulerTest {
+    private static final PersistenceManager.Source SOURCE = PersistenceManager.Source.PRIVATE_LOW_PRIO;
+
+    private final PersistenceScheduler scheduler = new PersistenceScheduler();
+    private final CountDownLatch blockingWriteStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseBlockingWrite = new CountDownLatch(1);
+    private File dir;
+    private File otherDir;
+    private PersistenceManager<PersistableEnvelope> blockingManager;
+    private PersistenceManager<PersistableEnvelope> manager;
+    private PersistenceManager<PersistableEnvelope> otherManager;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("PersistenceSchedulerTest").toFile();
+        otherDir = Files.createTempDirectory("PersistenceSchedulerTest").toFile();
+        blockingManager = createManager(dir, "Blocking");
+        manager = createManager(dir, "Store");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        releaseBlockingWrite.countDown();
+        blockingManager.shutdown();
+        manager.shutdown();
+        if (otherManager != null)
+            otherManager.shutdown();
+        FileUtil.deleteDirectory(dir);
+        FileUtil.deleteDirectory(otherDir);
+    }
+
+    private static PersistenceManager<PersistableEnvelope> createManager(File dir, String fileName) {
+        return createManager(dir, fileName, SOURCE);
+    }
+
+    private static PersistenceManager<PersistableEnvelope> createManager(File dir,
+                                                                         String fileName,
+                                                                         PersistenceManager.Source source) {
+        PersistenceManager<PersistableEnvelope> persistenceManager = new PersistenceManager<>(dir, null,
+                new CorruptedStorageFileHandler());
+        persistenceManager.initialize(protobuf.PersistableEnvelope::getDefaultInstance, fileName, source);
+        return persistenceManager;
+    }
+
+    private static protobuf.PersistableEnvelope createEnvelope(String path) {
+        return protobuf.PersistableEnvelope.newBuilder()
+                .setNavigationPath(protobuf.NavigationPath.newBuilder().addPath(path))
+                .build();
+    }
+
+    private static List<String> readPath(File file) throws IOException {
+        try (FileInputStream fileInputStream = new FileInputStream(file)) {
+            return protobuf.PersistableEnvelope.parseDelimitedFrom(fileInputStream).getNavigationPath().getPathList();
+        }
+    }
+
+    // Keeps the write thread busy, so the following write requests stay pending
+    private void blockWriteThread() throws InterruptedException {
+        scheduler.write(blockingManager, "Blocking", SOURCE, () -> {
+            blockingWriteStarted.countDown();
+            try {
+                releaseBlockingWrite.await();
+            } catch (InterruptedException ignore) {
+            }
+            return createEnvelope("blocking");
+        }, null);
+        assertTrue(blockingWriteStarted.await(10, TimeUnit.SECONDS));
+    }
+
+    private static Supplier<protobuf.PersistableEnvelope> countingSerializer(String path, AtomicInteger numCalls) {
+        return () -> {
+            numCalls.incrementAndGet();
+            return createEnvelope(path);
+        };
+    }
+
+    @Test
+    public void write_coalescesPendingRequestsAndCallsAllHandlers() throws Exception {
+        blockWriteThread();
+
+        AtomicInteger numFirstSerializations = new AtomicInteger();
+        AtomicInteger numSecondSerializations = new AtomicInteger();
+        CountDownLatch handlersCalled = new CountDownLatch(2);
+        scheduler.write(manager, "Store", SOURCE, countingSerializer("first", numFirstSerializations),
+                handlersCalled::countDown);
+        scheduler.write(manager, "Store", SOURCE, countingSerializer("second", numSecondSerializations),
+                handlersCalled::countDown);
+        releaseBlockingWrite.countDown();
+
+        assertTrue(handlersCalled.await(10, TimeUnit.SECONDS));
+        // Only the most recent data got serialized and written
+        assertEquals(0, numFirstSerializations.get());
+        assertEquals(1, numSecondSerializations.get());
+        assertEquals(List.of("second"), readPath(new File(dir, "Store")));
+        assertEquals(List.of("blocking"), readPath(new File(dir, "Blocking")));
+    }
+
+    @Test
+    public void write_doesNotCoalesceRequestsOfDifferentManagersForSameFileName() throws Exception {
+        blockWriteThread();
+
+        // Simulates a manager which got created again for the same file name after the first one was shut down
+        manager.shutdown();
+        otherManager = createManager(otherDir, "Store");
+        CountDownLatch handlersCalled = new CountDownLatch(2);
+        scheduler.write(manager, "Store", SOURCE, () -> createEnvelope("old"), handlersCalled::countDown);
+        scheduler.write(otherManager, "Store", SOURCE, () -> createEnvelope("new"), handlersCalled::countDown);
+        releaseBlockingWrite.countDown();
+
+        assertTrue(handlersCalled.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of("old"), readPath(new File(dir, "Store")));
+        assertEquals(List.of("new"), readPath(new File(otherDir, "Store")));
+    }
+
+    @Test
+    public void write_writesPendingRequestsOrderedByPriority() throws Exception {
+        blockWriteThread();
+
+        otherManager = createManager(dir, "Network", PersistenceManager.Source.NETWORK);
+        List<String> serializedFileNames = new CopyOnWriteArrayList<>();
+        CountDownLatch handlersCalled = new CountDownLatch(2);
+        scheduler.write(otherManager, "Network", PersistenceManager.Source.NETWORK, () -> {
+            serializedFileNames.add("Network");
+            return createEnvelope("network");
+        }, handlersCalled::countDown);
+        scheduler.write(manager, "Store", SOURCE, () -> {
+            serializedFileNames.add("Store");
+            return createEnvelope("store");
+        }, handlersCalled::countDown);
+        releaseBlockingWrite.countDown();
+
+        assertTrue(handlersCalled.await(10, TimeUnit.SECONDS));
+        // PRIVATE_LOW_PRIO has a higher write priority than NETWORK
+        assertEquals(List.of("Store", "Network"), serializedFileNames);
+        assertEquals(List.of("network"), readPath(new File(dir, "Network")));
+    }
+
+    @Test
+    public void write_privateWritesDoNotWaitForOtherWrites() throws Exception {
+        blockWriteThread();
+
+        otherManager = createManager(dir, "Private", PersistenceManager.Source.PRIVATE);
+        CountDownLatch handlerCalled = new CountDownLatch(1);
+        scheduler.write(otherManager, "Private", PersistenceManager.Source.PRIVATE, () -> createEnvelope("private"),
+                handlerCalled::countDown);
+
+        // The write thread of the other sources is still blocked
+        assertTrue(handlerCalled.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of("private"), readPath(new File(dir, "Private")));
+    }
+
+    @Test
+    public void write_callsHandlerIfSerializationFails() throws Exception {
+        CountDownLatch handlerCalled = new CountDownLatch(1);
+        scheduler.write(manager, "Store", SOURCE, () -> {
+            throw new RuntimeException("test");
+        }, handlerCalled::countDown);
+
+        assertTrue(handlerCalled.await(10, TimeUnit.SECONDS));
+        assertTrue(scheduler.getWriteStatistics().contains("Store: numWrites=1, numFailed=1"));
+    }
+}
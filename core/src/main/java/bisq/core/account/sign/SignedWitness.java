@@ -71,6 +71,8 @@ public class SignedWitness implements ProcessOncePersistableNetworkPayload, Pers
     private final long tradeAmount;
 
     transient private final byte[] hash;
+    // Used as key in several maps, so we create it only once
+    transient private final P2PDataStorage.ByteArray hashAsByteArray;
 
     public SignedWitness(VerificationMethod verificationMethod,
                          byte[] accountAgeWitnessHash,
@@ -97,6 +99,7 @@ public class SignedWitness implements ProcessOncePersistableNetworkPayload, Pers
         byte[] data = Utilities.concatenateByteArrays(accountAgeWitnessHash, signature);
         data = Utilities.concatenateByteArrays(data, signerPubKey);
         hash = Hash.getSha256Ripemd160hash(data);
+        hashAsByteArray = new P2PDataStorage.ByteArray(hash);
     }
 
 
@@ -169,7 +172,7 @@ public class SignedWitness implements ProcessOncePersistableNetworkPayload, Pers
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     public P2PDataStorage.ByteArray getHashAsByteArray() {
-        return new P2PDataStorage.ByteArray(hash);
+        return hashAsByteArray;
     }
 
     @Override
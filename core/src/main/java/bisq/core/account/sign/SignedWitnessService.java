@@ -60,6 +60,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import lombok.extern.slf4j.Slf4j;
@@ -77,22 +78,23 @@ public class SignedWitnessService {
     private final User user;
     private final FilterManager filterManager;
 
-    private final Map<P2PDataStorage.ByteArray, SignedWitness> signedWitnessMap = new HashMap<>();
+    // The maps are written on the user thread only, but also read by the API threads when they filter the offer book.
+    private final Map<P2PDataStorage.ByteArray, SignedWitness> signedWitnessMap = new ConcurrentHashMap<>();
 
     // This map keeps all SignedWitnesses with the same AccountAgeWitnessHash in a Set.
     // This avoids iterations over the signedWitnessMap for getting the set of such SignedWitnesses.
-    private final Map<P2PDataStorage.ByteArray, Set<SignedWitness>> signedWitnessSetByAccountAgeWitnessHash = new HashMap<>();
+    private final Map<P2PDataStorage.ByteArray, Set<SignedWitness>> signedWitnessSetByAccountAgeWitnessHash = new ConcurrentHashMap<>();
 
     // Iterating over all SignedWitnesses and do a byte array comparison is a bit expensive and
     // it is called at filtering the offer book many times, so we use a lookup map for fast
     // access to the set of SignedWitness which match the ownerPubKey.
-    private final Map<P2PDataStorage.ByteArray, Set<SignedWitness>> signedWitnessSetByOwnerPubKey = new HashMap<>();
+    private final Map<P2PDataStorage.ByteArray, Set<SignedWitness>> signedWitnessSetByOwnerPubKey = new ConcurrentHashMap<>();
 
     // The signature verification calls are rather expensive and called at filtering the offer book many times,
     // so we cache the results using the hash as key. The hash is created from the accountAgeWitnessHash and the
     // signature.
-    private final Map<P2PDataStorage.ByteArray, Boolean> verifySignatureWithDSAKeyResultCache = new HashMap<>();
-    private final Map<P2PDataStorage.ByteArray, Boolean> verifySignatureWithECKeyResultCache = new HashMap<>();
+    private final Map<P2PDataStorage.ByteArray, Boolean> verifySignatureWithDSAKeyResultCache = new ConcurrentHashMap<>();
+    private final Map<P2PDataStorage.ByteArray, Boolean> verifySignatureWithECKeyResultCache = new ConcurrentHashMap<>();
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -335,9 +337,10 @@ public class SignedWitnessService {
     }
 
     private boolean verifySignatureWithECKey(SignedWitness signedWitness) {
-        P2PDataStorage.ByteArray hash = new P2PDataStorage.ByteArray(signedWitness.getHash());
-        if (verifySignatureWithECKeyResultCache.containsKey(hash)) {
-            return verifySignatureWithECKeyResultCache.get(hash);
+        P2PDataStorage.ByteArray hash = signedWitness.getHashAsByteArray();
+        Boolean cachedResult = verifySignatureWithECKeyResultCache.get(hash);
+        if (cachedResult != null) {
+            return cachedResult;
         }
         try {
             String message = Utilities.encodeToHex(signedWitness.getAccountAgeWitnessHash());
@@ -361,9 +364,10 @@ public class SignedWitnessService {
     }
 
     private boolean verifySignatureWithDSAKey(SignedWitness signedWitness) {
-        P2PDataStorage.ByteArray hash = new P2PDataStorage.ByteArray(signedWitness.getHash());
-        if (verifySignatureWithDSAKeyResultCache.containsKey(hash)) {
-            return verifySignatureWithDSAKeyResultCache.get(hash);
+        P2PDataStorage.ByteArray hash = signedWitness.getHashAsByteArray();
+        Boolean cachedResult = verifySignatureWithDSAKeyResultCache.get(hash);
+        if (cachedResult != null) {
+            return cachedResult;
         }
         try {
             PublicKey signaturePubKey = Sig.getPublicKeyFromBytes(signedWitness.getSignerPubKey());
@@ -420,8 +424,9 @@ public class SignedWitnessService {
     private Set<SignedWitness> getSignedWitnessSetByOwnerPubKey(byte[] ownerPubKey,
                                                                 Stack<P2PDataStorage.ByteArray> excluded) {
         P2PDataStorage.ByteArray key = new P2PDataStorage.ByteArray(ownerPubKey);
-        if (signedWitnessSetByOwnerPubKey.containsKey(key)) {
-            return signedWitnessSetByOwnerPubKey.get(key).stream()
+        Set<SignedWitness> signedWitnessSet = signedWitnessSetByOwnerPubKey.get(key);
+        if (signedWitnessSet != null) {
+            return signedWitnessSet.stream()
                     .filter(e -> !excluded.contains(new P2PDataStorage.ByteArray(e.getSignerPubKey())))
                     .collect(Collectors.toSet());
 
@@ -527,12 +532,12 @@ public class SignedWitnessService {
         signedWitnessMap.putIfAbsent(signedWitness.getHashAsByteArray(), signedWitness);
 
         P2PDataStorage.ByteArray accountAgeWitnessHash = new P2PDataStorage.ByteArray(signedWitness.getAccountAgeWitnessHash());
-        signedWitnessSetByAccountAgeWitnessHash.putIfAbsent(accountAgeWitnessHash, new HashSet<>());
-        signedWitnessSetByAccountAgeWitnessHash.get(accountAgeWitnessHash).add(signedWitness);
+        signedWitnessSetByAccountAgeWitnessHash.computeIfAbsent(accountAgeWitnessHash, key -> ConcurrentHashMap.newKeySet())
+                .add(signedWitness);
 
         P2PDataStorage.ByteArray ownerPubKey = new P2PDataStorage.ByteArray(signedWitness.getWitnessOwnerPubKey());
-        signedWitnessSetByOwnerPubKey.putIfAbsent(ownerPubKey, new HashSet<>());
-        signedWitnessSetByOwnerPubKey.get(ownerPubKey).add(signedWitness);
+        signedWitnessSetByOwnerPubKey.computeIfAbsent(ownerPubKey, key -> ConcurrentHashMap.newKeySet())
+                .add(signedWitness);
     }
 
     private void publishSignedWitness(SignedWitness signedWitness) {
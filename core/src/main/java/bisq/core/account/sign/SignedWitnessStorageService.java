@@ -19,7 +19,7 @@ package bisq.core.account.sign;
 
 import bisq.network.p2p.storage.P2PDataStorage;
 import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
-import bisq.network.p2p.storage.persistence.MapStoreService;
+import bisq.network.p2p.storage.persistence.AppendOnlyMapStoreService;
 
 import bisq.common.config.Config;
 import bisq.common.persistence.PersistenceManager;
@@ -34,7 +34,7 @@ import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
-public class SignedWitnessStorageService extends MapStoreService<SignedWitnessStore, PersistableNetworkPayload> {
+public class SignedWitnessStorageService extends AppendOnlyMapStoreService<SignedWitnessStore> {
     private static final String FILE_NAME = "SignedWitnessStore";
 
 
@@ -45,10 +45,14 @@ public class AccountAgeWitness implements ProcessOncePersistableNetworkPayload,
     private final byte[] hash;                      // Ripemd160(Sha256(concatenated accountHash, signature and sigPubKey)); 20 bytes
     private final long date;                        // 8 byte
 
+    // Used as key in several maps, so we create it only once
+    transient private final P2PDataStorage.ByteArray hashAsByteArray;
+
     public AccountAgeWitness(byte[] hash,
                              long date) {
         this.hash = hash;
         this.date = date;
+        hashAsByteArray = new P2PDataStorage.ByteArray(hash);
     }
 
 
@@ -107,7 +111,7 @@ public class AccountAgeWitness implements ProcessOncePersistableNetworkPayload,
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     P2PDataStorage.ByteArray getHashAsByteArray() {
-        return new P2PDataStorage.ByteArray(hash);
+        return hashAsByteArray;
     }
 
     @Override
@@ -17,7 +17,7 @@
 
 package bisq.core.api;
 
-import bisq.core.btc.wallet.XmrWalletService;
+import bisq.core.btc.wallet.KeyImageSpentStatusCache;
 import bisq.core.monetary.Altcoin;
 import bisq.core.monetary.Price;
 import bisq.core.offer.CreateOfferService;
@@ -52,7 +52,6 @@ import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import lombok.extern.slf4j.Slf4j;
-import monero.daemon.model.MoneroKeyImageSpentStatus;
 
 import static bisq.common.util.MathUtils.exactMultiply;
 import static bisq.common.util.MathUtils.roundDoubleToLong;
@@ -83,7 +82,7 @@ class CoreOffersService {
     private final OpenOfferManager openOfferManager;
     private final OfferUtil offerUtil;
     private final User user;
-    private final XmrWalletService xmrWalletService;
+    private final KeyImageSpentStatusCache keyImageSpentStatusCache;
 
     @Inject
     public CoreOffersService(CoreContext coreContext,
@@ -95,7 +94,7 @@ class CoreOffersService {
                              OpenOfferManager openOfferManager,
                              OfferUtil offerUtil,
                              User user,
-                             XmrWalletService xmrWalletService) {
+                             KeyImageSpentStatusCache keyImageSpentStatusCache) {
         this.coreContext = coreContext;
         this.keyRing = keyRing;
         this.coreWalletsService = coreWalletsService;
@@ -105,33 +104,44 @@ class CoreOffersService {
         this.openOfferManager = openOfferManager;
         this.offerUtil = offerUtil;
         this.user = user;
-        this.xmrWalletService = xmrWalletService;
+        this.keyImageSpentStatusCache = keyImageSpentStatusCache;
+
+        // Keep the spent status of the reserve tx key images of all offers up to date in the background
+        offerBookService.addOfferBookChangedListener(new OfferBookService.OfferBookChangedListener() {
+            @Override
+            public void onAdded(Offer offer) {
+                trackReserveTxKeyImages(offer);
+            }
+
+            @Override
+            public void onRemoved(Offer offer) {
+                keyImageSpentStatusCache.untrack(offer.getId());
+            }
+        });
+        offerBookService.getOffers().forEach(this::trackReserveTxKeyImages);
     }
 
     Offer getOffer(String id) {
-        return offerBookService.getOffers().stream()
-                .filter(o -> o.getId().equals(id))
+        return offerBookService.findOffer(id)
                 .filter(o -> !o.isMyOffer(keyRing))
                 .filter(o -> {
                     Result result = offerFilter.canTakeOffer(o, coreContext.isApiUser());
                     return result.isValid() || result == Result.HAS_NO_PAYMENT_ACCOUNT_VALID_FOR_OFFER;
                 })
-                .findAny().orElseThrow(() ->
+                .orElseThrow(() ->
                         new IllegalStateException(format("offer with id '%s' not found", id)));
     }
 
     Offer getMyOffer(String id) {
-        return offerBookService.getOffers().stream()
-                .filter(o -> o.getId().equals(id))
+        return offerBookService.findOffer(id)
                 .filter(o -> o.isMyOffer(keyRing))
-                .findAny().orElseThrow(() ->
+                .orElseThrow(() ->
                         new IllegalStateException(format("offer with id '%s' not found", id)));
     }
 
     List<Offer> getOffers(String direction, String currencyCode) {
-        List<Offer> offers = offerBookService.getOffers().stream()
+        List<Offer> offers = offerBookService.getOffers(direction, currencyCode).stream()
                 .filter(o -> !o.isMyOffer(keyRing))
-                .filter(o -> offerMatchesDirectionAndCurrency(o, direction, currencyCode))
                 .filter(o -> {
                     Result result = offerFilter.canTakeOffer(o, coreContext.isApiUser());
                     return result.isValid() || result == Result.HAS_NO_PAYMENT_ACCOUNT_VALID_FOR_OFFER;
@@ -145,9 +155,8 @@ class CoreOffersService {
     List<Offer> getMyOffers(String direction, String currencyCode) {
 
         // get my offers posted to books
-        List<Offer> offers = offerBookService.getOffers().stream()
+        List<Offer> offers = offerBookService.getOffers(direction, currencyCode).stream()
                 .filter(o -> o.isMyOffer(keyRing))
-                .filter(o -> offerMatchesDirectionAndCurrency(o, direction, currencyCode))
                 .sorted(priceComparator(direction))
                 .collect(Collectors.toList());
 
@@ -171,6 +180,13 @@ class CoreOffersService {
         return offers;
     }
     
+    private void trackReserveTxKeyImages(Offer offer) {
+        List<String> keyImages = offer.getOfferPayload().getReserveTxKeyImages();
+        if (keyImages != null && !keyImages.isEmpty()) {
+            keyImageSpentStatusCache.track(offer.getId(), keyImages);
+        }
+    }
+
     private Set<Offer> getUnreservedOffers(List<Offer> offers) {
         Set<Offer> unreservedOffers = new HashSet<Offer>();
         
@@ -182,13 +198,8 @@ class CoreOffersService {
           }
         }
         
-        // get spent key images
-        // TODO (woodser): paginate offers and only check key images of current page
-        List<String> spentKeyImages = new ArrayList<String>();
-        List<MoneroKeyImageSpentStatus> spentStatuses = allKeyImages.isEmpty() ? new ArrayList<MoneroKeyImageSpentStatus>() : xmrWalletService.getDaemon().getKeyImageSpentStatuses(allKeyImages);
-        for (int i = 0; i < spentStatuses.size(); i++) {
-          if (spentStatuses.get(i) != MoneroKeyImageSpentStatus.NOT_SPENT) spentKeyImages.add(allKeyImages.get(i));
-        }
+        // get spent key images, usually from the cache without a request to the daemon
+        Set<String> spentKeyImages = keyImageSpentStatusCache.getSpentKeyImages(allKeyImages);
         
         // check for offers with spent key images
         for (Offer offer : offers) {
@@ -318,15 +329,6 @@ class CoreOffersService {
             throw new IllegalStateException(offer.getErrorMessage());
     }
 
-    private boolean offerMatchesDirectionAndCurrency(Offer offer,
-                                                     String direction,
-                                                     String currencyCode) {
-        var offerOfWantedDirection = offer.getDirection().name().equalsIgnoreCase(direction);
-        var offerInWantedCurrency = offer.getOfferPayload().getCounterCurrencyCode()
-                .equalsIgnoreCase(currencyCode);
-        return offerOfWantedDirection && offerInWantedCurrency;
-    }
-
     private Comparator<Offer> priceComparator(String direction) {
         // A buyer probably wants to see sell orders in price ascending order.
         // A seller probably wants to see buy orders in price descending order.
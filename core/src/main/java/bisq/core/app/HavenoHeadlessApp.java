@@ -95,6 +95,7 @@ public class HavenoHeadlessApp implements HeadlessApp {
                 lastVersion, Version.VERSION));
 
         corruptedStorageFileHandler.getFiles().ifPresent(files -> log.warn("getCorruptedDatabaseFiles. files={}", files));
+        corruptedStorageFileHandler.getRestoredFiles().ifPresent(files -> log.warn("getRestoredDatabaseFiles. files={}", files));
         tradeManager.setTakeOfferRequestErrorMessageHandler(errorMessage -> log.error("onTakeOfferRequestErrorMessageHandler"));
     }
 
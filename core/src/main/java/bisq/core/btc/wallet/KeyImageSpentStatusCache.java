@@ -0,0 +1,207 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package bisq.core.btc.wallet;
+
+import bisq.core.btc.setup.WalletsSetup;
+
+import bisq.common.UserThread;
+import bisq.common.util.Utilities;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import lombok.extern.slf4j.Slf4j;
+
+import monero.daemon.MoneroDaemon;
+import monero.daemon.model.MoneroKeyImageSpentStatus;
+
+/**
+ * Caches the spent status of key images, e.g. of the reserve txs of offers.
+ *
+ * Tracked key images get refreshed in the background after each new block and periodically for changes of the tx
+ * pool, so callers usually get the status without a request to the daemon. Key images which are spent in a confirmed
+ * tx do not get requested again. Key images which are not tracked get requested once on first use.
+ */
+@Slf4j
+@Singleton
+public class KeyImageSpentStatusCache {
+    // The daemon does not notify us about tx pool changes, so we poll
+    private static final long REFRESH_INTERVAL_SEC = 30;
+    private static final int MAX_KEY_IMAGES_PER_REQUEST = 1000;
+
+    private final XmrWalletService xmrWalletService;
+    private final WalletsSetup walletsSetup;
+    private final ExecutorService executor;
+    // Tracked key images by the ID of their owner, e.g. the offer ID
+    private final Map<String, List<String>> trackedKeyImages = new ConcurrentHashMap<>();
+    private final Map<String, MoneroKeyImageSpentStatus> spentStatuses = new ConcurrentHashMap<>();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private final AtomicBoolean started = new AtomicBoolean();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Inject
+    public KeyImageSpentStatusCache(XmrWalletService xmrWalletService, WalletsSetup walletsSetup) {
+        this(xmrWalletService, walletsSetup, Utilities.getSingleThreadExecutor("KeyImageSpentStatusCache"));
+    }
+
+    @VisibleForTesting
+    KeyImageSpentStatusCache(XmrWalletService xmrWalletService, WalletsSetup walletsSetup, ExecutorService executor) {
+        this.xmrWalletService = xmrWalletService;
+        this.walletsSetup = walletsSetup;
+        this.executor = executor;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public void track(String id, List<String> keyImages) {
+        trackedKeyImages.put(id, new ArrayList<>(keyImages));
+        maybeStart();
+        requestRefresh();
+    }
+
+    public void untrack(String id) {
+        trackedKeyImages.remove(id);
+    }
+
+    /**
+     * @return The key images of the given ones which are spent or used in a tx in the tx pool. Only key images with
+     * unknown status are requested from the daemon, in one request.
+     * @throws IllegalStateException if the status of a key image is unknown and the daemon is not available
+     * @throws monero.common.MoneroError if the status of a key image is unknown and the request to the daemon failed
+     */
+    public Set<String> getSpentKeyImages(Collection<String> keyImages) {
+        // We look up each status once, as a refresh can drop statuses in the meantime
+        Map<String, MoneroKeyImageSpentStatus> statuses = new HashMap<>();
+        List<String> unknownKeyImages = new ArrayList<>();
+        keyImages.stream().distinct().forEach(keyImage -> {
+            MoneroKeyImageSpentStatus status = spentStatuses.get(keyImage);
+            if (status != null) {
+                statuses.put(keyImage, status);
+            } else {
+                unknownKeyImages.add(keyImage);
+            }
+        });
+        if (!unknownKeyImages.isEmpty()) {
+            MoneroDaemon daemon = xmrWalletService.getDaemon();
+            if (daemon == null) {
+                throw new IllegalStateException("Cannot get the spent status of " + unknownKeyImages.size() +
+                        " key images as the daemon is not available");
+            }
+            Map<String, MoneroKeyImageSpentStatus> requestedStatuses = requestSpentStatuses(daemon, unknownKeyImages);
+            spentStatuses.putAll(requestedStatuses);
+            statuses.putAll(requestedStatuses);
+        }
+
+        return statuses.entrySet().stream()
+                .filter(entry -> isSpent(entry.getValue()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void maybeStart() {
+        if (started.compareAndSet(false, true)) {
+            walletsSetup.chainHeightProperty().addListener((observable, oldValue, newValue) -> requestRefresh());
+            UserThread.runPeriodically(this::requestRefresh, REFRESH_INTERVAL_SEC);
+        }
+    }
+
+    private void requestRefresh() {
+        if (refreshScheduled.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                refreshScheduled.set(false);
+                refresh();
+            });
+        }
+    }
+
+    private void refresh() {
+        Set<String> keyImages = new HashSet<>();
+        trackedKeyImages.values().forEach(keyImages::addAll);
+
+        // Forget the status of key images we do not track anymore
+        spentStatuses.keySet().retainAll(keyImages);
+
+        // A key image spent in a confirmed tx stays spent, all others can change with the next block or tx pool update
+        List<String> keyImagesToRequest = keyImages.stream()
+                .filter(keyImage -> spentStatuses.get(keyImage) != MoneroKeyImageSpentStatus.CONFIRMED)
+                .collect(Collectors.toList());
+        if (keyImagesToRequest.isEmpty()) {
+            return;
+        }
+
+        // We keep the previous statuses if we cannot refresh them, callers only get unknown statuses from the daemon
+        MoneroDaemon daemon = xmrWalletService.getDaemon();
+        if (daemon == null) {
+            log.warn("Cannot refresh the spent status of {} key images as the daemon is not available yet",
+                    keyImagesToRequest.size());
+            return;
+        }
+        try {
+            spentStatuses.putAll(requestSpentStatuses(daemon, keyImagesToRequest));
+        } catch (Throwable t) {
+            log.warn("Refreshing the spent status of {} key images failed. {}", keyImagesToRequest.size(), t.toString());
+        }
+    }
+
+    private static Map<String, MoneroKeyImageSpentStatus> requestSpentStatuses(MoneroDaemon daemon, List<String> keyImages) {
+        Map<String, MoneroKeyImageSpentStatus> result = new HashMap<>();
+        for (int from = 0; from < keyImages.size(); from += MAX_KEY_IMAGES_PER_REQUEST) {
+            List<String> batch = keyImages.subList(from, Math.min(keyImages.size(), from + MAX_KEY_IMAGES_PER_REQUEST));
+            List<MoneroKeyImageSpentStatus> statuses = daemon.getKeyImageSpentStatuses(batch);
+            if (statuses.size() != batch.size()) {
+                throw new IllegalStateException("Expected " + batch.size() + " key image spent statuses from the daemon but got " +
+                        statuses.size());
+            }
+            for (int i = 0; i < statuses.size(); i++) {
+                result.put(batch.get(i), statuses.get(i));
+            }
+        }
+        return result;
+    }
+
+    private static boolean isSpent(MoneroKeyImageSpentStatus status) {
+        return status != null && status != MoneroKeyImageSpentStatus.NOT_SPENT;
+    }
+}
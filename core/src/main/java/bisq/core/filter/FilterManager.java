@@ -179,6 +179,11 @@ public class FilterManager {
                             onFilterRemovedFromNetwork(filter);
                         });
             }
+
+            @Override
+            public boolean isBatchedNotificationSupported() {
+                return true;
+            }
         });
 
         p2PService.addP2PServiceListener(new P2PServiceListener() {
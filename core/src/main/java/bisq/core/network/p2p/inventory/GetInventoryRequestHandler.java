@@ -30,7 +30,6 @@ import bisq.network.p2p.network.NetworkNode;
 import bisq.network.p2p.network.Statistic;
 import bisq.network.p2p.peers.PeerManager;
 import bisq.network.p2p.storage.P2PDataStorage;
-import bisq.network.p2p.storage.payload.ProtectedStorageEntry;
 
 import bisq.common.app.Version;
 import bisq.common.config.Config;
@@ -81,16 +80,13 @@ public class GetInventoryRequestHandler implements MessageListener {
         if (networkEnvelope instanceof GetInventoryRequest) {
             // Data
             GetInventoryRequest getInventoryRequest = (GetInventoryRequest) networkEnvelope;
-            Map<InventoryItem, Integer> dataObjects = new HashMap<>();
-            p2PDataStorage.getMapForDataResponse(getInventoryRequest.getVersion()).values().stream()
-                    .map(e -> e.getClass().getSimpleName())
-                    .forEach(className -> addClassNameToMap(dataObjects, className));
-            p2PDataStorage.getMap().values().stream()
-                    .map(ProtectedStorageEntry::getProtectedStoragePayload)
-                    .map(e -> e.getClass().getSimpleName())
-                    .forEach(className -> addClassNameToMap(dataObjects, className));
             Map<InventoryItem, String> inventory = new HashMap<>();
-            dataObjects.forEach((key, value) -> inventory.put(key, String.valueOf(value)));
+            p2PDataStorage.getNumPayloadsByClassName(getInventoryRequest.getVersion()).forEach((className, numPayloads) -> {
+                Optional<InventoryItem> optionalEnum = Enums.getIfPresent(InventoryItem.class, className);
+                if (optionalEnum.isPresent()) {
+                    inventory.put(optionalEnum.get(), String.valueOf(numPayloads));
+                }
+            });
 
 
 
@@ -100,12 +96,12 @@ public class GetInventoryRequestHandler implements MessageListener {
             inventory.put(InventoryItem.peakNumConnections, String.valueOf(peerManager.getPeakNumConnections()));
             inventory.put(InventoryItem.numAllConnectionsLostEvents, String.valueOf(peerManager.getNumAllConnectionsLostEvents()));
             peerManager.maybeResetNumAllConnectionsLostEvents();
-            inventory.put(InventoryItem.sentBytes, String.valueOf(Statistic.totalSentBytesProperty().get()));
-            inventory.put(InventoryItem.sentBytesPerSec, String.valueOf(Statistic.totalSentBytesPerSecProperty().get()));
-            inventory.put(InventoryItem.receivedBytes, String.valueOf(Statistic.totalReceivedBytesProperty().get()));
-            inventory.put(InventoryItem.receivedBytesPerSec, String.valueOf(Statistic.totalReceivedBytesPerSecProperty().get()));
-            inventory.put(InventoryItem.receivedMessagesPerSec, String.valueOf(Statistic.numTotalReceivedMessagesPerSecProperty().get()));
-            inventory.put(InventoryItem.sentMessagesPerSec, String.valueOf(Statistic.numTotalSentMessagesPerSecProperty().get()));
+            inventory.put(InventoryItem.sentBytes, String.valueOf(Statistic.getTotalSentBytes()));
+            inventory.put(InventoryItem.sentBytesPerSec, String.valueOf(Statistic.getTotalSentBytesPerSec()));
+            inventory.put(InventoryItem.receivedBytes, String.valueOf(Statistic.getTotalReceivedBytes()));
+            inventory.put(InventoryItem.receivedBytesPerSec, String.valueOf(Statistic.getTotalReceivedBytesPerSec()));
+            inventory.put(InventoryItem.receivedMessagesPerSec, String.valueOf(Statistic.getNumTotalReceivedMessagesPerSec()));
+            inventory.put(InventoryItem.sentMessagesPerSec, String.valueOf(Statistic.getNumTotalSentMessagesPerSec()));
 
             // node
             inventory.put(InventoryItem.version, Version.VERSION);
@@ -127,14 +123,4 @@ public class GetInventoryRequestHandler implements MessageListener {
     public void shutDown() {
         networkNode.removeMessageListener(this);
     }
-
-    private void addClassNameToMap(Map<InventoryItem, Integer> dataObjects, String className) {
-        Optional<InventoryItem> optionalEnum = Enums.getIfPresent(InventoryItem.class, className);
-        if (optionalEnum.isPresent()) {
-            InventoryItem key = optionalEnum.get();
-            dataObjects.putIfAbsent(key, 0);
-            int prev = dataObjects.get(key);
-            dataObjects.put(key, prev + 1);
-        }
-    }
 }
@@ -38,10 +38,14 @@ import javax.inject.Named;
 
 import java.io.File;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -51,7 +55,10 @@ import javax.annotation.Nullable;
 
 /**
  * Handles storage and retrieval of offers.
- * Uses an invalidation flag to only request the full offer map in case there was a change (anyone has added or removed an offer).
+ * Keeps an index of the offer payloads in the P2P data map by offer ID and by market, which gets updated by the
+ * HashMapChangedListener callbacks. So lookups do not need to iterate the data map.
+ * Offers have mutable state (e.g. the state of the availability check or an error message), so each caller and
+ * listener gets its own Offer instance.
  */
 public class OfferBookService {
     private static final Logger log = LoggerFactory.getLogger(OfferBookService.class);
@@ -67,6 +74,9 @@ public class OfferBookService {
     private final List<OfferBookChangedListener> offerBookChangedListeners = new LinkedList<>();
     private final FilterManager filterManager;
     private final JsonFileManager jsonFileManager;
+    private final Map<String, OfferPayload> offerPayloadsById = new ConcurrentHashMap<>();
+    // Key is direction and counter currency code, see getMarketKey
+    private final Map<String, Map<String, OfferPayload>> offerPayloadsByMarket = new ConcurrentHashMap<>();
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -87,28 +97,34 @@ public class OfferBookService {
         p2PService.addHashSetChangedListener(new HashMapChangedListener() {
             @Override
             public void onAdded(Collection<ProtectedStorageEntry> protectedStorageEntries) {
-                protectedStorageEntries.forEach(protectedStorageEntry -> offerBookChangedListeners.forEach(listener -> {
+                protectedStorageEntries.forEach(protectedStorageEntry -> {
                     if (protectedStorageEntry.getProtectedStoragePayload() instanceof OfferPayload) {
                         OfferPayload offerPayload = (OfferPayload) protectedStorageEntry.getProtectedStoragePayload();
-                        Offer offer = new Offer(offerPayload);
-                        offer.setPriceFeedService(priceFeedService);
-                        listener.onAdded(offer);
+                        addToIndex(offerPayload);
+                        offerBookChangedListeners.forEach(listener -> listener.onAdded(createOffer(offerPayload)));
                     }
-                }));
+                });
             }
 
             @Override
             public void onRemoved(Collection<ProtectedStorageEntry> protectedStorageEntries) {
-                protectedStorageEntries.forEach(protectedStorageEntry -> offerBookChangedListeners.forEach(listener -> {
+                protectedStorageEntries.forEach(protectedStorageEntry -> {
                     if (protectedStorageEntry.getProtectedStoragePayload() instanceof OfferPayload) {
                         OfferPayload offerPayload = (OfferPayload) protectedStorageEntry.getProtectedStoragePayload();
-                        Offer offer = new Offer(offerPayload);
-                        offer.setPriceFeedService(priceFeedService);
-                        listener.onRemoved(offer);
+                        removeFromIndex(offerPayload);
+                        offerBookChangedListeners.forEach(listener -> listener.onRemoved(createOffer(offerPayload)));
                     }
-                }));
+                });
+            }
+
+            @Override
+            public boolean isBatchedNotificationSupported() {
+                return true;
             }
         });
+        p2PService.getDataMap().values().stream()
+                .filter(data -> data.getProtectedStoragePayload() instanceof OfferPayload)
+                .forEach(data -> addToIndex((OfferPayload) data.getProtectedStoragePayload()));
 
         if (dumpStatistics) {
             p2PService.addP2PServiceListener(new BootstrapListener() {
@@ -191,14 +207,28 @@ public class OfferBookService {
     }
 
     public List<Offer> getOffers() {
-        return p2PService.getDataMap().values().stream()
-                .filter(data -> data.getProtectedStoragePayload() instanceof OfferPayload)
-                .map(data -> {
-                    OfferPayload offerPayload = (OfferPayload) data.getProtectedStoragePayload();
-                    Offer offer = new Offer(offerPayload);
-                    offer.setPriceFeedService(priceFeedService);
-                    return offer;
-                })
+        return offerPayloadsById.values().stream()
+                .map(this::createOffer)
+                .collect(Collectors.toList());
+    }
+
+    public Optional<Offer> findOffer(String offerId) {
+        return Optional.ofNullable(offerPayloadsById.get(offerId)).map(this::createOffer);
+    }
+
+    /**
+     * @param direction     Direction of the offers, case insensitive
+     * @param currencyCode  Counter currency code of the offers, case insensitive
+     * @return Unsorted offers of the given market. Prices of offers using a market based price change with the market
+     * price, so the caller has to sort them.
+     */
+    public List<Offer> getOffers(String direction, String currencyCode) {
+        Map<String, OfferPayload> offerPayloads = offerPayloadsByMarket.get(getMarketKey(direction, currencyCode));
+        if (offerPayloads == null) {
+            return new ArrayList<>();
+        }
+        return offerPayloads.values().stream()
+                .map(this::createOffer)
                 .collect(Collectors.toList());
     }
 
@@ -219,6 +249,47 @@ public class OfferBookService {
     // Private
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    private Offer createOffer(OfferPayload offerPayload) {
+        Offer offer = new Offer(offerPayload);
+        offer.setPriceFeedService(priceFeedService);
+        return offer;
+    }
+
+    private void addToIndex(OfferPayload offerPayload) {
+        OfferPayload existing = offerPayloadsById.put(offerPayload.getId(), offerPayload);
+        if (existing != null && !existing.equals(offerPayload)) {
+            removeFromMarket(existing);
+        }
+        offerPayloadsByMarket.computeIfAbsent(getMarketKey(offerPayload), key -> new ConcurrentHashMap<>())
+                .put(offerPayload.getId(), offerPayload);
+    }
+
+    private void removeFromIndex(OfferPayload offerPayload) {
+        // If the offer got replaced by another payload with the same ID we keep the new one
+        if (offerPayloadsById.remove(offerPayload.getId(), offerPayload)) {
+            removeFromMarket(offerPayload);
+        }
+    }
+
+    private void removeFromMarket(OfferPayload offerPayload) {
+        String marketKey = getMarketKey(offerPayload);
+        Map<String, OfferPayload> offerPayloads = offerPayloadsByMarket.get(marketKey);
+        if (offerPayloads != null) {
+            offerPayloads.remove(offerPayload.getId(), offerPayload);
+            if (offerPayloads.isEmpty()) {
+                offerPayloadsByMarket.remove(marketKey, offerPayloads);
+            }
+        }
+    }
+
+    private static String getMarketKey(OfferPayload offerPayload) {
+        return getMarketKey(offerPayload.getDirection().name(), offerPayload.getCounterCurrencyCode());
+    }
+
+    private static String getMarketKey(String direction, String currencyCode) {
+        return direction.toUpperCase() + "/" + currencyCode.toUpperCase();
+    }
+
     private void doDumpStatistics() {
         // We filter the case that it is a MarketBasedPrice but the price is not available
         // That should only be possible if the price feed provider is not available
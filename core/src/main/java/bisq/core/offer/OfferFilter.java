@@ -36,9 +36,10 @@ import javax.inject.Singleton;
 
 import javafx.collections.SetChangeListener;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -50,8 +51,12 @@ public class OfferFilter {
     private final Preferences preferences;
     private final FilterManager filterManager;
     private final AccountAgeWitnessService accountAgeWitnessService;
-    private final Map<String, Boolean> insufficientCounterpartyTradeLimitCache = new HashMap<>();
-    private final Map<String, Boolean> myInsufficientTradeLimitCache = new HashMap<>();
+    // The offers get filtered on the user thread and on the API threads, see CallExecutionInterceptor
+    private final Map<String, Boolean> insufficientCounterpartyTradeLimitCache = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> myInsufficientTradeLimitCache = new ConcurrentHashMap<>();
+    // Copy of the user's payment accounts, replaced on the user thread when they change. The API threads must not
+    // iterate the accounts of the user while the user thread changes them.
+    private volatile Set<PaymentAccount> paymentAccounts = Set.of();
 
     @Inject
     public OfferFilter(User user,
@@ -64,9 +69,12 @@ public class OfferFilter {
         this.accountAgeWitnessService = accountAgeWitnessService;
 
         if (user != null) {
+            paymentAccounts = Set.copyOf(user.getPaymentAccountsAsObservable());
             // If our accounts have changed we reset our myInsufficientTradeLimitCache as it depends on account data
-            user.getPaymentAccountsAsObservable().addListener((SetChangeListener<PaymentAccount>) c ->
-                    myInsufficientTradeLimitCache.clear());
+            user.getPaymentAccountsAsObservable().addListener((SetChangeListener<PaymentAccount>) c -> {
+                paymentAccounts = Set.copyOf(user.getPaymentAccountsAsObservable());
+                myInsufficientTradeLimitCache.clear();
+            });
         }
     }
 
@@ -139,8 +147,7 @@ public class OfferFilter {
     }
 
     public boolean isAnyPaymentAccountValidForOffer(Offer offer) {
-        return user.getPaymentAccounts() != null &&
-                PaymentAccountUtil.isAnyPaymentAccountValidForOffer(offer, user.getPaymentAccounts());
+        return PaymentAccountUtil.isAnyPaymentAccountValidForOffer(offer, paymentAccounts);
     }
 
     public boolean hasSameProtocolVersion(Offer offer) {
@@ -175,8 +182,9 @@ public class OfferFilter {
     // This call is a bit expensive so we cache results
     public boolean isInsufficientCounterpartyTradeLimit(Offer offer) {
         String offerId = offer.getId();
-        if (insufficientCounterpartyTradeLimitCache.containsKey(offerId)) {
-            return insufficientCounterpartyTradeLimitCache.get(offerId);
+        Boolean cachedResult = insufficientCounterpartyTradeLimitCache.get(offerId);
+        if (cachedResult != null) {
+            return cachedResult;
         }
 
         boolean result = CurrencyUtil.isFiatCurrency(offer.getCurrencyCode()) &&
@@ -190,12 +198,13 @@ public class OfferFilter {
     // This call is a bit expensive so we cache results
     public boolean isMyInsufficientTradeLimit(Offer offer) {
         String offerId = offer.getId();
-        if (myInsufficientTradeLimitCache.containsKey(offerId)) {
-            return myInsufficientTradeLimitCache.get(offerId);
+        Boolean cachedResult = myInsufficientTradeLimitCache.get(offerId);
+        if (cachedResult != null) {
+            return cachedResult;
         }
 
         Optional<PaymentAccount> accountOptional = PaymentAccountUtil.getMostMaturePaymentAccountForOffer(offer,
-                user.getPaymentAccounts(),
+                paymentAccounts,
                 accountAgeWitnessService);
         long myTradeLimit = accountOptional
                 .map(paymentAccount -> accountAgeWitnessService.getMyTradeLimit(paymentAccount,
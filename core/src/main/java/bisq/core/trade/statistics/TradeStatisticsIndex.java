@@ -0,0 +1,242 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package bisq.core.trade.statistics;
+
+import com.google.common.primitives.UnsignedBytes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import lombok.Value;
+
+import javax.annotation.Nullable;
+
+/**
+ * Index of the trade statistics sorted by trade date, of all currencies and by currency, and of the most recent
+ * trades of all currencies. It gets updated incrementally, so callers do not need to copy and sort the full set of
+ * trade statistics.
+ *
+ * New trade statistics are usually the most recent ones, in which case adding is O(1) amortized. Late arriving
+ * older ones get inserted at their position. Trades with the same date are ordered by their hash, so the order is
+ * the same on each call, which is required for paging with a {@link Cursor}.
+ */
+public class TradeStatisticsIndex {
+    private static final Comparator<byte[]> HASH_COMPARATOR = UnsignedBytes.lexicographicalComparator();
+    static final Comparator<TradeStatistics3> DATE_COMPARATOR = Comparator.comparingLong(TradeStatistics3::getDateAsLong)
+            .thenComparing(TradeStatistics3::getHash, HASH_COMPARATOR);
+
+    /**
+     * Position after the trade statistics with the given date and hash.
+     */
+    @Value
+    public static class Cursor {
+        long date;
+        byte[] hash;
+
+        public static Cursor of(TradeStatistics3 tradeStatistics) {
+            return new Cursor(tradeStatistics.getDateAsLong(), tradeStatistics.getHash());
+        }
+    }
+
+    private final int numLatest;
+    private final List<TradeStatistics3> all = new ArrayList<>();
+    private final Map<String, List<TradeStatistics3>> byCurrency = new HashMap<>();
+    // The numLatest most recent trade statistics, sorted by date
+    private final List<TradeStatistics3> latest = new ArrayList<>();
+
+    public TradeStatisticsIndex(int numLatest) {
+        this.numLatest = numLatest;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Update
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Adds trade statistics which are not in the index yet.
+     */
+    public synchronized void add(TradeStatistics3 tradeStatistics) {
+        insertSorted(all, tradeStatistics);
+        insertSorted(byCurrency.computeIfAbsent(tradeStatistics.getCurrency(), currency -> new ArrayList<>()),
+                tradeStatistics);
+
+        if (latest.size() < numLatest || DATE_COMPARATOR.compare(tradeStatistics, latest.get(0)) > 0) {
+            insertSorted(latest, tradeStatistics);
+            if (latest.size() > numLatest) {
+                latest.remove(0);
+            }
+        }
+    }
+
+    /**
+     * Adds trade statistics which are not in the index yet. Sorts only once, so prefer that for large collections.
+     */
+    public synchronized void addAll(Collection<TradeStatistics3> tradeStatisticsCollection) {
+        tradeStatisticsCollection.forEach(tradeStatistics ->
+                byCurrency.computeIfAbsent(tradeStatistics.getCurrency(), currency -> new ArrayList<>()).add(tradeStatistics));
+        byCurrency.values().forEach(list -> list.sort(DATE_COMPARATOR));
+        all.addAll(tradeStatisticsCollection);
+        all.sort(DATE_COMPARATOR);
+
+        latest.addAll(tradeStatisticsCollection);
+        latest.sort(DATE_COMPARATOR);
+        if (latest.size() > numLatest) {
+            latest.subList(0, latest.size() - numLatest).clear();
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Queries
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return Up to numLatest most recent trade statistics of all currencies, most recent first
+     */
+    public synchronized List<TradeStatistics3> getLatest() {
+        List<TradeStatistics3> result = new ArrayList<>(latest);
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * @return Most recent trade statistics of the given currency
+     */
+    public synchronized Optional<TradeStatistics3> getLatest(String currencyCode) {
+        List<TradeStatistics3> list = byCurrency.get(currencyCode);
+        return list == null || list.isEmpty() ? Optional.empty() : Optional.of(list.get(list.size() - 1));
+    }
+
+    /**
+     * @return Most recent trade statistics of each currency
+     */
+    public synchronized Set<TradeStatistics3> getLatestOfEachCurrency() {
+        Set<TradeStatistics3> result = new HashSet<>();
+        byCurrency.values().stream()
+                .filter(list -> !list.isEmpty())
+                .forEach(list -> result.add(list.get(list.size() - 1)));
+        return result;
+    }
+
+    /**
+     * @return Trade statistics of the given currency with a date at or after the given date, sorted by date
+     */
+    public synchronized List<TradeStatistics3> getSince(String currencyCode, long date) {
+        List<TradeStatistics3> list = byCurrency.get(currencyCode);
+        if (list == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(list.subList(lowerBound(list, date), list.size()));
+    }
+
+
+    /**
+     * @param currencyCode  Currency of the trades or null for all currencies
+     * @param fromDate      Min. date (inclusive)
+     * @param toDate        Max. date (exclusive)
+     * @param after         If not null only trades after the cursor are returned
+     * @param limit         Max. number of trades to return
+     * @return Trade statistics in the given range, sorted by date
+     */
+    public synchronized List<TradeStatistics3> getRange(@Nullable String currencyCode,
+                                                        long fromDate,
+                                                        long toDate,
+                                                        @Nullable Cursor after,
+                                                        int limit) {
+        List<TradeStatistics3> list = currencyCode != null ? byCurrency.get(currencyCode) : all;
+        List<TradeStatistics3> result = new ArrayList<>();
+        if (list == null) {
+            return result;
+        }
+
+        int index = lowerBound(list, fromDate);
+        if (after != null) {
+            index = Math.max(index, upperBound(list, after));
+        }
+        for (; index < list.size() && result.size() < limit; index++) {
+            TradeStatistics3 tradeStatistics = list.get(index);
+            if (tradeStatistics.getDateAsLong() >= toDate) {
+                break;
+            }
+            result.add(tradeStatistics);
+        }
+        return result;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static void insertSorted(List<TradeStatistics3> list, TradeStatistics3 tradeStatistics) {
+        int index = list.size();
+        // Fast path for the usual case of a new most recent trade
+        if (!list.isEmpty() && DATE_COMPARATOR.compare(tradeStatistics, list.get(index - 1)) < 0) {
+            index = Collections.binarySearch(list, tradeStatistics, DATE_COMPARATOR);
+            if (index < 0) {
+                index = -index - 1;
+            }
+        }
+        list.add(index, tradeStatistics);
+    }
+
+    // Index of the first element after the cursor
+    private static int upperBound(List<TradeStatistics3> list, Cursor cursor) {
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            TradeStatistics3 tradeStatistics = list.get(mid);
+            int compare = Long.compare(tradeStatistics.getDateAsLong(), cursor.getDate());
+            if (compare == 0) {
+                compare = HASH_COMPARATOR.compare(tradeStatistics.getHash(), cursor.getHash());
+            }
+            if (compare <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Index of the first element with a date >= the given date
+    private static int lowerBound(List<TradeStatistics3> list, long date) {
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (list.get(mid).getDateAsLong() < date) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -20,6 +20,7 @@ package bisq.core.trade.statistics;
 import bisq.core.locale.CurrencyTuple;
 import bisq.core.locale.CurrencyUtil;
 import bisq.core.locale.Res;
+import bisq.core.offer.availability.DisputeAgentSelection;
 import bisq.core.provider.price.PriceFeedService;
 import bisq.core.trade.BuyerTrade;
 import bisq.core.trade.Trade;
@@ -45,7 +46,10 @@ import java.time.Instant;
 import java.io.File;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -64,6 +68,7 @@ public class TradeStatisticsManager {
     private final File storageDir;
     private final boolean dumpStatistics;
     private final ObservableSet<TradeStatistics3> observableTradeStatisticsSet = FXCollections.observableSet();
+    private final TradeStatisticsIndex tradeStatisticsIndex = new TradeStatisticsIndex(DisputeAgentSelection.LOOK_BACK_RANGE);
     private JsonFileManager jsonFileManager;
 
     @Inject
@@ -99,8 +104,14 @@ public class TradeStatisticsManager {
                 if (!tradeStatistics.isValid()) {
                     return;
                 }
-                observableTradeStatisticsSet.add(tradeStatistics);
-                priceFeedService.applyLatestBisqMarketPrice(observableTradeStatisticsSet);
+                if (!observableTradeStatisticsSet.add(tradeStatistics)) {
+                    return;
+                }
+                tradeStatisticsIndex.add(tradeStatistics);
+                // Only the most recent trade of a currency defines its market price
+                if (tradeStatisticsIndex.getLatest(tradeStatistics.getCurrency()).orElse(null) == tradeStatistics) {
+                    priceFeedService.applyLatestBisqMarketPrice(Collections.singleton(tradeStatistics));
+                }
                 maybeDumpStatistics();
             }
         });
@@ -109,9 +120,11 @@ public class TradeStatisticsManager {
                 .filter(e -> e instanceof TradeStatistics3)
                 .map(e -> (TradeStatistics3) e)
                 .filter(TradeStatistics3::isValid)
+                .filter(e -> !observableTradeStatisticsSet.contains(e))
                 .collect(Collectors.toSet());
         observableTradeStatisticsSet.addAll(set);
-        priceFeedService.applyLatestBisqMarketPrice(observableTradeStatisticsSet);
+        tradeStatisticsIndex.addAll(set);
+        priceFeedService.applyLatestBisqMarketPrice(tradeStatisticsIndex.getLatestOfEachCurrency());
         maybeDumpStatistics();
     }
 
@@ -119,6 +132,36 @@ public class TradeStatisticsManager {
         return observableTradeStatisticsSet;
     }
 
+    /**
+     * @return The most recent trade statistics of all currencies, most recent first. Contains up to
+     * {@link DisputeAgentSelection#LOOK_BACK_RANGE} entries.
+     */
+    public List<TradeStatistics3> getLatestTradeStatistics() {
+        return tradeStatisticsIndex.getLatest();
+    }
+
+    public Optional<TradeStatistics3> getLatestTradeStatistics(String currencyCode) {
+        return tradeStatisticsIndex.getLatest(currencyCode);
+    }
+
+    /**
+     * @return Trade statistics of the given currency since the given date, sorted by date
+     */
+    public List<TradeStatistics3> getTradeStatisticsSince(String currencyCode, Date date) {
+        return tradeStatisticsIndex.getSince(currencyCode, date.getTime());
+    }
+
+    /**
+     * See {@link TradeStatisticsIndex#getRange}
+     */
+    public List<TradeStatistics3> getTradeStatistics(@Nullable String currencyCode,
+                                                     long fromDate,
+                                                     long toDate,
+                                                     @Nullable TradeStatisticsIndex.Cursor after,
+                                                     int limit) {
+        return tradeStatisticsIndex.getRange(currencyCode, fromDate, toDate, after, limit);
+    }
+
     private void maybeDumpStatistics() {
         if (!dumpStatistics) {
             return;
@@ -171,7 +214,6 @@ public class TradeStatisticsManager {
                                               @Nullable String referralId,
                                               boolean isTorNetworkNode) {
         long ts = System.currentTimeMillis();
-        Set<P2PDataStorage.ByteArray> hashes = tradeStatistics3StorageService.getMapOfAllData().keySet();
         trades.forEach(trade -> {
             if (trade instanceof BuyerTrade) {
                 log.debug("Trade: {} is a buyer trade, we only republish we have been seller.",
@@ -180,7 +222,7 @@ public class TradeStatisticsManager {
             }
 
             TradeStatistics3 tradeStatistics3 = TradeStatistics3.from(trade, referralId, isTorNetworkNode);
-            boolean hasTradeStatistics3 = hashes.contains(new P2PDataStorage.ByteArray(tradeStatistics3.getHash()));
+            boolean hasTradeStatistics3 = tradeStatistics3StorageService.containsKey(new P2PDataStorage.ByteArray(tradeStatistics3.getHash()));
             if (hasTradeStatistics3) {
                 log.debug("Trade: {}. We have already a tradeStatistics matching the hash of tradeStatistics3.",
                         trade.getShortId());
@@ -534,7 +534,8 @@ public final class Preferences implements PersistedDataHost, BridgeAddressProvid
     }
 
     public void setIgnoreTradersList(List<String> ignoreTradersList) {
-        prefPayload.setIgnoreTradersList(ignoreTradersList);
+        // The list gets read by the API threads when they filter the offer book, so we store an immutable copy
+        prefPayload.setIgnoreTradersList(List.copyOf(ignoreTradersList));
         requestPersistence();
     }
 
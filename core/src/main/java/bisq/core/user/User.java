@@ -153,8 +153,9 @@ public class User implements PersistedDataHost {
         }
     }
 
+    // Synchronized with the changes of the accepted mediators, as the API threads use it when they filter the offer book
     @Nullable
-    public Mediator getAcceptedMediatorByAddress(NodeAddress nodeAddress) {
+    public synchronized Mediator getAcceptedMediatorByAddress(NodeAddress nodeAddress) {
         final List<Mediator> acceptedMediators = userPayload.getAcceptedMediators();
         if (acceptedMediators != null) {
             Optional<Mediator> mediatorOptionalOptional = acceptedMediators.stream()
@@ -262,7 +263,7 @@ public class User implements PersistedDataHost {
         }
     }
 
-    public boolean addAcceptedMediator(Mediator mediator) {
+    public synchronized boolean addAcceptedMediator(Mediator mediator) {
         List<Mediator> mediators = userPayload.getAcceptedMediators();
         if (mediators != null && !mediators.contains(mediator) && !isMyOwnRegisteredMediator(mediator)) {
             mediators.add(mediator);
@@ -273,7 +274,7 @@ public class User implements PersistedDataHost {
         }
     }
 
-    public void removeAcceptedMediator(Mediator mediator) {
+    public synchronized void removeAcceptedMediator(Mediator mediator) {
         if (userPayload.getAcceptedMediators() != null) {
             boolean changed = userPayload.getAcceptedMediators().remove(mediator);
             if (changed)
@@ -281,7 +282,7 @@ public class User implements PersistedDataHost {
         }
     }
 
-    public void clearAcceptedMediators() {
+    public synchronized void clearAcceptedMediators() {
         if (userPayload.getAcceptedMediators() != null) {
             userPayload.getAcceptedMediators().clear();
             requestPersistence();
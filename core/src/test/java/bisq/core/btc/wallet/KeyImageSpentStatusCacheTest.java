@@ -0,0 +1,158 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package bisq.core.btc.wallet;
+
+import bisq.core.btc.setup.WalletsSetup;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import javafx.beans.property.LongProperty;
+import javafx.beans.property.SimpleLongProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import monero.daemon.MoneroDaemon;
+import monero.daemon.model.MoneroKeyImageSpentStatus;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class KeyImageSpentStatusCacheTest {
+    private final Map<String, MoneroKeyImageSpentStatus> statusesOfDaemon = new HashMap<>();
+    private final List<List<String>> requests = new ArrayList<>();
+    private final LongProperty chainHeight = new SimpleLongProperty();
+    private XmrWalletService xmrWalletService;
+    private KeyImageSpentStatusCache cache;
+
+    @Before
+    public void setUp() {
+        MoneroDaemon daemon = mock(MoneroDaemon.class);
+        when(daemon.getKeyImageSpentStatuses(anyList())).thenAnswer(invocation -> {
+            List<String> keyImages = new ArrayList<>(invocation.getArgument(0));
+            requests.add(keyImages);
+            return keyImages.stream()
+                    .map(keyImage -> statusesOfDaemon.getOrDefault(keyImage, MoneroKeyImageSpentStatus.NOT_SPENT))
+                    .collect(Collectors.toList());
+        });
+        xmrWalletService = mock(XmrWalletService.class);
+        when(xmrWalletService.getDaemon()).thenReturn(daemon);
+        WalletsSetup walletsSetup = mock(WalletsSetup.class);
+        when(walletsSetup.chainHeightProperty()).thenReturn(chainHeight);
+
+        // Refresh in the calling thread so the requests to the daemon are deterministic
+        cache = new KeyImageSpentStatusCache(xmrWalletService, walletsSetup, MoreExecutors.newDirectExecutorService());
+    }
+
+    @Test
+    public void testTrackedKeyImagesAreServedFromCache() {
+        statusesOfDaemon.put("b", MoneroKeyImageSpentStatus.TX_POOL);
+        cache.track("offer1", Arrays.asList("a", "b"));
+        assertEquals(Collections.singletonList(Arrays.asList("a", "b")), requests);
+
+        assertEquals(Collections.singleton("b"), cache.getSpentKeyImages(Arrays.asList("a", "b")));
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    public void testRefreshOnNewBlockUpdatesStatus() {
+        cache.track("offer1", Collections.singletonList("a"));
+        assertTrue(cache.getSpentKeyImages(Collections.singletonList("a")).isEmpty());
+
+        statusesOfDaemon.put("a", MoneroKeyImageSpentStatus.TX_POOL);
+        chainHeight.set(1);
+        assertEquals(Collections.singleton("a"), cache.getSpentKeyImages(Collections.singletonList("a")));
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void testConfirmedKeyImagesAreNotRequestedAgain() {
+        statusesOfDaemon.put("a", MoneroKeyImageSpentStatus.CONFIRMED);
+        statusesOfDaemon.put("b", MoneroKeyImageSpentStatus.TX_POOL);
+        cache.track("offer1", Arrays.asList("a", "b", "c"));
+
+        chainHeight.set(1);
+        assertEquals(2, requests.size());
+        assertEquals(Arrays.asList("b", "c"), requests.get(1));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")),
+                cache.getSpentKeyImages(Arrays.asList("a", "b", "c")));
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void testUntrackedKeyImagesAreNotRefreshed() {
+        cache.track("offer1", Collections.singletonList("a"));
+        cache.track("offer2", Collections.singletonList("b"));
+        requests.clear();
+
+        cache.untrack("offer1");
+        chainHeight.set(1);
+        assertEquals(Collections.singletonList(Collections.singletonList("b")), requests);
+
+        // The status of "a" got dropped with the refresh, so it is unknown again
+        statusesOfDaemon.put("a", MoneroKeyImageSpentStatus.CONFIRMED);
+        assertEquals(Collections.singleton("a"), cache.getSpentKeyImages(Collections.singletonList("a")));
+        assertEquals(Collections.singletonList("a"), requests.get(1));
+    }
+
+    @Test
+    public void testUnknownKeyImagesAreRequestedOnce() {
+        statusesOfDaemon.put("x", MoneroKeyImageSpentStatus.CONFIRMED);
+        assertEquals(Collections.singleton("x"), cache.getSpentKeyImages(Arrays.asList("x", "y", "x")));
+        assertEquals(Collections.singletonList(Arrays.asList("x", "y")), requests);
+
+        assertEquals(Collections.singleton("x"), cache.getSpentKeyImages(Arrays.asList("x", "y")));
+        assertEquals(1, requests.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownKeyImagesFailWithoutDaemon() {
+        when(xmrWalletService.getDaemon()).thenReturn(null);
+        cache.getSpentKeyImages(Collections.singletonList("x"));
+    }
+
+    @Test
+    public void testKnownKeyImagesAreServedWithoutDaemon() {
+        statusesOfDaemon.put("a", MoneroKeyImageSpentStatus.TX_POOL);
+        cache.track("offer1", Collections.singletonList("a"));
+
+        when(xmrWalletService.getDaemon()).thenReturn(null);
+        assertEquals(Collections.singleton("a"), cache.getSpentKeyImages(Collections.singletonList("a")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFailedRequestOfUnknownKeyImagesIsPropagated() {
+        MoneroDaemon daemon = mock(MoneroDaemon.class);
+        when(daemon.getKeyImageSpentStatuses(anyList())).thenThrow(new IllegalStateException("daemon failed"));
+        when(xmrWalletService.getDaemon()).thenReturn(daemon);
+        cache.getSpentKeyImages(Collections.singletonList("x"));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package bisq.core.offer;
+
+import bisq.core.filter.FilterManager;
+import bisq.core.provider.price.PriceFeedService;
+
+import bisq.network.p2p.P2PService;
+import bisq.network.p2p.storage.HashMapChangedListener;
+import bisq.network.p2p.storage.payload.ProtectedStorageEntry;
+
+import java.nio.file.Files;
+
+import java.io.IOException;
+
+import java.util.Collections;
+import java.util.HashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.mockito.ArgumentCaptor;
+
+import static bisq.core.offer.OfferMaker.btcUsdOffer;
+import static bisq.core.offer.OfferMaker.counterCurrencyCode;
+import static bisq.core.offer.OfferMaker.direction;
+import static bisq.core.offer.OfferMaker.id;
+import static com.natpryce.makeiteasy.MakeItEasy.make;
+import static com.natpryce.makeiteasy.MakeItEasy.with;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OfferBookServiceTest {
+    private OfferBookService offerBookService;
+    private HashMapChangedListener hashMapChangedListener;
+
+    @Before
+    public void setUp() throws IOException {
+        P2PService p2PService = mock(P2PService.class);
+        when(p2PService.getDataMap()).thenReturn(new HashMap<>());
+        offerBookService = new OfferBookService(p2PService,
+                mock(PriceFeedService.class),
+                mock(FilterManager.class),
+                Files.createTempDirectory("OfferBookServiceTest").toFile(),
+                false);
+
+        ArgumentCaptor<HashMapChangedListener> captor = ArgumentCaptor.forClass(HashMapChangedListener.class);
+        verify(p2PService).addHashSetChangedListener(captor.capture());
+        hashMapChangedListener = captor.getValue();
+    }
+
+    private static ProtectedStorageEntry createEntry(OfferPayload offerPayload) {
+        ProtectedStorageEntry protectedStorageEntry = mock(ProtectedStorageEntry.class);
+        when(protectedStorageEntry.getProtectedStoragePayload()).thenReturn(offerPayload);
+        return protectedStorageEntry;
+    }
+
+    @Test
+    public void testIndexIsUpdatedByChangedListener() {
+        OfferPayload buyUsd = make(btcUsdOffer.but(with(id, "1"))).getOfferPayload();
+        OfferPayload sellUsd = make(btcUsdOffer.but(with(id, "2"), with(direction, OfferPayload.Direction.SELL))).getOfferPayload();
+        OfferPayload buyEur = make(btcUsdOffer.but(with(id, "3"), with(counterCurrencyCode, "EUR"))).getOfferPayload();
+        hashMapChangedListener.onAdded(Collections.singletonList(createEntry(buyUsd)));
+        hashMapChangedListener.onAdded(Collections.singletonList(createEntry(sellUsd)));
+        hashMapChangedListener.onAdded(Collections.singletonList(createEntry(buyEur)));
+
+        assertEquals(3, offerBookService.getOffers().size());
+        assertEquals(sellUsd, offerBookService.findOffer("2").get().getOfferPayload());
+        assertEquals(1, offerBookService.getOffers("buy", "usd").size());
+        assertEquals(buyEur, offerBookService.getOffers("BUY", "EUR").get(0).getOfferPayload());
+        assertTrue(offerBookService.getOffers("SELL", "EUR").isEmpty());
+
+        hashMapChangedListener.onRemoved(Collections.singletonList(createEntry(sellUsd)));
+        assertFalse(offerBookService.findOffer("2").isPresent());
+        assertTrue(offerBookService.getOffers("SELL", "USD").isEmpty());
+        assertEquals(2, offerBookService.getOffers().size());
+    }
+
+    @Test
+    public void testStateOfOfferIsNotShared() {
+        OfferPayload offerPayload = make(btcUsdOffer).getOfferPayload();
+        hashMapChangedListener.onAdded(Collections.singletonList(createEntry(offerPayload)));
+        Offer offer = offerBookService.findOffer(offerPayload.getId()).get();
+        offer.setState(Offer.State.NOT_AVAILABLE);
+
+        Offer otherOffer = offerBookService.getOffers("BUY", "USD").get(0);
+        assertNotSame(offer, otherOffer);
+        assertEquals(Offer.State.UNKNOWN, otherOffer.getState());
+
+        // Republishing the same payload does not add another offer
+        hashMapChangedListener.onAdded(Collections.singletonList(createEntry(offerPayload)));
+        assertEquals(1, offerBookService.getOffers().size());
+    }
+}
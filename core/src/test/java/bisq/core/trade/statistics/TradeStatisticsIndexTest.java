@@ -0,0 +1,104 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package bisq.core.trade.statistics;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TradeStatisticsIndexTest {
+    private static TradeStatistics3 createTradeStatistics(String currency, long date) {
+        TradeStatistics3 tradeStatistics = mock(TradeStatistics3.class);
+        when(tradeStatistics.getCurrency()).thenReturn(currency);
+        when(tradeStatistics.getDateAsLong()).thenReturn(date);
+        when(tradeStatistics.getHash()).thenReturn((currency + date).getBytes(StandardCharsets.UTF_8));
+        return tradeStatistics;
+    }
+
+    @Test
+    public void testAdd() {
+        TradeStatisticsIndex index = new TradeStatisticsIndex(2);
+        TradeStatistics3 usd1 = createTradeStatistics("USD", 1);
+        TradeStatistics3 usd3 = createTradeStatistics("USD", 3);
+        TradeStatistics3 eur2 = createTradeStatistics("EUR", 2);
+        TradeStatistics3 usd2 = createTradeStatistics("USD", 2);
+        index.add(usd1);
+        index.add(usd3);
+        index.add(eur2);
+        // Arrives late
+        index.add(usd2);
+
+        assertEquals(Arrays.asList(usd1, usd2, usd3), index.getSince("USD", 0));
+        assertEquals(Arrays.asList(usd2, usd3), index.getSince("USD", 2));
+        assertTrue(index.getSince("USD", 4).isEmpty());
+        assertTrue(index.getSince("BTC", 0).isEmpty());
+
+        assertSame(usd3, index.getLatest("USD").get());
+        assertSame(eur2, index.getLatest("EUR").get());
+        assertFalse(index.getLatest("BTC").isPresent());
+
+        // Same date, so ordered by hash
+        assertEquals(Arrays.asList(usd3, usd2), index.getLatest());
+    }
+
+    @Test
+    public void testGetRange() {
+        TradeStatisticsIndex index = new TradeStatisticsIndex(2);
+        TradeStatistics3 usd1 = createTradeStatistics("USD", 1);
+        TradeStatistics3 eur2 = createTradeStatistics("EUR", 2);
+        TradeStatistics3 usd2 = createTradeStatistics("USD", 2);
+        TradeStatistics3 usd3 = createTradeStatistics("USD", 3);
+        index.addAll(Arrays.asList(usd3, usd2, eur2, usd1));
+
+        assertEquals(Arrays.asList(usd1, eur2, usd2, usd3), index.getRange(null, 0, Long.MAX_VALUE, null, 10));
+        assertEquals(Arrays.asList(eur2, usd2), index.getRange(null, 2, 3, null, 10));
+        assertEquals(Arrays.asList(usd2, usd3), index.getRange("USD", 2, Long.MAX_VALUE, null, 10));
+
+        // Paging with a cursor between trades with the same date
+        List<TradeStatistics3> page = index.getRange(null, 0, Long.MAX_VALUE, null, 2);
+        assertEquals(Arrays.asList(usd1, eur2), page);
+        TradeStatisticsIndex.Cursor cursor = TradeStatisticsIndex.Cursor.of(page.get(1));
+        assertEquals(Arrays.asList(usd2, usd3), index.getRange(null, 0, Long.MAX_VALUE, cursor, 2));
+        assertTrue(index.getRange(null, 0, Long.MAX_VALUE, TradeStatisticsIndex.Cursor.of(usd3), 2).isEmpty());
+    }
+
+    @Test
+    public void testAddAll() {
+        TradeStatisticsIndex index = new TradeStatisticsIndex(2);
+        TradeStatistics3 usd1 = createTradeStatistics("USD", 1);
+        TradeStatistics3 usd3 = createTradeStatistics("USD", 3);
+        TradeStatistics3 eur2 = createTradeStatistics("EUR", 2);
+        index.addAll(Arrays.asList(usd3, eur2, usd1));
+
+        assertEquals(Arrays.asList(usd1, usd3), index.getSince("USD", 0));
+        assertEquals(Arrays.asList(usd3, eur2), index.getLatest());
+        assertEquals(2, index.getLatestOfEachCurrency().size());
+        assertTrue(index.getLatestOfEachCurrency().contains(usd3));
+    }
+}
@@ -21,6 +21,7 @@ import bisq.core.app.HavenoHeadlessAppMain;
 import bisq.core.app.HavenoSetup;
 import bisq.core.app.CoreModule;
 
+import bisq.common.TimingWheelTimer;
 import bisq.common.UserThread;
 import bisq.common.app.AppModule;
 import bisq.common.handlers.ResultHandler;
@@ -56,6 +57,7 @@ public class HavenoDaemonMain extends HavenoHeadlessAppMain implements HavenoSet
                 .setDaemon(true)
                 .build();
         UserThread.setExecutor(Executors.newSingleThreadExecutor(threadFactory));
+        UserThread.setTimerClass(TimingWheelTimer.class);
     }
 
     @Override
@@ -2,16 +2,21 @@ package bisq.daemon.grpc;
 
 import bisq.core.api.CoreApi;
 import bisq.core.trade.statistics.TradeStatistics3;
+import bisq.core.trade.statistics.TradeStatisticsIndex;
+
+import bisq.common.util.Utilities;
 
 import bisq.proto.grpc.GetTradeStatisticsReply;
 import bisq.proto.grpc.GetTradeStatisticsRequest;
 
 import io.grpc.ServerInterceptor;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 
 import javax.inject.Inject;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -20,6 +25,8 @@ import lombok.extern.slf4j.Slf4j;
 import static bisq.daemon.grpc.interceptor.GrpcServiceRateMeteringConfig.getCustomRateMeteringInterceptor;
 import static bisq.proto.grpc.GetTradeStatisticsGrpc.GetTradeStatisticsImplBase;
 import static bisq.proto.grpc.GetTradeStatisticsGrpc.getGetTradeStatisticsMethod;
+import static bisq.proto.grpc.GetTradeStatisticsGrpc.getStreamTradeStatisticsMethod;
+import static java.lang.String.format;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 
@@ -29,6 +36,8 @@ import bisq.daemon.grpc.interceptor.GrpcCallRateMeter;
 
 @Slf4j
 class GrpcGetTradeStatisticsService extends GetTradeStatisticsImplBase {
+    // Number of trade statistics per reply of the stream
+    private static final int STREAM_BATCH_SIZE = 1000;
 
     private final CoreApi coreApi;
     private final GrpcExceptionHandler exceptionHandler;
@@ -43,18 +52,104 @@ class GrpcGetTradeStatisticsService extends GetTradeStatisticsImplBase {
     public void getTradeStatistics(GetTradeStatisticsRequest req,
                                    StreamObserver<GetTradeStatisticsReply> responseObserver) {
         try {
-            var tradeStatistics = coreApi.getTradeStatistics().stream()
-                    .map(TradeStatistics3::toProtoTradeStatistics3)
-                    .collect(Collectors.toList());
-
-            var reply = GetTradeStatisticsReply.newBuilder().addAllTradeStatistics(tradeStatistics).build();
-            responseObserver.onNext(reply);
+            int limit = req.getLimit() > 0 ? req.getLimit() : Integer.MAX_VALUE;
+            // We request one more to know whether there are more trade statistics after this page
+            var tradeStatistics = getTradeStatistics(req, parseCursor(req.getCursor()), limit == Integer.MAX_VALUE ? limit : limit + 1);
+            boolean hasMore = tradeStatistics.size() > limit;
+            if (hasMore) {
+                tradeStatistics = tradeStatistics.subList(0, limit);
+            }
+
+            responseObserver.onNext(toReply(tradeStatistics, hasMore));
             responseObserver.onCompleted();
         } catch (Throwable cause) {
             exceptionHandler.handleException(log, cause, responseObserver);
         }
     }
 
+    @Override
+    public void streamTradeStatistics(GetTradeStatisticsRequest req,
+                                      StreamObserver<GetTradeStatisticsReply> responseObserver) {
+        try {
+            var serverCallStreamObserver = (ServerCallStreamObserver<GetTradeStatisticsReply>) responseObserver;
+            var cursor = parseCursor(req.getCursor());
+            // We only create the next batch if the client is ready to receive it, so we never hold more than one
+            // batch in memory.
+            serverCallStreamObserver.setOnReadyHandler(new Runnable() {
+                private TradeStatisticsIndex.Cursor nextCursor = cursor;
+                private long numRemaining = req.getLimit() > 0 ? req.getLimit() : Long.MAX_VALUE;
+                private boolean completed;
+
+                @Override
+                public void run() {
+                    try {
+                        while (!completed && serverCallStreamObserver.isReady() && !serverCallStreamObserver.isCancelled()) {
+                            int batchSize = (int) Math.min(STREAM_BATCH_SIZE, numRemaining);
+                            var tradeStatistics = batchSize > 0 ?
+                                    getTradeStatistics(req, nextCursor, batchSize) :
+                                    List.<TradeStatistics3>of();
+                            if (tradeStatistics.isEmpty()) {
+                                completed = true;
+                                serverCallStreamObserver.onCompleted();
+                                return;
+                            }
+
+                            serverCallStreamObserver.onNext(toReply(tradeStatistics, true));
+                            nextCursor = TradeStatisticsIndex.Cursor.of(tradeStatistics.get(tradeStatistics.size() - 1));
+                            numRemaining -= tradeStatistics.size();
+                        }
+                    } catch (Throwable cause) {
+                        completed = true;
+                        exceptionHandler.handleException(log, cause, responseObserver);
+                    }
+                }
+            });
+        } catch (Throwable cause) {
+            exceptionHandler.handleException(log, cause, responseObserver);
+        }
+    }
+
+    private List<TradeStatistics3> getTradeStatistics(GetTradeStatisticsRequest req,
+                                                      TradeStatisticsIndex.Cursor after,
+                                                      int limit) {
+        return coreApi.getTradeStatistics(req.getCurrencyCode().isEmpty() ? null : req.getCurrencyCode(),
+                req.getFromDate(),
+                req.getToDate() > 0 ? req.getToDate() : Long.MAX_VALUE,
+                after,
+                limit);
+    }
+
+    private static GetTradeStatisticsReply toReply(List<TradeStatistics3> tradeStatistics, boolean withNextCursor) {
+        var builder = GetTradeStatisticsReply.newBuilder()
+                .addAllTradeStatistics(tradeStatistics.stream()
+                        .map(TradeStatistics3::toProtoTradeStatistics3)
+                        .collect(Collectors.toList()));
+        if (withNextCursor && !tradeStatistics.isEmpty()) {
+            builder.setNextCursor(toCursorString(TradeStatisticsIndex.Cursor.of(tradeStatistics.get(tradeStatistics.size() - 1))));
+        }
+        return builder.build();
+    }
+
+    // The cursor is the date and hash of the last trade statistics the client has received
+    private static String toCursorString(TradeStatisticsIndex.Cursor cursor) {
+        return cursor.getDate() + ":" + Utilities.encodeToHex(cursor.getHash());
+    }
+
+    private static TradeStatisticsIndex.Cursor parseCursor(String cursor) {
+        if (cursor.isEmpty()) {
+            return null;
+        }
+        String[] tokens = cursor.split(":");
+        if (tokens.length != 2) {
+            throw new IllegalArgumentException(format("invalid cursor '%s'", cursor));
+        }
+        try {
+            return new TradeStatisticsIndex.Cursor(Long.parseLong(tokens[0]), Utilities.decodeFromHex(tokens[1]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException(format("invalid cursor '%s'", cursor));
+        }
+    }
+
     final ServerInterceptor[] interceptors() {
         Optional<ServerInterceptor> rateMeteringInterceptor = rateMeteringInterceptor();
         return rateMeteringInterceptor.map(serverInterceptor ->
@@ -66,6 +161,7 @@ class GrpcGetTradeStatisticsService extends GetTradeStatisticsImplBase {
                 .or(() -> Optional.of(CallRateMeteringInterceptor.valueOf(
                         new HashMap<>() {{
                             put(getGetTradeStatisticsMethod().getFullMethodName(), new GrpcCallRateMeter(1, SECONDS));
+                            put(getStreamTradeStatisticsMethod().getFullMethodName(), new GrpcCallRateMeter(1, SECONDS));
                         }}
                 )));
     }
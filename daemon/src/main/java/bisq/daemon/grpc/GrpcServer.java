@@ -21,6 +21,7 @@ import bisq.core.api.CoreContext;
 
 import bisq.common.UserThread;
 import bisq.common.config.Config;
+import bisq.common.util.Utilities;
 
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
@@ -31,12 +32,19 @@ import javax.inject.Singleton;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
 import lombok.extern.slf4j.Slf4j;
 
+import javax.annotation.Nullable;
+
 import static io.grpc.ServerInterceptors.interceptForward;
 
 
 
+import bisq.daemon.grpc.interceptor.CallExecutionInterceptor;
 import bisq.daemon.grpc.interceptor.PasswordAuthInterceptor;
 
 @Singleton
@@ -44,11 +52,15 @@ import bisq.daemon.grpc.interceptor.PasswordAuthInterceptor;
 public class GrpcServer {
 
     private final Server server;
+    // Null if all calls are executed on the user thread
+    @Nullable
+    private final ExecutorService executor;
 
     @Inject
     public GrpcServer(CoreContext coreContext,
                       Config config,
                       PasswordAuthInterceptor passwordAuthInterceptor,
+                      CallExecutionInterceptor callExecutionInterceptor,
                       GrpcDisputeAgentsService disputeAgentsService,
                       GrpcHelpService helpService,
                       GrpcOffersService offersService,
@@ -60,8 +72,14 @@ public class GrpcServer {
                       GrpcTradesService tradesService,
                       GrpcWalletsService walletsService,
                       GrpcNotificationsService notificationsService) {
+        // Read-only calls are executed on the API threads, all other calls get marshalled onto the user thread by
+        // the CallExecutionInterceptor.
+        this.executor = config.apiNumThreads > 0 ?
+                Utilities.getListeningExecutorService("grpc-api-%d",
+                        config.apiNumThreads, config.apiNumThreads, 60, new LinkedBlockingQueue<>()) :
+                null;
         this.server = ServerBuilder.forPort(config.apiPort)
-                .executor(UserThread.getExecutor())
+                .executor(executor != null ? executor : UserThread.getExecutor())
                 .addService(interceptForward(disputeAgentsService, disputeAgentsService.interceptors()))
                 .addService(interceptForward(helpService, helpService.interceptors()))
                 .addService(interceptForward(offersService, offersService.interceptors()))
@@ -73,6 +91,8 @@ public class GrpcServer {
                 .addService(interceptForward(versionService, versionService.interceptors()))
                 .addService(interceptForward(walletsService, walletsService.interceptors()))
                 .addService(interceptForward(notificationsService, notificationsService.interceptors()))
+                .intercept(callExecutionInterceptor)
+                // Added last so the password gets checked first
                 .intercept(passwordAuthInterceptor)
                 .build();
         coreContext.setApiUser(true);
@@ -90,6 +110,9 @@ public class GrpcServer {
     public void shutdown() {
         log.info("Server shutdown started");
         server.shutdown();
+        if (executor != null) {
+            Utilities.shutdownAndAwaitTermination(executor, 1, TimeUnit.SECONDS);
+        }
         log.info("Server shutdown complete");
     }
 }
@@ -0,0 +1,147 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package bisq.daemon.grpc.interceptor;
+
+import bisq.network.p2p.network.Histogram;
+
+import bisq.common.UserThread;
+import bisq.common.config.Config;
+
+import bisq.proto.grpc.GetTradeStatisticsGrpc;
+import bisq.proto.grpc.GetVersionGrpc;
+import bisq.proto.grpc.HelpGrpc;
+import bisq.proto.grpc.OffersGrpc;
+import bisq.proto.grpc.PaymentAccountsGrpc;
+
+import io.grpc.ForwardingServerCall.SimpleForwardingServerCall;
+import io.grpc.ForwardingServerCallListener.SimpleForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import javax.inject.Inject;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The gRPC server executes the calls on a pool of API threads. Only the read-only methods listed in
+ * READ_ONLY_METHODS, which use thread safe read paths into the core services, stay on these threads. All other
+ * calls are marshalled onto the user thread, as the core services expect to be changed from the user thread only.
+ * The offer reads filter the offer book with the thread safe caches of the account age and signed witness services
+ * and with snapshots of the user's payment accounts and preferences. GetMyOffers stays on the user thread, as it
+ * removes unreserved open offers.
+ *
+ * We also record the latency of each method and log it periodically.
+ */
+@Slf4j
+public class CallExecutionInterceptor implements ServerInterceptor {
+    private static final Set<String> READ_ONLY_METHODS = Set.of(
+            GetVersionGrpc.getGetVersionMethod().getFullMethodName(),
+            HelpGrpc.getGetMethodHelpMethod().getFullMethodName(),
+            GetTradeStatisticsGrpc.getGetTradeStatisticsMethod().getFullMethodName(),
+            GetTradeStatisticsGrpc.getStreamTradeStatisticsMethod().getFullMethodName(),
+            OffersGrpc.getGetOfferMethod().getFullMethodName(),
+            OffersGrpc.getGetOffersMethod().getFullMethodName(),
+            PaymentAccountsGrpc.getGetPaymentMethodsMethod().getFullMethodName(),
+            PaymentAccountsGrpc.getGetCryptoCurrencyPaymentMethodsMethod().getFullMethodName());
+    private static final long LOG_INTERVAL_MIN = 10;
+
+    // If false all calls are executed on the user thread
+    private final boolean useApiThreads;
+    private final Map<String, Histogram> latencyByMethod = new ConcurrentHashMap<>();
+
+    @Inject
+    public CallExecutionInterceptor(Config config) {
+        this.useApiThreads = config.apiNumThreads > 0;
+        UserThread.runPeriodically(this::logLatencies, LOG_INTERVAL_MIN, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> serverCall,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> serverCallHandler) {
+        String methodName = serverCall.getMethodDescriptor().getFullMethodName();
+        long startTime = System.nanoTime();
+        ServerCall<ReqT, RespT> timedServerCall = new SimpleForwardingServerCall<>(serverCall) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+                latencyByMethod.computeIfAbsent(methodName, key -> new Histogram()).record(latency);
+                super.close(status, trailers);
+            }
+        };
+
+        ServerCall.Listener<ReqT> listener = serverCallHandler.startCall(timedServerCall, headers);
+        if (useApiThreads && READ_ONLY_METHODS.contains(methodName)) {
+            return listener;
+        }
+        return new UserThreadListener<>(listener);
+    }
+
+    private void logLatencies() {
+        if (latencyByMethod.isEmpty()) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder("Latency of gRPC calls in ms:");
+        new TreeMap<>(latencyByMethod).forEach((methodName, histogram) ->
+                sb.append("\n     ").append(methodName).append(": ").append(histogram));
+        log.info(sb.toString());
+    }
+
+    // Executes all callbacks of the call on the user thread. The order of the callbacks is kept as the user thread
+    // executes its tasks in order.
+    private static class UserThreadListener<ReqT> extends SimpleForwardingServerCallListener<ReqT> {
+        UserThreadListener(ServerCall.Listener<ReqT> delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void onMessage(ReqT message) {
+            UserThread.execute(() -> super.onMessage(message));
+        }
+
+        @Override
+        public void onHalfClose() {
+            UserThread.execute(super::onHalfClose);
+        }
+
+        @Override
+        public void onCancel() {
+            UserThread.execute(super::onCancel);
+        }
+
+        @Override
+        public void onComplete() {
+            UserThread.execute(super::onComplete);
+        }
+
+        @Override
+        public void onReady() {
+            UserThread.execute(super::onReady);
+        }
+    }
+}
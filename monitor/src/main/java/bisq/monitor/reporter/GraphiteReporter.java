@@ -15,6 +15,7 @@
  * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
  */
 
+
 package bisq.monitor.reporter;
 
 import bisq.monitor.OnionParser;
@@ -28,20 +29,122 @@ import bisq.common.config.BaseCurrencyNetwork;
 import org.berndpruenster.netlayer.tor.TorSocket;
 
 import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import java.net.InetSocketAddress;
 import java.net.Socket;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
 
 /**
  * Reports our findings to a graphite service.
  *
+ * Metric lines are queued and sent in batches over a persistent connection by a dedicated thread, so a metric
+ * reporting hundreds of values does not need hundreds of TCP/Tor handshakes. The queue is bounded: If the graphite
+ * service is not reachable for a longer time we drop the oldest lines. After a failed write we reconnect with an
+ * increasing delay and send the failed batch again. Connecting and writing a batch are bound by timeouts, so an
+ * unresponsive graphite service or Tor circuit does not stall the reporting forever. We never read from the
+ * connection, so a stalled peer shows up as a write which does not complete.
+ *
+ * If <code>GraphiteReporter.prometheusPort</code> is configured, the latest value of each metric is also served
+ * locally for Prometheus, see {@link PrometheusEndpoint}.
+ *
  * @author Florian Reimair
  */
+@Slf4j
 public class GraphiteReporter extends Reporter {
+    private static final int DEFAULT_QUEUE_SIZE = 10000;
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final long MIN_RETRY_DELAY_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final long MAX_RETRY_DELAY_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long DEFAULT_CONNECT_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long DEFAULT_WRITE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final BlockingDeque<String> queue = new LinkedBlockingDeque<>();
+    @Nullable
+    private Thread senderThread;
+    @Nullable
+    private PrometheusEndpoint prometheusEndpoint;
+    private int prometheusPort;
+    private volatile int queueSize = DEFAULT_QUEUE_SIZE;
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile long connectTimeoutMs = DEFAULT_CONNECT_TIMEOUT_MS;
+    private volatile long writeTimeoutMs = DEFAULT_WRITE_TIMEOUT_MS;
+    private long numDroppedLines;
+    // A TorSocket cannot be created with a timeout, so we connect on another thread and stop waiting at the timeout
+    private final ExecutorService connectExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("GraphiteReporter-connect-%d")
+            .setDaemon(true)
+            .build());
+    // Closes the socket if a write does not complete in time, which ends the blocking write
+    private final ScheduledExecutorService writeTimeoutScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("GraphiteReporter-writeTimeout")
+                    .setDaemon(true)
+                    .build());
+
+    // Only accessed by the sender thread
+    @Nullable
+    private Socket socket;
+    @Nullable
+    private OutputStream outputStream;
+    @Nullable
+    private String connectedServiceUrl;
+
+    @Override
+    public synchronized void configure(Properties properties) {
+        super.configure(properties);
+
+        queueSize = Integer.parseInt(configuration.getProperty("queueSize", String.valueOf(DEFAULT_QUEUE_SIZE)));
+        batchSize = Integer.parseInt(configuration.getProperty("batchSize", String.valueOf(DEFAULT_BATCH_SIZE)));
+        connectTimeoutMs = Long.parseLong(configuration.getProperty("connectTimeout", String.valueOf(DEFAULT_CONNECT_TIMEOUT_MS)));
+        writeTimeoutMs = Long.parseLong(configuration.getProperty("writeTimeout", String.valueOf(DEFAULT_WRITE_TIMEOUT_MS)));
+
+        if (senderThread == null) {
+            senderThread = new Thread(this::sendQueuedLines, "GraphiteReporter");
+            senderThread.setDaemon(true);
+            senderThread.start();
+        }
+
+        int port = Integer.parseInt(configuration.getProperty("prometheusPort", "0"));
+        if (port != prometheusPort) {
+            if (prometheusEndpoint != null) {
+                prometheusEndpoint.stop();
+                prometheusEndpoint = null;
+            }
+            prometheusPort = port;
+            if (port > 0) {
+                try {
+                    prometheusEndpoint = new PrometheusEndpoint(port);
+                } catch (IOException e) {
+                    log.error("Could not start prometheus endpoint at port {}", port, e);
+                }
+            }
+        }
+    }
 
     @Override
     public void report(long value, String prefix) {
@@ -59,48 +162,163 @@ public class GraphiteReporter extends Reporter {
     @Override
     public void report(Map<String, String> values, String prefix) {
         String timestamp = String.valueOf(System.currentTimeMillis());
-        values.forEach((key, value) -> {
-
-            report(key, value, timestamp, prefix);
-            try {
-                // give Tor some slack
-                // TODO maybe use the pickle protocol?
-                // https://graphite.readthedocs.io/en/latest/feeding-carbon.html
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
-            }
-        });
+        values.forEach((key, value) -> report(key, value, timestamp, prefix));
     }
 
     @Override
     public void report(String key, String value, String timeInMilliseconds, String prefix) {
         // https://graphite.readthedocs.io/en/latest/feeding-carbon.html
-        String report = "bisq" + (Version.getBaseCurrencyNetwork() != 0 ? "-" + BaseCurrencyNetwork.values()[Version.getBaseCurrencyNetwork()].getNetwork() : "")
+        String name = "bisq" + (Version.getBaseCurrencyNetwork() != 0 ? "-" + BaseCurrencyNetwork.values()[Version.getBaseCurrencyNetwork()].getNetwork() : "")
                 + (prefix.isEmpty() ? "" : "." + prefix)
-                + (key.isEmpty() ? "" : "." + key)
-                + " " + value + " " + Long.parseLong(timeInMilliseconds) / 1000 + "\n";
+                + (key.isEmpty() ? "" : "." + key);
+        long timestamp = Long.parseLong(timeInMilliseconds);
 
-        try {
-            NodeAddress nodeAddress = OnionParser.getNodeAddress(configuration.getProperty("serviceUrl"));
-            Socket socket;
-            if (nodeAddress.getFullAddress().contains(".onion"))
-                socket = new TorSocket(nodeAddress.getHostName(), nodeAddress.getPort());
-            else
-                socket = new Socket(nodeAddress.getHostName(), nodeAddress.getPort());
-
-            socket.getOutputStream().write(report.getBytes(Charsets.UTF_8));
-            socket.close();
-        } catch (IOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+        PrometheusEndpoint prometheusEndpoint = this.prometheusEndpoint;
+        if (prometheusEndpoint != null) {
+            prometheusEndpoint.update(name, value, timestamp);
         }
 
+        enqueue(name + " " + value + " " + timestamp / 1000 + "\n");
     }
 
     @Override
     public void report(Map<String, String> values) {
         report(values, "");
     }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private synchronized void enqueue(String line) {
+        while (queue.size() >= queueSize && queue.pollFirst() != null) {
+            numDroppedLines++;
+            if (numDroppedLines % 1000 == 1) {
+                log.warn("Graphite queue is full. We dropped {} lines so far.", numDroppedLines);
+            }
+        }
+        queue.addLast(line);
+    }
+
+    // Puts back a batch we failed to send in front of the queue unless newer lines filled up the queue in the meantime
+    private synchronized void requeue(List<String> batch) {
+        for (int i = batch.size() - 1; i >= 0 && queue.size() < queueSize; i--) {
+            queue.addFirst(batch.get(i));
+        }
+    }
+
+    // Runs on the sender thread
+    private void sendQueuedLines() {
+        List<String> batch = new ArrayList<>();
+        long retryDelay = MIN_RETRY_DELAY_MS;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.takeFirst());
+                queue.drainTo(batch, batchSize - 1);
+
+                try {
+                    write(batch);
+                    retryDelay = MIN_RETRY_DELAY_MS;
+                } catch (IOException e) {
+                    log.warn("Sending {} lines to graphite failed. We retry in {} ms. {}",
+                            batch.size(), retryDelay, e.toString());
+                    closeSocket();
+                    requeue(batch);
+                    Thread.sleep(retryDelay);
+                    retryDelay = Math.min(MAX_RETRY_DELAY_MS, retryDelay * 2);
+                }
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable t) {
+                log.error("Unexpected error at sending to graphite", t);
+                batch.clear();
+            }
+        }
+        closeSocket();
+    }
+
+    private void write(List<String> batch) throws IOException {
+        String serviceUrl = configuration.getProperty("serviceUrl");
+        if (serviceUrl == null) {
+            throw new IOException("GraphiteReporter.serviceUrl is not configured");
+        }
+        if (outputStream == null || !serviceUrl.equals(connectedServiceUrl)) {
+            closeSocket();
+            connect(serviceUrl);
+        }
+
+        Socket connectedSocket = socket;
+        ScheduledFuture<?> writeTimeout = writeTimeoutScheduler.schedule(() -> {
+            log.warn("Writing to graphite did not complete within {} ms. We close the connection.", writeTimeoutMs);
+            closeQuietly(connectedSocket);
+        }, writeTimeoutMs, TimeUnit.MILLISECONDS);
+        try {
+            for (String line : batch) {
+                outputStream.write(line.getBytes(Charsets.UTF_8));
+            }
+            outputStream.flush();
+        } finally {
+            writeTimeout.cancel(false);
+        }
+    }
+
+    private void connect(String serviceUrl) throws IOException {
+        NodeAddress nodeAddress;
+        try {
+            nodeAddress = OnionParser.getNodeAddress(serviceUrl);
+        } catch (Exception e) {
+            throw new IOException("Invalid serviceUrl " + serviceUrl, e);
+        }
+
+        Future<Socket> future = connectExecutor.submit(() -> createSocket(nodeAddress));
+        try {
+            socket = future.get(connectTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // The socket gets closed by createSocket if the connect completes later
+            future.cancel(true);
+            throw new IOException("Connecting to " + serviceUrl + " timed out after " + connectTimeoutMs + " ms");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while connecting to " + serviceUrl);
+        }
+        outputStream = new BufferedOutputStream(socket.getOutputStream());
+        connectedServiceUrl = serviceUrl;
+    }
+
+    // Runs on the connect executor
+    private Socket createSocket(NodeAddress nodeAddress) throws IOException {
+        Socket socket;
+        if (nodeAddress.getFullAddress().contains(".onion")) {
+            socket = new TorSocket(nodeAddress.getHostName(), nodeAddress.getPort());
+        } else {
+            socket = new Socket();
+            socket.connect(new InetSocketAddress(nodeAddress.getHostName(), nodeAddress.getPort()), (int) connectTimeoutMs);
+        }
+        // We got cancelled at the timeout, so nobody will use the socket
+        if (Thread.currentThread().isInterrupted()) {
+            closeQuietly(socket);
+        }
+        return socket;
+    }
+
+    private void closeSocket() {
+        if (socket != null)
+            closeQuietly(socket);
+        socket = null;
+        outputStream = null;
+        connectedServiceUrl = null;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignore) {
+        }
+    }
 }
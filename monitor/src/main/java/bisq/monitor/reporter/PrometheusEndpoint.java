@@ -0,0 +1,101 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package bisq.monitor.reporter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import com.google.common.base.Charsets;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Local HTTP endpoint which serves the most recent value of each reported metric in the Prometheus text format
+ * at <code>/metrics</code>. Only the latest value per metric is kept, so memory usage is bounded by the number of
+ * metrics and does not grow with the number of reports.
+ */
+@Slf4j
+class PrometheusEndpoint {
+    private final Map<String, Sample> samples = new ConcurrentHashMap<>();
+    private final HttpServer server;
+
+    PrometheusEndpoint(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", this::handle);
+        server.start();
+        log.info("Serving metrics at http://localhost:{}/metrics", port);
+    }
+
+    void update(String name, String value, long timestamp) {
+        try {
+            samples.put(toPrometheusName(name), new Sample(Double.parseDouble(value), timestamp));
+        } catch (NumberFormatException e) {
+            // Prometheus only supports numeric values
+        }
+    }
+
+    void stop() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        new TreeMap<>(samples).forEach((name, sample) ->
+                sb.append(name).append(' ').append(sample.value).append(' ').append(sample.timestamp).append('\n'));
+        byte[] response = sb.toString().getBytes(Charsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(response);
+        }
+    }
+
+    // Metric names must match [a-zA-Z_:][a-zA-Z0-9_:]*
+    static String toPrometheusName(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':' ||
+                    (i > 0 && c >= '0' && c <= '9');
+            sb.append(valid ? c : '_');
+        }
+        return sb.toString();
+    }
+
+    private static class Sample {
+        private final double value;
+        private final long timestamp;
+
+        Sample(double value, long timestamp) {
+            this.value = value;
+            this.timestamp = timestamp;
+        }
+    }
+}
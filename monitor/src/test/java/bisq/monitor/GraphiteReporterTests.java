@@ -0,0 +1,101 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package bisq.monitor;
+
+import bisq.monitor.reporter.GraphiteReporter;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the connection handling of the {@link GraphiteReporter} against a local server.
+ */
+class GraphiteReporterTests {
+    private ServerSocket serverSocket;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        serverSocket = new ServerSocket();
+        // A small receive buffer lets the writes of the reporter block soon if we do not read
+        serverSocket.setReceiveBufferSize(4096);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        serverSocket.setSoTimeout(10000);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        serverSocket.close();
+    }
+
+    private GraphiteReporter createReporter() {
+        Properties properties = new Properties();
+        properties.put("GraphiteReporter.serviceUrl", "127.0.0.1:" + serverSocket.getLocalPort());
+        properties.put("GraphiteReporter.connectTimeout", "1000");
+        properties.put("GraphiteReporter.writeTimeout", "200");
+        GraphiteReporter reporter = new GraphiteReporter();
+        reporter.configure(properties);
+        return reporter;
+    }
+
+    @Test
+    void reportSendsLines() throws IOException {
+        GraphiteReporter reporter = createReporter();
+        reporter.report("key", "42", "1000", "prefix");
+
+        try (Socket socket = serverSocket.accept();
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), Charsets.UTF_8))) {
+            String line = reader.readLine();
+            assertTrue(line.endsWith(".prefix.key 42 1"), line);
+        }
+    }
+
+    @Test
+    void stalledWriteGetsClosedAndReporterReconnects() throws IOException {
+        GraphiteReporter reporter = createReporter();
+        String value = Strings.repeat("1", 50000);
+        for (int i = 0; i < 1000; i++) {
+            reporter.report("key" + i, value, "1000", "prefix");
+        }
+
+        // We accept but never read, so the write of the reporter blocks once the socket buffers are full
+        try (Socket stalledSocket = serverSocket.accept()) {
+            // After the write timeout the reporter closes the stalled connection and connects again
+            try (Socket socket = serverSocket.accept()) {
+                assertTrue(socket.isConnected());
+            }
+        }
+    }
+}
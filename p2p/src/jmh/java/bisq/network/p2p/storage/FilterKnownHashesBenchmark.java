@@ -0,0 +1,187 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.storage;
+
+import bisq.network.p2p.storage.payload.DateSortedTruncatablePayload;
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
+
+import bisq.common.app.Capabilities;
+
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares P2PDataStorage.filterKnownHashes with the previous implementation which streamed the map twice and
+ * sorted all DateSortedTruncatablePayloads. Both apply the capability filter of the real implementation. Sizes are
+ * similar to the trade statistics and account age witness data a seed node delivers to a new node.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FilterKnownHashesBenchmark {
+    private static final int MAX_ENTRIES = 10000;
+    private static final int MAX_ITEMS = 3000;
+
+    @Param({"100000", "250000"})
+    public int numTradeStatistics;
+
+    @Param({"100000"})
+    public int numAccountAgeWitnesses;
+
+    // Share of the entries known by the requester
+    @Param({"0.0", "0.9"})
+    public double knownRatio;
+
+    private Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> map;
+    private Set<P2PDataStorage.ByteArray> knownHashes;
+    private final Capabilities peerCapabilities = new Capabilities();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        long now = System.currentTimeMillis();
+        map = new HashMap<>();
+        knownHashes = new HashSet<>();
+        for (int i = 0; i < numTradeStatistics; i++) {
+            byte[] hash = new byte[32];
+            random.nextBytes(hash);
+            add(new DateSortedPayload(hash, new Date(now - random.nextInt(Integer.MAX_VALUE))), random);
+        }
+        for (int i = 0; i < numAccountAgeWitnesses; i++) {
+            byte[] hash = new byte[20];
+            random.nextBytes(hash);
+            add(new Payload(hash), random);
+        }
+    }
+
+    private void add(PersistableNetworkPayload payload, Random random) {
+        P2PDataStorage.ByteArray key = new P2PDataStorage.ByteArray(payload.getHash());
+        map.put(key, payload);
+        if (random.nextDouble() < knownRatio)
+            knownHashes.add(key);
+    }
+
+    @Benchmark
+    public Set<PersistableNetworkPayload> filterKnownHashes() {
+        return P2PDataStorage.filterKnownHashes(map.entrySet(),
+                Function.identity(),
+                knownHashes,
+                peerCapabilities,
+                MAX_ENTRIES,
+                new AtomicBoolean());
+    }
+
+    @Benchmark
+    public Set<PersistableNetworkPayload> legacyFilterKnownHashes() {
+        Set<Map.Entry<P2PDataStorage.ByteArray, PersistableNetworkPayload>> entries = map.entrySet();
+        List<PersistableNetworkPayload> dateSortedTruncatablePayloads = entries.stream()
+                .filter(entry -> entry.getValue() instanceof DateSortedTruncatablePayload)
+                .filter(entry -> !knownHashes.contains(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .filter(payload -> P2PDataStorage.shouldTransmitPayloadToPeer(peerCapabilities, payload))
+                .sorted(Comparator.comparing(payload -> ((DateSortedTruncatablePayload) payload).getDate()))
+                .collect(Collectors.toList());
+        if (dateSortedTruncatablePayloads.size() > MAX_ITEMS) {
+            dateSortedTruncatablePayloads = dateSortedTruncatablePayloads.subList(
+                    dateSortedTruncatablePayloads.size() - MAX_ITEMS, dateSortedTruncatablePayloads.size());
+        }
+
+        List<PersistableNetworkPayload> filteredResults = entries.stream()
+                .filter(entry -> !(entry.getValue() instanceof DateSortedTruncatablePayload))
+                .filter(entry -> !knownHashes.contains(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .filter(payload -> P2PDataStorage.shouldTransmitPayloadToPeer(peerCapabilities, payload))
+                .collect(Collectors.toList());
+        filteredResults.addAll(dateSortedTruncatablePayloads);
+        if (filteredResults.size() > MAX_ENTRIES)
+            filteredResults = filteredResults.subList(0, MAX_ENTRIES);
+        return new HashSet<>(filteredResults);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Payloads
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static class Payload implements PersistableNetworkPayload {
+        private final byte[] hash;
+
+        Payload(byte[] hash) {
+            this.hash = hash;
+        }
+
+        @Override
+        public protobuf.PersistableNetworkPayload toProtoMessage() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public byte[] getHash() {
+            return hash;
+        }
+
+        @Override
+        public boolean verifyHashSize() {
+            return true;
+        }
+    }
+
+    private static class DateSortedPayload extends Payload implements DateSortedTruncatablePayload {
+        private final Date date;
+
+        DateSortedPayload(byte[] hash, Date date) {
+            super(hash);
+            this.date = date;
+        }
+
+        @Override
+        public Date getDate() {
+            return date;
+        }
+
+        @Override
+        public int maxItems() {
+            return MAX_ITEMS;
+        }
+    }
+}
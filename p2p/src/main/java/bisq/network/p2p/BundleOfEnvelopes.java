@@ -27,6 +27,8 @@ import bisq.common.proto.ProtobufferException;
 import bisq.common.proto.network.NetworkEnvelope;
 import bisq.common.proto.network.NetworkProtoResolver;
 
+import com.google.protobuf.CodedOutputStream;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -34,15 +36,23 @@ import java.util.stream.Collectors;
 
 import lombok.EqualsAndHashCode;
 import lombok.Value;
+import lombok.experimental.NonFinal;
 
 @EqualsAndHashCode(callSuper = true)
 @Value
 public final class BundleOfEnvelopes extends BroadcastMessage implements ExtendedDataSizePermission, CapabilityRequiringPayload {
 
     private final List<NetworkEnvelope> envelopes;
+    // Sum of the serialized sizes of the contained envelopes including their field tag and length prefix. Tracked
+    // when adding envelopes so checking the size of a growing bundle does not require serializing it again.
+    // -1 if not calculated yet.
+    @EqualsAndHashCode.Exclude
+    @NonFinal
+    private transient int envelopesSize;
 
     public BundleOfEnvelopes() {
         this(new ArrayList<>(), Version.getP2PMessageVersion());
+        envelopesSize = 0;
     }
 
     public BundleOfEnvelopes(List<NetworkEnvelope> envelopes) {
@@ -50,9 +60,26 @@ public final class BundleOfEnvelopes extends BroadcastMessage implements Extende
     }
 
     public void add(NetworkEnvelope networkEnvelope) {
+        if (envelopesSize >= 0)
+            envelopesSize += getEnvelopeSize(networkEnvelope);
         envelopes.add(networkEnvelope);
     }
 
+    /**
+     * Returns the size of the serialized envelopes. The few bytes of the outer envelope (message version, field tag
+     * and length prefix of the bundle) are not included.
+     */
+    public int getEnvelopesSize() {
+        if (envelopesSize < 0)
+            envelopesSize = envelopes.stream().mapToInt(BundleOfEnvelopes::getEnvelopeSize).sum();
+        return envelopesSize;
+    }
+
+    private static int getEnvelopeSize(NetworkEnvelope networkEnvelope) {
+        return CodedOutputStream.computeMessageSize(protobuf.BundleOfEnvelopes.ENVELOPES_FIELD_NUMBER,
+                networkEnvelope.getCachedProtoNetworkEnvelope());
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // PROTO BUFFER
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -60,18 +87,26 @@ public final class BundleOfEnvelopes extends BroadcastMessage implements Extende
     private BundleOfEnvelopes(List<NetworkEnvelope> envelopes, int messageVersion) {
         super(messageVersion);
         this.envelopes = envelopes;
+        this.envelopesSize = -1;
     }
 
 
+    // The contained broadcast messages are usually shared with bundles sent to other peers, so we use their cached
+    // protos. The bundle itself can still change by adding envelopes, so we do not cache its proto.
     @Override
     public protobuf.NetworkEnvelope toProtoNetworkEnvelope() {
         return getNetworkEnvelopeBuilder()
                 .setBundleOfEnvelopes(protobuf.BundleOfEnvelopes.newBuilder().addAllEnvelopes(envelopes.stream()
-                        .map(NetworkEnvelope::toProtoNetworkEnvelope)
+                        .map(NetworkEnvelope::getCachedProtoNetworkEnvelope)
                         .collect(Collectors.toList())))
                 .build();
     }
 
+    @Override
+    public protobuf.NetworkEnvelope getCachedProtoNetworkEnvelope() {
+        return toProtoNetworkEnvelope();
+    }
+
     public static BundleOfEnvelopes fromProto(protobuf.BundleOfEnvelopes proto,
                                               NetworkProtoResolver resolver,
                                               int messageVersion) {
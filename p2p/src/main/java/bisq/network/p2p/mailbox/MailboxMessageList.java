@@ -19,7 +19,9 @@ package bisq.network.p2p.mailbox;
 
 import bisq.common.proto.ProtobufferException;
 import bisq.common.proto.network.NetworkProtoResolver;
+import bisq.common.proto.persistable.PersistableEnvelope;
 import bisq.common.proto.persistable.PersistableList;
+import bisq.common.proto.persistable.SnapshotPersistableEnvelope;
 
 import com.google.protobuf.Message;
 
@@ -33,7 +35,7 @@ import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 @EqualsAndHashCode(callSuper = true)
-public class MailboxMessageList extends PersistableList<MailboxItem> {
+public class MailboxMessageList extends PersistableList<MailboxItem> implements SnapshotPersistableEnvelope {
 
     public MailboxMessageList() {
         super();
@@ -58,6 +60,12 @@ public class MailboxMessageList extends PersistableList<MailboxItem> {
                 .build();
     }
 
+    // MailboxItems are immutable, so a copy of the list is a consistent snapshot.
+    @Override
+    public PersistableEnvelope getSnapshot() {
+        return new MailboxMessageList(new ArrayList<>(getList()));
+    }
+
     public static MailboxMessageList fromProto(protobuf.MailboxMessageList proto,
                                                NetworkProtoResolver networkProtoResolver) {
         return new MailboxMessageList(new ArrayList<>(proto.getMailboxItemList().stream()
@@ -54,6 +54,7 @@ import javax.inject.Named;
 import javax.inject.Singleton;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -75,10 +76,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import lombok.extern.slf4j.Slf4j;
@@ -112,6 +114,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 @Slf4j
 public class MailboxMessageService implements HashMapChangedListener, PersistedDataHost {
     private static final long REPUBLISH_DELAY_SEC = TimeUnit.MINUTES.toSeconds(2);
+    // Decryption is CPU bound, so we use up to one thread per core but leave one core for the user thread.
+    private static final int NUM_DECRYPTION_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private static final int DECRYPTION_CHUNK_SIZE = 100;
 
     private final NetworkNode networkNode;
     private final PeerManager peerManager;
@@ -126,6 +131,13 @@ public class MailboxMessageService implements HashMapChangedListener, PersistedD
     private final Set<DecryptedMailboxListener> decryptedMailboxListeners = new CopyOnWriteArraySet<>();
     private final MailboxMessageList mailboxMessageList = new MailboxMessageList();
     private final Map<String, MailboxItem> mailboxItemsByUid = new HashMap<>();
+    // Shared by all batches. Idle threads time out, so the pool does not hold threads once the mailbox is processed.
+    private final ListeningExecutorService decryptionExecutor = Utilities.getListeningExecutorService(
+            "MailboxMessageService-decrypt-%d",
+            NUM_DECRYPTION_THREADS,
+            NUM_DECRYPTION_THREADS,
+            60,
+            new LinkedBlockingQueue<>());
 
     private boolean isBootstrapped;
 
@@ -374,6 +386,12 @@ public class MailboxMessageService implements HashMapChangedListener, PersistedD
                 .forEach(this::removeMailboxItemFromLocalStore);
     }
 
+    // Entries received with the initial data get processed in one batch, see threadedBatchProcessMailboxEntries
+    @Override
+    public boolean isBatchedNotificationSupported() {
+        return true;
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Private
@@ -391,28 +409,41 @@ public class MailboxMessageService implements HashMapChangedListener, PersistedD
         }
     }
 
-    // We run the batch processing of all mailbox messages we have received at startup in a thread to not block the UI.
-    // For about 1000 messages decryption takes about 1 sec.
+    // We run the batch processing of all mailbox messages we have received at startup on a thread pool to not block
+    // the UI. For about 1000 messages decryption takes about 1 sec on one core, so we split the entries into chunks
+    // which get decrypted in parallel. The items of each chunk are applied on the user thread as soon as the chunk is
+    // done, so we do not need to wait for the whole batch.
     private void threadedBatchProcessMailboxEntries(Collection<ProtectedMailboxStorageEntry> protectedMailboxStorageEntries) {
-        ListeningExecutorService executor = Utilities.getSingleThreadListeningExecutor("processMailboxEntry-" + new Random().nextInt(1000));
         long ts = System.currentTimeMillis();
-        ListenableFuture<Set<MailboxItem>> future = executor.submit(() -> {
-            var mailboxItems = getMailboxItems(protectedMailboxStorageEntries);
-            log.info("Batch processing of {} mailbox entries took {} ms",
-                    protectedMailboxStorageEntries.size(),
-                    System.currentTimeMillis() - ts);
-            return mailboxItems;
-        });
-
-        Futures.addCallback(future, new FutureCallback<>() {
-            public void onSuccess(Set<MailboxItem> decryptedMailboxMessageWithEntries) {
-                UserThread.execute(() -> decryptedMailboxMessageWithEntries.forEach(e -> handleMailboxItem(e)));
+        List<List<ProtectedMailboxStorageEntry>> chunks = Lists.partition(new ArrayList<>(protectedMailboxStorageEntries),
+                DECRYPTION_CHUNK_SIZE);
+        AtomicInteger numPendingChunks = new AtomicInteger(chunks.size());
+        Runnable onChunkCompleted = () -> {
+            if (numPendingChunks.decrementAndGet() == 0) {
+                long duration = Math.max(1, System.currentTimeMillis() - ts);
+                log.info("Batch processing of {} mailbox entries in {} chunks with {} threads took {} ms ({} entries/sec)",
+                        protectedMailboxStorageEntries.size(),
+                        chunks.size(),
+                        NUM_DECRYPTION_THREADS,
+                        duration,
+                        protectedMailboxStorageEntries.size() * 1000L / duration);
             }
+        };
 
-            public void onFailure(@NotNull Throwable throwable) {
-                log.error(throwable.toString());
-            }
-        }, MoreExecutors.directExecutor());
+        chunks.forEach(chunk -> {
+            ListenableFuture<Set<MailboxItem>> future = decryptionExecutor.submit(() -> getMailboxItems(chunk));
+            Futures.addCallback(future, new FutureCallback<>() {
+                public void onSuccess(Set<MailboxItem> decryptedMailboxMessageWithEntries) {
+                    UserThread.execute(() -> decryptedMailboxMessageWithEntries.forEach(e -> handleMailboxItem(e)));
+                    onChunkCompleted.run();
+                }
+
+                public void onFailure(@NotNull Throwable throwable) {
+                    log.error(throwable.toString());
+                    onChunkCompleted.run();
+                }
+            }, MoreExecutors.directExecutor());
+        });
     }
 
     private Set<MailboxItem> getMailboxItems(Collection<ProtectedMailboxStorageEntry> protectedMailboxStorageEntries) {
@@ -429,6 +460,10 @@ public class MailboxMessageService implements HashMapChangedListener, PersistedD
                 .getPrefixedSealedAndSignedMessage();
         SealedAndSigned sealedAndSigned = prefixedSealedAndSignedMessage.getSealedAndSigned();
         String uid = prefixedSealedAndSignedMessage.getUid();
+        if (!isAddressedToMe(protectedMailboxStorageEntry)) {
+            // Not for us, so we don't need to try the expensive decryption
+            return new MailboxItem(protectedMailboxStorageEntry, null);
+        }
         if (ignoredMailboxService.isIgnored(uid)) {
             // We had persisted a past failed decryption attempt on that message so we don't try again and return early
             return new MailboxItem(protectedMailboxStorageEntry, null);
@@ -448,6 +483,14 @@ public class MailboxMessageService implements HashMapChangedListener, PersistedD
         return new MailboxItem(protectedMailboxStorageEntry, null);
     }
 
+    // The entry carries the signature pubKey of the receiver as it is required for the removal of the entry by the
+    // receiver. It must match the owner of the payload, so the sender cannot set a different one without making the
+    // entry unremovable. That lets us skip the decryption of all entries which are addressed to other nodes, which
+    // is the vast majority, with a cheap comparison instead of a RSA decryption.
+    private boolean isAddressedToMe(ProtectedMailboxStorageEntry protectedMailboxStorageEntry) {
+        return keyRing.getSignatureKeyPair().getPublic().equals(protectedMailboxStorageEntry.getReceiversPubKey());
+    }
+
     private void handleMailboxItem(MailboxItem mailboxItem) {
         String uid = mailboxItem.getUid();
         if (!mailboxItemsByUid.containsKey(uid)) {
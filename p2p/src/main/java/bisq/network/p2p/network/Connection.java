@@ -47,7 +47,6 @@ import com.google.protobuf.InvalidProtocolBufferException;
 
 import javax.inject.Inject;
 
-import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.Uninterruptibles;
 
 import javafx.beans.property.ObjectProperty;
@@ -64,21 +63,18 @@ import java.io.InvalidClassException;
 import java.io.OptionalDataException;
 import java.io.StreamCorruptedException;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -129,7 +125,7 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
     private final NetworkFilter networkFilter;
     @Getter
     private final String uid;
-    private final ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "Connection.java executor-service"));
+    private final ConnectionExecutors executors = ConnectionExecutors.create(isSharedConnectionThreads());
     // holder of state shared between InputHandler and Connection
     @Getter
     private final Statistic statistic;
@@ -139,7 +135,7 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
     private final ConnectionStatistics connectionStatistics;
 
     // set in init
-    private SynchronizedProtoOutputStream protoOutputStream;
+    private ProtoOutputStream protoOutputStream;
 
     // mutable data, set from other threads but not changed internally.
     @Getter
@@ -151,7 +147,6 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
     private final ObjectProperty<NodeAddress> peersNodeAddressProperty = new SimpleObjectProperty<>();
     private final List<Long> messageTimeStamps = new ArrayList<>();
     private final CopyOnWriteArraySet<MessageListener> messageListeners = new CopyOnWriteArraySet<>();
-    private volatile long lastSendTimeStamp = 0;
     // We use a weak reference here to ensure that no connection causes a memory leak in case it get closed without
     // the shutDown being called.
     private final CopyOnWriteArraySet<WeakReference<SupportedCapabilitiesListener>> capabilitiesListeners = new CopyOnWriteArraySet<>();
@@ -195,10 +190,10 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
             // When you construct an ObjectInputStream, in the constructor the class attempts to read a header that
             // the associated ObjectOutputStream on the other end of the connection has written.
             // It will not return until that header has been read.
-            protoOutputStream = new SynchronizedProtoOutputStream(socket.getOutputStream(), statistic);
+            protoOutputStream = executors.createProtoOutputStream(socket.getOutputStream(), statistic);
             protoInputStream = socket.getInputStream();
             // We create a thread for handling inputStream data
-            singleThreadExecutor.submit(this);
+            executors.executeInputHandler(this, protoInputStream);
 
             if (peersNodeAddress != null) {
                 setPeersNodeAddress(peersNodeAddress);
@@ -222,8 +217,9 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
     }
 
     private final Object lock = new Object();
-    private final Queue<BundleOfEnvelopes> queueOfBundles = new ConcurrentLinkedQueue<>();
-    private final ScheduledExecutorService bundleSender = Executors.newSingleThreadScheduledExecutor();
+    // Envelopes which could not be sent immediately due to throttling. Guarded by lock.
+    private final Deque<BundleOfEnvelopes> queueOfBundles = new ArrayDeque<>();
+    private final TokenBucket sendMsgThrottle = new TokenBucket(getSendMsgRatePerSec(), getSendMsgBurst());
 
     // Called from various threads
     public void sendMessage(NetworkEnvelope networkEnvelope) {
@@ -246,74 +242,36 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
             log.debug("Capability for networkEnvelope is required but not supported");
             return;
         }
-        int networkEnvelopeSize = networkEnvelope.toProtoNetworkEnvelope().getSerializedSize();
+        // Broadcast messages share their proto between all connections and protobuf memoizes the size, so the
+        // envelope is only serialized once for all peers.
+        int networkEnvelopeSize = networkEnvelope.getCachedProtoNetworkEnvelope().getSerializedSize();
         try {
-            // Throttle outbound network_messages
-            long now = System.currentTimeMillis();
-            long elapsed = now - lastSendTimeStamp;
-            if (elapsed < getSendMsgThrottleTrigger()) {
-                log.debug("We got 2 sendMessage requests in less than {} ms. We set the thread to sleep " +
-                                "for {} ms to avoid flooding our peer. lastSendTimeStamp={}, now={}, elapsed={}, networkEnvelope={}",
-                        getSendMsgThrottleTrigger(), getSendMsgThrottleSleep(), lastSendTimeStamp, now, elapsed,
-                        networkEnvelope.getClass().getSimpleName());
-
-                // check if BundleOfEnvelopes is supported
-                if (getCapabilities().containsAll(new Capabilities(Capability.BUNDLE_OF_ENVELOPES))) {
-                    synchronized (lock) {
-                        // check if current envelope fits size
-                        // - no? create new envelope
-
-                        int size = !queueOfBundles.isEmpty() ? queueOfBundles.element().toProtoNetworkEnvelope().getSerializedSize() + networkEnvelopeSize : 0;
-                        if (queueOfBundles.isEmpty() || size > MAX_PERMITTED_MESSAGE_SIZE * 0.9) {
-                            // - no? create a bucket
-                            queueOfBundles.add(new BundleOfEnvelopes());
-
-                            // - and schedule it for sending
-                            lastSendTimeStamp += getSendMsgThrottleSleep();
-
-                            bundleSender.schedule(() -> {
-                                if (!stopped) {
-                                    synchronized (lock) {
-                                        BundleOfEnvelopes bundle = queueOfBundles.poll();
-                                        if (bundle != null && !stopped) {
-                                            NetworkEnvelope envelope;
-                                            int msgSize;
-                                            if (bundle.getEnvelopes().size() == 1) {
-                                                envelope = bundle.getEnvelopes().get(0);
-                                                msgSize = envelope.toProtoNetworkEnvelope().getSerializedSize();
-                                            } else {
-                                                envelope = bundle;
-                                                msgSize = networkEnvelopeSize;
-                                            }
-                                            try {
-                                                protoOutputStream.writeEnvelope(envelope);
-                                                UserThread.execute(() -> messageListeners.forEach(e -> e.onMessageSent(envelope, this)));
-                                                UserThread.execute(() -> connectionStatistics.addSendMsgMetrics(System.currentTimeMillis() - ts, msgSize));
-                                            } catch (Throwable t) {
-                                                log.error("Sending envelope of class {} to address {} " +
-                                                                "failed due {}",
-                                                        envelope.getClass().getSimpleName(),
-                                                        this.getPeersNodeAddressOptional(),
-                                                        t.toString());
-                                                log.error("envelope: {}", envelope);
-                                            }
-                                        }
-                                    }
-                                }
-                            }, lastSendTimeStamp - now, TimeUnit.MILLISECONDS);
-                        }
-
-                        // - yes? add to bucket
-                        queueOfBundles.element().add(networkEnvelope);
-                    }
+            // Throttle outbound network_messages. Each write to the socket takes a token. If there is none left we
+            // queue the envelope and the bundleSender sends it once the token is due, so the caller's thread is never
+            // blocked. If the peer supports BundleOfEnvelopes, envelopes queued in the meantime are added to the
+            // last pending bundle and sent with a single write.
+            synchronized (lock) {
+                BundleOfEnvelopes lastBundle = queueOfBundles.peekLast();
+                if (lastBundle != null &&
+                        getCapabilities().containsAll(new Capabilities(Capability.BUNDLE_OF_ENVELOPES)) &&
+                        lastBundle.getEnvelopesSize() + networkEnvelopeSize <= MAX_PERMITTED_MESSAGE_SIZE * 0.9) {
+                    lastBundle.add(networkEnvelope);
                     return;
                 }
 
-                Thread.sleep(getSendMsgThrottleSleep());
+                long delay = sendMsgThrottle.reserve();
+                if (lastBundle != null || delay > 0) {
+                    log.debug("We throttle sending to our peer and send the networkEnvelope {} in {} ms.",
+                            networkEnvelope.getClass().getSimpleName(), delay);
+                    BundleOfEnvelopes bundle = new BundleOfEnvelopes();
+                    bundle.add(networkEnvelope);
+                    queueOfBundles.add(bundle);
+                    executors.executeOnWriter(() -> sendQueuedBundle(ts), delay);
+                    connectionStatistics.addSendThrottleMetrics(delay);
+                    return;
+                }
             }
 
-            lastSendTimeStamp = now;
-
             if (!stopped) {
                 protoOutputStream.writeEnvelope(networkEnvelope);
                 UserThread.execute(() -> messageListeners.forEach(e -> e.onMessageSent(networkEnvelope, this)));
@@ -324,6 +282,40 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
         }
     }
 
+    // Runs on the bundleSender thread
+    private void sendQueuedBundle(long ts) {
+        if (stopped) {
+            return;
+        }
+
+        synchronized (lock) {
+            BundleOfEnvelopes bundle = queueOfBundles.poll();
+            if (bundle != null && !stopped) {
+                NetworkEnvelope envelope;
+                int msgSize;
+                if (bundle.getEnvelopes().size() == 1) {
+                    envelope = bundle.getEnvelopes().get(0);
+                    msgSize = envelope.getCachedProtoNetworkEnvelope().getSerializedSize();
+                } else {
+                    envelope = bundle;
+                    msgSize = bundle.getEnvelopesSize();
+                }
+                try {
+                    protoOutputStream.writeEnvelope(envelope);
+                    UserThread.execute(() -> messageListeners.forEach(e -> e.onMessageSent(envelope, this)));
+                    UserThread.execute(() -> connectionStatistics.addSendMsgMetrics(System.currentTimeMillis() - ts, msgSize));
+                } catch (Throwable t) {
+                    log.error("Sending envelope of class {} to address {} " +
+                                    "failed due {}",
+                            envelope.getClass().getSimpleName(),
+                            this.getPeersNodeAddressOptional(),
+                            t.toString());
+                    log.error("envelope: {}", envelope);
+                }
+            }
+        }
+    }
+
     // TODO: If msg is BundleOfEnvelopes we should check each individual message for capability and filter out those
     //  which fail.
     public boolean noCapabilityRequiredOrCapabilityIsSupported(Proto msg) {
@@ -397,12 +389,27 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
         return config != null ? config.msgThrottlePer10Sec : 1000;
     }
 
-    private int getSendMsgThrottleSleep() {
-        return config != null ? config.sendMsgThrottleSleep : 50;
+    private int getSendMsgRatePerSec() {
+        return config != null ? config.sendMsgRatePerSec : 50;
     }
 
-    private int getSendMsgThrottleTrigger() {
-        return config != null ? config.sendMsgThrottleTrigger : 20;
+    private int getSendMsgBurst() {
+        return config != null ? config.sendMsgBurst : 10;
+    }
+
+    // The throttling must not read slower than the limits of violatesThrottleLimit, otherwise a flooding peer would
+    // only get slowed down but never reported.
+    private int getReceiveMsgRatePerSec() {
+        int receiveMsgRatePerSec = config != null ? config.receiveMsgRatePerSec : 250;
+        return Math.max(receiveMsgRatePerSec, Math.max(getMsgThrottlePerSec(), getMsgThrottlePer10Sec() / 10) + 1);
+    }
+
+    private int getReceiveMsgBurst() {
+        return config != null ? config.receiveMsgBurst : 50;
+    }
+
+    private boolean isSharedConnectionThreads() {
+        return config != null && config.sharedConnectionThreads;
     }
 
     private boolean violatesThrottleLimit(long now, int seconds, int messageCountLimit) {
@@ -574,10 +581,7 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                 e.printStackTrace();
             }
 
-            //noinspection UnstableApiUsage
-            MoreExecutors.shutdownAndAwaitTermination(singleThreadExecutor, 500, TimeUnit.MILLISECONDS);
-            //noinspection UnstableApiUsage
-            MoreExecutors.shutdownAndAwaitTermination(bundleSender, 500, TimeUnit.MILLISECONDS);
+            executors.shutDown();
 
             log.debug("Connection shutdown complete {}", this.toString());
             // Use UserThread.execute as its not clear if that is called from a non-UserThread
@@ -744,19 +748,47 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
     private InputStream protoInputStream;
     private final NetworkProtoResolver networkProtoResolver;
 
-    private long lastReadTimeStamp;
+    private final TokenBucket receiveMsgThrottle = new TokenBucket(getReceiveMsgRatePerSec(), getReceiveMsgBurst());
+    // Set if we got throttled and the input handler continues once the token for the next read is due. Only accessed
+    // by the input handler, which runs again only after it returned.
+    private boolean receiveTokenReserved;
     private boolean threadNameSet;
 
     @Override
     public void run() {
         try {
             Thread.currentThread().setName("InputHandler");
+            threadNameSet = false;
+            boolean firstRead = true;
             while (!stopped && !Thread.currentThread().isInterrupted()) {
                 if (!threadNameSet && getPeersNodeAddressOptional().isPresent()) {
                     Thread.currentThread().setName("InputHandler-" + getPeersNodeAddressOptional().get().getFullAddress());
                     threadNameSet = true;
                 }
                 try {
+                    // With shared threads we release the thread if there is no more input and get run again once
+                    // there is. The first read is done regardless, as we got run either because of new input or
+                    // because we were idle for too long, in which case the read ends with the socket timeout.
+                    if (!firstRead && executors.readsAvailableInputOnly() && protoInputStream.available() == 0) {
+                        executors.executeInputHandler(this, protoInputStream);
+                        return;
+                    }
+
+                    // Throttle inbound network_messages. If the peer exceeds the rate we do not read the next
+                    // message before the token is due, so TCP flow control slows down the peer. We do not wait for
+                    // the token but let the input handler continue once it is due, so the thread is released.
+                    if (!receiveTokenReserved) {
+                        long delay = receiveMsgThrottle.reserve();
+                        if (delay > 0) {
+                            log.debug("We got too many network_messages from our peer and pause reading for {} ms.", delay);
+                            connectionStatistics.addReceiveThrottleMetrics(delay);
+                            receiveTokenReserved = true;
+                            executors.executeInputHandler(this, protoInputStream, delay);
+                            return;
+                        }
+                    }
+                    receiveTokenReserved = false;
+
                     if (socket != null &&
                             socket.isClosed()) {
                         log.warn("Socket is null or closed socket={}", socket);
@@ -765,6 +797,7 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                     }
 
                     // Blocking read from the inputStream
+                    firstRead = false;
                     protobuf.NetworkEnvelope proto = protobuf.NetworkEnvelope.parseDelimitedFrom(protoInputStream);
 
                     long ts = System.currentTimeMillis();
@@ -793,26 +826,18 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                         return;
                     }
 
-                    // Throttle inbound network_messages
-                    long now = System.currentTimeMillis();
-                    long elapsed = now - lastReadTimeStamp;
-                    if (elapsed < 10) {
-                        log.debug("We got 2 network_messages received in less than 10 ms. We set the thread to sleep " +
-                                        "for 20 ms to avoid getting flooded by our peer. lastReadTimeStamp={}, now={}, elapsed={}",
-                                lastReadTimeStamp, now, elapsed);
-                        Thread.sleep(20);
-                    }
+                    // We check the limits for flooding peers at each read. The receive throttling reads faster than
+                    // those limits, so it does not hide a flooding peer.
+                    if (violatesThrottleLimit() && reportInvalidRequest(RuleViolation.THROTTLE_LIMIT_EXCEEDED))
+                        return;
 
                     NetworkEnvelope networkEnvelope = networkProtoResolver.fromProto(proto);
-                    lastReadTimeStamp = now;
                     log.debug("<< Received networkEnvelope of type: {}", networkEnvelope.getClass().getSimpleName());
                     int size = proto.getSerializedSize();
 
-                    // We want to track the size of each object even if it is invalid data
-                    statistic.addReceivedBytes(size);
-
-                    // We want to track the network_messages also before the checks, so do it early...
-                    statistic.addReceivedMessage(networkEnvelope);
+                    // We want to track the size of each object even if it is invalid data and the
+                    // network_messages also before the checks, so do it early...
+                    statistic.addReceivedMessage(networkEnvelope, size);
 
                     // First we check the size
                     boolean exceeds;
@@ -838,9 +863,6 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                             return;
                     }
 
-                    if (violatesThrottleLimit() && reportInvalidRequest(RuleViolation.THROTTLE_LIMIT_EXCEEDED))
-                        return;
-
                     // Check P2P network ID
                     if (proto.getMessageVersion() != Version.getP2PMessageVersion()
                             && reportInvalidRequest(RuleViolation.WRONG_NETWORK_ID)) {
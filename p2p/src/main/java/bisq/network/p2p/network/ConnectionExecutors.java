@@ -0,0 +1,192 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.network;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides the threads used by a {@link Connection} for reading, writing and sending throttled messages.
+ *
+ * By default each connection has a dedicated thread for each of those tasks. With
+ * {@link bisq.common.config.Config#SHARED_CONNECTION_THREADS} the threads are taken from pools shared by all
+ * connections and a connection only occupies one while it is reading or writing:
+ * <ul>
+ *     <li>Idle connections are watched by an {@link InputPoller} and their input handler gets run once input is
+ *     available. The input handler reads as long as there is input and registers again afterwards.</li>
+ *     <li>Throttled messages are scheduled on a shared scheduler which never blocks. Once due they are written by the
+ *     writer of the connection, which runs the writes of the connection in order on a pooled thread. A slow peer
+ *     therefore only delays its own messages.</li>
+ * </ul>
+ */
+abstract class ConnectionExecutors {
+
+    static ConnectionExecutors create(boolean useSharedThreads) {
+        return useSharedThreads ? new Shared() : new Dedicated();
+    }
+
+    // Runs the input handler once input is available if readsAvailableInputOnly is set, otherwise immediately.
+    abstract void executeInputHandler(Runnable inputHandler, InputStream inputStream);
+
+    // Used to continue reading after the input handler got throttled, so no thread waits for the delay.
+    abstract void executeInputHandler(Runnable inputHandler, InputStream inputStream, long delayMs);
+
+    // If set the input handler has to stop reading and call executeInputHandler again if there is no input available.
+    abstract boolean readsAvailableInputOnly();
+
+    // Tasks are run in the order they are due. They may block on the socket.
+    abstract void executeOnWriter(Runnable task, long delayMs);
+
+    abstract ProtoOutputStream createProtoOutputStream(OutputStream outputStream, Statistic statistic);
+
+    abstract void shutDown();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Dedicated threads per connection
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static class Dedicated extends ConnectionExecutors {
+        private final ExecutorService inputHandlerExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "Connection.java executor-service"));
+        private final ScheduledExecutorService bundleSender = Executors.newSingleThreadScheduledExecutor();
+
+        @Override
+        void executeInputHandler(Runnable inputHandler, InputStream inputStream) {
+            inputHandlerExecutor.submit(inputHandler);
+        }
+
+        @Override
+        void executeInputHandler(Runnable inputHandler, InputStream inputStream, long delayMs) {
+            bundleSender.schedule(() -> executeInputHandler(inputHandler, inputStream), delayMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        boolean readsAvailableInputOnly() {
+            return false;
+        }
+
+        @Override
+        void executeOnWriter(Runnable task, long delayMs) {
+            bundleSender.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        ProtoOutputStream createProtoOutputStream(OutputStream outputStream, Statistic statistic) {
+            return new SynchronizedProtoOutputStream(outputStream, statistic);
+        }
+
+        @Override
+        void shutDown() {
+            //noinspection UnstableApiUsage
+            MoreExecutors.shutdownAndAwaitTermination(inputHandlerExecutor, 500, TimeUnit.MILLISECONDS);
+            //noinspection UnstableApiUsage
+            MoreExecutors.shutdownAndAwaitTermination(bundleSender, 500, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Threads shared by all connections
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @VisibleForTesting
+    static class Shared extends ConnectionExecutors {
+        private static final long POLL_INTERVAL_MS = 20;
+        // Peers send a keep-alive message at least once a minute. If there was no input for longer the input handler
+        // does a blocking read, which ends with the socket timeout if the peer is gone.
+        private static final long IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(2);
+
+        // Initialized only if the shared mode is used
+        private static final ExecutorService INPUT_HANDLER_EXECUTOR = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("Connection-InputHandler-%d")
+                        .setDaemon(true)
+                        .build());
+        private static final ExecutorService WRITER_EXECUTOR = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("Connection-Writer-%d")
+                        .setDaemon(true)
+                        .build());
+        // Must never block, as it is used by all connections for polling and scheduling
+        private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("Connection-Scheduler")
+                        .setDaemon(true)
+                        .build());
+        private static final InputPoller INPUT_POLLER = new InputPoller(INPUT_HANDLER_EXECUTOR, SCHEDULER,
+                POLL_INTERVAL_MS, IDLE_TIMEOUT_MS);
+
+        private final Executor writer;
+        private final InputPoller inputPoller;
+        private final ScheduledExecutorService scheduler;
+
+        Shared() {
+            this(INPUT_POLLER, SCHEDULER, WRITER_EXECUTOR);
+        }
+
+        @VisibleForTesting
+        Shared(InputPoller inputPoller, ScheduledExecutorService scheduler, Executor writerExecutor) {
+            this.inputPoller = inputPoller;
+            this.scheduler = scheduler;
+            //noinspection UnstableApiUsage
+            writer = MoreExecutors.newSequentialExecutor(writerExecutor);
+        }
+
+        @Override
+        void executeInputHandler(Runnable inputHandler, InputStream inputStream) {
+            inputPoller.register(inputHandler, inputStream);
+        }
+
+        @Override
+        void executeInputHandler(Runnable inputHandler, InputStream inputStream, long delayMs) {
+            scheduler.schedule(() -> inputPoller.register(inputHandler, inputStream), delayMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        boolean readsAvailableInputOnly() {
+            return true;
+        }
+
+        @Override
+        void executeOnWriter(Runnable task, long delayMs) {
+            scheduler.schedule(() -> writer.execute(task), delayMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        ProtoOutputStream createProtoOutputStream(OutputStream outputStream, Statistic statistic) {
+            return new LockingProtoOutputStream(outputStream, statistic);
+        }
+
+        // Scheduled bundles of a stopped connection are dropped when they are due. The socket is closed by the
+        // connection, which ends a blocking read. A registered input handler gets run by the poller once the stream
+        // is closed and exits, as the connection is stopped.
+        @Override
+        void shutDown() {
+        }
+    }
+}
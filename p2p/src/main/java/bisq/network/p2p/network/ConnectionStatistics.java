@@ -27,6 +27,8 @@ import bisq.common.util.Utilities;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import lombok.Getter;
@@ -51,6 +53,12 @@ public class ConnectionStatistics implements MessageListener {
     private int sentBytes = 0;
     @Getter
     private int receivedBytes = 0;
+    // Number of messages which got delayed by the token bucket throttling and the sum of their delays in ms. Updated
+    // from the network threads, so we do not need to go through the user thread for each throttled message.
+    private final AtomicInteger throttledSentMessages = new AtomicInteger();
+    private final AtomicLong sendThrottleDelay = new AtomicLong();
+    private final AtomicInteger throttledReceivedMessages = new AtomicInteger();
+    private final AtomicLong receiveThrottleDelay = new AtomicLong();
 
     public ConnectionStatistics(Connection connection, ConnectionState connectionState) {
         this.connection = connection;
@@ -107,7 +115,9 @@ public class ConnectionStatistics implements MessageListener {
                         "Sent data: %s; %s" + ls +
                         "Received data: %s; %s" + ls +
                         "CPU time spent on sending messages: %s" + ls +
-                        "CPU time spent on receiving messages: %s",
+                        "CPU time spent on receiving messages: %s" + ls +
+                        "Throttled sent messages: %d; total delay: %s" + ls +
+                        "Throttled received messages: %d; total delay: %s",
                 age,
                 seedNode ? "[Seed node] " : "", peer,
                 connectionState.getPeerType().name(),
@@ -118,7 +128,9 @@ public class ConnectionStatistics implements MessageListener {
                 Utilities.readableFileSize(sentBytes), sentDataMap.toString(),
                 Utilities.readableFileSize(receivedBytes), receivedDataMap.toString(),
                 Utilities.formatDurationAsWords(timeOnSendMsg),
-                Utilities.formatDurationAsWords(timeOnReceivedMsg));
+                Utilities.formatDurationAsWords(timeOnReceivedMsg),
+                getThrottledSentMessages(), Utilities.formatDurationAsWords(getSendThrottleDelay()),
+                getThrottledReceivedMessages(), Utilities.formatDurationAsWords(getReceiveThrottleDelay()));
     }
 
     @Override
@@ -170,4 +182,32 @@ public class ConnectionStatistics implements MessageListener {
         this.timeOnReceivedMsg += timeSpent;
         this.receivedBytes += bytes;
     }
+
+    // Can be called from any thread
+    public void addSendThrottleMetrics(long delay) {
+        throttledSentMessages.incrementAndGet();
+        sendThrottleDelay.addAndGet(delay);
+    }
+
+    // Can be called from any thread
+    public void addReceiveThrottleMetrics(long delay) {
+        throttledReceivedMessages.incrementAndGet();
+        receiveThrottleDelay.addAndGet(delay);
+    }
+
+    public int getThrottledSentMessages() {
+        return throttledSentMessages.get();
+    }
+
+    public long getSendThrottleDelay() {
+        return sendThrottleDelay.get();
+    }
+
+    public int getThrottledReceivedMessages() {
+        return throttledReceivedMessages.get();
+    }
+
+    public long getReceiveThrottleDelay() {
+        return receiveThrottleDelay.get();
+    }
 }
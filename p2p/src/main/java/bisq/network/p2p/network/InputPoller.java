@@ -0,0 +1,100 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package bisq.network.p2p.network;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Polls the input streams of idle connections and runs their input handlers on the given executor once there is
+ * input available, so a connection only occupies a thread while it is reading. The blocking socket streams used with
+ * Tor cannot be used with a selector, so we poll with InputStream.available, which does not block.
+ *
+ * An input handler gets also run if there was no input within the idle timeout. Its blocking read then ends with the
+ * socket timeout if the peer does not send anything, so dead connections get detected as before. If the stream got
+ * closed the input handler gets run as well, so it can shut down.
+ */
+@Slf4j
+class InputPoller {
+    private final Executor executor;
+    private final long idleTimeoutMs;
+    private final Map<Runnable, Registration> registrations = new ConcurrentHashMap<>();
+
+    InputPoller(Executor executor, ScheduledExecutorService scheduler, long pollIntervalMs, long idleTimeoutMs) {
+        this.executor = executor;
+        this.idleTimeoutMs = idleTimeoutMs;
+        scheduler.scheduleWithFixedDelay(this::poll, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // The input handler gets run once. It has to register again to get run at the next input.
+    void register(Runnable inputHandler, InputStream inputStream) {
+        registrations.put(inputHandler, new Registration(inputStream, System.currentTimeMillis()));
+    }
+
+    @VisibleForTesting
+    boolean isRegistered(Runnable inputHandler) {
+        return registrations.containsKey(inputHandler);
+    }
+
+    private void poll() {
+        long now = System.currentTimeMillis();
+        registrations.forEach((inputHandler, registration) -> {
+            try {
+                if (isReady(registration, now) && registrations.remove(inputHandler, registration)) {
+                    executor.execute(inputHandler);
+                }
+            } catch (Throwable t) {
+                // An exception would stop the periodic polling of all connections
+                log.error("Running the input handler failed", t);
+            }
+        });
+    }
+
+    private boolean isReady(Registration registration, long now) {
+        if (now - registration.registrationTime >= idleTimeoutMs)
+            return true;
+
+        try {
+            return registration.inputStream.available() > 0;
+        } catch (IOException e) {
+            // The input handler gets the exception again at reading and shuts down the connection
+            return true;
+        }
+    }
+
+    private static class Registration {
+        private final InputStream inputStream;
+        private final long registrationTime;
+
+        Registration(InputStream inputStream, long registrationTime) {
+            this.inputStream = inputStream;
+            this.registrationTime = registrationTime;
+        }
+    }
+}
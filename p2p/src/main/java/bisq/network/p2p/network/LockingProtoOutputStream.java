@@ -0,0 +1,41 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package bisq.network.p2p.network;
+
+import bisq.common.proto.network.NetworkEnvelope;
+
+import java.io.OutputStream;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Writes the envelopes on the calling thread. Concurrent writes are serialized by a lock, so the envelopes do not
+ * get interleaved.
+ */
+@ThreadSafe
+class LockingProtoOutputStream extends ProtoOutputStream {
+    LockingProtoOutputStream(OutputStream delegate, Statistic statistic) {
+        super(delegate, statistic);
+    }
+
+    @Override
+    synchronized void writeEnvelope(NetworkEnvelope envelope) {
+        super.writeEnvelope(envelope);
+    }
+}
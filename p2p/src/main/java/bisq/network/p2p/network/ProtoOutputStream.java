@@ -59,12 +59,11 @@ class ProtoOutputStream {
     }
 
     private void writeEnvelopeOrThrow(NetworkEnvelope envelope) throws IOException {
-        protobuf.NetworkEnvelope proto = envelope.toProtoNetworkEnvelope();
+        protobuf.NetworkEnvelope proto = envelope.getCachedProtoNetworkEnvelope();
         proto.writeDelimitedTo(delegate);
         delegate.flush();
 
-        statistic.addSentBytes(proto.getSerializedSize());
-        statistic.addSentMessage(envelope);
+        statistic.addSentMessage(envelope, proto.getSerializedSize());
 
         if (!(envelope instanceof KeepAliveMessage)) {
             statistic.updateLastActivityTimestamp();
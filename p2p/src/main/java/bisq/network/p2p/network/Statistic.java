@@ -15,6 +15,7 @@
  * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
  */
 
+
 package bisq.network.p2p.network;
 
 import bisq.common.UserThread;
@@ -24,20 +25,34 @@ import bisq.common.util.Utilities;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.LongProperty;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyLongProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleLongProperty;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import lombok.extern.slf4j.Slf4j;
 
+import javax.annotation.Nullable;
+
 /**
  * Network statistics per connection. As we are also interested in total network statistics
- * we use static properties to get traffic of all connections combined.
+ * we use static counters to get traffic of all connections combined.
+ *
+ * The counters are updated directly from the network threads without locking or allocations (beside the first
+ * message of a new message type). The JavaFX properties are read-only views which get updated once per second on
+ * the user thread.
  */
 @Slf4j
 public class Statistic {
@@ -48,28 +63,38 @@ public class Statistic {
 
 
     private final static long startTime = System.currentTimeMillis();
-    private final static LongProperty totalSentBytes = new SimpleLongProperty(0);
-    private final static DoubleProperty totalSentBytesPerSec = new SimpleDoubleProperty(0);
-    private final static LongProperty totalReceivedBytes = new SimpleLongProperty(0);
-    private final static DoubleProperty totalReceivedBytesPerSec = new SimpleDoubleProperty(0);
-    private final static Map<String, Integer> totalReceivedMessages = new ConcurrentHashMap<>();
-    private final static Map<String, Integer> totalSentMessages = new ConcurrentHashMap<>();
-    private final static LongProperty numTotalSentMessages = new SimpleLongProperty(0);
-    private final static DoubleProperty numTotalSentMessagesPerSec = new SimpleDoubleProperty(0);
-    private final static LongProperty numTotalReceivedMessages = new SimpleLongProperty(0);
-    private final static DoubleProperty numTotalReceivedMessagesPerSec = new SimpleDoubleProperty(0);
+    private final static LongAdder totalSentBytes = new LongAdder();
+    private final static LongAdder totalReceivedBytes = new LongAdder();
+    private final static Map<String, MessageCounter> totalSentMessages = new ConcurrentHashMap<>();
+    private final static Map<String, MessageCounter> totalReceivedMessages = new ConcurrentHashMap<>();
+    private final static Histogram sentMessageSizes = new Histogram();
+    private final static Histogram receivedMessageSizes = new Histogram();
+    private final static Histogram roundTripTimes = new Histogram();
+
+    // Read-only views for the UI, updated on the user thread
+    private final static LongProperty totalSentBytesProperty = new SimpleLongProperty(0);
+    private final static DoubleProperty totalSentBytesPerSecProperty = new SimpleDoubleProperty(0);
+    private final static LongProperty totalReceivedBytesProperty = new SimpleLongProperty(0);
+    private final static DoubleProperty totalReceivedBytesPerSecProperty = new SimpleDoubleProperty(0);
+    private final static LongProperty numTotalSentMessagesProperty = new SimpleLongProperty(0);
+    private final static DoubleProperty numTotalSentMessagesPerSecProperty = new SimpleDoubleProperty(0);
+    private final static LongProperty numTotalReceivedMessagesProperty = new SimpleLongProperty(0);
+    private final static DoubleProperty numTotalReceivedMessagesPerSecProperty = new SimpleDoubleProperty(0);
+    // Instances which have their views in use. Only accessed from the user thread.
+    private final static Set<Statistic> statisticsWithViews = Collections.newSetFromMap(new WeakHashMap<>());
 
     static {
         UserThread.runPeriodically(() -> {
-            numTotalSentMessages.set(totalSentMessages.values().stream().mapToInt(Integer::intValue).sum());
-            numTotalReceivedMessages.set(totalReceivedMessages.values().stream().mapToInt(Integer::intValue).sum());
-
-            long passed = (System.currentTimeMillis() - startTime) / 1000;
-            numTotalSentMessagesPerSec.set(((double) numTotalSentMessages.get()) / passed);
-            numTotalReceivedMessagesPerSec.set(((double) numTotalReceivedMessages.get()) / passed);
-
-            totalSentBytesPerSec.set(((double) totalSentBytes.get()) / passed);
-            totalReceivedBytesPerSec.set(((double) totalReceivedBytes.get()) / passed);
+            totalSentBytesProperty.set(getTotalSentBytes());
+            totalSentBytesPerSecProperty.set(getTotalSentBytesPerSec());
+            totalReceivedBytesProperty.set(getTotalReceivedBytes());
+            totalReceivedBytesPerSecProperty.set(getTotalReceivedBytesPerSec());
+            numTotalSentMessagesProperty.set(getNumTotalSentMessages());
+            numTotalSentMessagesPerSecProperty.set(getNumTotalSentMessagesPerSec());
+            numTotalReceivedMessagesProperty.set(getNumTotalReceivedMessages());
+            numTotalReceivedMessagesPerSecProperty.set(getNumTotalReceivedMessagesPerSec());
+
+            statisticsWithViews.forEach(Statistic::updateViews);
         }, 1);
 
         // We log statistics every 5 minutes
@@ -79,48 +104,125 @@ public class Statistic {
                             "Bytes sent: {};" + ls +
                             "Number of sent messages/Sent messages: {} / {};" + ls +
                             "Number of sent messages per sec: {};" + ls +
+                            "Sent message sizes: {};" + ls +
                             "Bytes received: {}" + ls +
                             "Number of received messages/Received messages: {} / {};" + ls +
-                            "Number of received messages per sec: {};" + ls,
-                    Utilities.readableFileSize(totalSentBytes.get()),
-                    numTotalSentMessages.get(), totalSentMessages,
-                    numTotalSentMessagesPerSec.get(),
-                    Utilities.readableFileSize(totalReceivedBytes.get()),
-                    numTotalReceivedMessages.get(), totalReceivedMessages,
-                    numTotalReceivedMessagesPerSec.get());
+                            "Number of received messages per sec: {};" + ls +
+                            "Received message sizes: {};" + ls +
+                            "Round trip times: {};" + ls,
+                    Utilities.readableFileSize(getTotalSentBytes()),
+                    getNumTotalSentMessages(), new TreeMap<>(totalSentMessages),
+                    getNumTotalSentMessagesPerSec(),
+                    sentMessageSizes,
+                    Utilities.readableFileSize(getTotalReceivedBytes()),
+                    getNumTotalReceivedMessages(), new TreeMap<>(totalReceivedMessages),
+                    getNumTotalReceivedMessagesPerSec(),
+                    receivedMessageSizes,
+                    roundTripTimes);
         }, TimeUnit.MINUTES.toSeconds(5));
     }
 
-    public static LongProperty totalSentBytesProperty() {
-        return totalSentBytes;
+    public static long getTotalSentBytes() {
+        return totalSentBytes.sum();
+    }
+
+    public static double getTotalSentBytesPerSec() {
+        return perSec(getTotalSentBytes());
+    }
+
+    public static long getTotalReceivedBytes() {
+        return totalReceivedBytes.sum();
+    }
+
+    public static double getTotalReceivedBytesPerSec() {
+        return perSec(getTotalReceivedBytes());
+    }
+
+    public static long getNumTotalSentMessages() {
+        return sum(totalSentMessages);
+    }
+
+    public static double getNumTotalSentMessagesPerSec() {
+        return perSec(getNumTotalSentMessages());
+    }
+
+    public static long getNumTotalReceivedMessages() {
+        return sum(totalReceivedMessages);
+    }
+
+    public static double getNumTotalReceivedMessagesPerSec() {
+        return perSec(getNumTotalReceivedMessages());
+    }
+
+    // Message counters by class name of the message
+    public static Map<String, MessageCounter> getTotalSentMessages() {
+        return Collections.unmodifiableMap(totalSentMessages);
+    }
+
+    public static Map<String, MessageCounter> getTotalReceivedMessages() {
+        return Collections.unmodifiableMap(totalReceivedMessages);
+    }
+
+    public static Histogram getSentMessageSizes() {
+        return sentMessageSizes;
+    }
+
+    public static Histogram getReceivedMessageSizes() {
+        return receivedMessageSizes;
+    }
+
+    public static Histogram getRoundTripTimes() {
+        return roundTripTimes;
+    }
+
+    public static ReadOnlyLongProperty totalSentBytesProperty() {
+        return totalSentBytesProperty;
+    }
+
+    public static ReadOnlyDoubleProperty totalSentBytesPerSecProperty() {
+        return totalSentBytesPerSecProperty;
+    }
+
+    public static ReadOnlyLongProperty totalReceivedBytesProperty() {
+        return totalReceivedBytesProperty;
+    }
+
+    public static ReadOnlyDoubleProperty totalReceivedBytesPerSecProperty() {
+        return totalReceivedBytesPerSecProperty;
     }
 
-    public static DoubleProperty totalSentBytesPerSecProperty() {
-        return totalSentBytesPerSec;
+    public static ReadOnlyLongProperty numTotalSentMessagesProperty() {
+        return numTotalSentMessagesProperty;
     }
 
-    public static LongProperty totalReceivedBytesProperty() {
-        return totalReceivedBytes;
+    public static ReadOnlyDoubleProperty numTotalSentMessagesPerSecProperty() {
+        return numTotalSentMessagesPerSecProperty;
     }
 
-    public static DoubleProperty totalReceivedBytesPerSecProperty() {
-        return totalReceivedBytesPerSec;
+    public static ReadOnlyLongProperty numTotalReceivedMessagesProperty() {
+        return numTotalReceivedMessagesProperty;
     }
 
-    public static LongProperty numTotalSentMessagesProperty() {
-        return numTotalSentMessages;
+    public static ReadOnlyDoubleProperty numTotalReceivedMessagesPerSecProperty() {
+        return numTotalReceivedMessagesPerSecProperty;
     }
 
-    public static DoubleProperty numTotalSentMessagesPerSecProperty() {
-        return numTotalSentMessagesPerSec;
+    private static double perSec(long value) {
+        long passed = Math.max(1, (System.currentTimeMillis() - startTime) / 1000);
+        return ((double) value) / passed;
     }
 
-    public static LongProperty numTotalReceivedMessagesProperty() {
-        return numTotalReceivedMessages;
+    private static long sum(Map<String, MessageCounter> messageCounters) {
+        return messageCounters.values().stream().mapToLong(MessageCounter::getCount).sum();
     }
 
-    public static DoubleProperty numTotalReceivedMessagesPerSecProperty() {
-        return numTotalReceivedMessagesPerSec;
+    private static void addMessage(Map<String, MessageCounter> messageCounters, String messageClassName, int size) {
+        // We try get first as computeIfAbsent would lock the bin even if the key exists
+        MessageCounter messageCounter = messageCounters.get(messageClassName);
+        if (messageCounter == null) {
+            messageCounter = messageCounters.computeIfAbsent(messageClassName, key -> new MessageCounter());
+        }
+        messageCounter.add(size);
     }
 
 
@@ -129,12 +231,19 @@ public class Statistic {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     private final Date creationDate;
-    private long lastActivityTimestamp = System.currentTimeMillis();
-    private final LongProperty sentBytes = new SimpleLongProperty(0);
-    private final LongProperty receivedBytes = new SimpleLongProperty(0);
-    private final Map<String, Integer> receivedMessages = new ConcurrentHashMap<>();
-    private final Map<String, Integer> sentMessages = new ConcurrentHashMap<>();
-    private final IntegerProperty roundTripTime = new SimpleIntegerProperty(0);
+    private volatile long lastActivityTimestamp = System.currentTimeMillis();
+    private final LongAdder sentBytes = new LongAdder();
+    private final LongAdder receivedBytes = new LongAdder();
+    private final Map<String, MessageCounter> receivedMessages = new ConcurrentHashMap<>();
+    private final Map<String, MessageCounter> sentMessages = new ConcurrentHashMap<>();
+    private volatile int roundTripTime;
+
+    // Read-only views for the UI, created on demand
+    @Nullable
+    private LongProperty sentBytesProperty;
+    @Nullable
+    private LongProperty receivedBytesProperty;
+    private final IntegerProperty roundTripTimeProperty = new SimpleIntegerProperty(0);
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -150,56 +259,51 @@ public class Statistic {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     void updateLastActivityTimestamp() {
-        UserThread.execute(() -> lastActivityTimestamp = System.currentTimeMillis());
+        lastActivityTimestamp = System.currentTimeMillis();
     }
 
-    void addSentBytes(int value) {
-        UserThread.execute(() -> {
-            sentBytes.set(sentBytes.get() + value);
-            totalSentBytes.set(totalSentBytes.get() + value);
-        });
-    }
+    // TODO would need msg inspection to get useful information...
+    void addReceivedMessage(NetworkEnvelope networkEnvelope, int size) {
+        receivedBytes.add(size);
+        totalReceivedBytes.add(size);
+        receivedMessageSizes.record(size);
 
-    void addReceivedBytes(int value) {
-        UserThread.execute(() -> {
-            receivedBytes.set(receivedBytes.get() + value);
-            totalReceivedBytes.set(totalReceivedBytes.get() + value);
-        });
+        String messageClassName = networkEnvelope.getClass().getSimpleName();
+        addMessage(receivedMessages, messageClassName, size);
+        addMessage(totalReceivedMessages, messageClassName, size);
     }
 
-    // TODO would need msg inspection to get useful information...
-    void addReceivedMessage(NetworkEnvelope networkEnvelope) {
-        String messageClassName = networkEnvelope.getClass().getSimpleName();
-        int counter = 1;
-        if (receivedMessages.containsKey(messageClassName)) {
-            counter = receivedMessages.get(messageClassName) + 1;
-        }
-        receivedMessages.put(messageClassName, counter);
+    void addSentMessage(NetworkEnvelope networkEnvelope, int size) {
+        sentBytes.add(size);
+        totalSentBytes.add(size);
+        sentMessageSizes.record(size);
 
-        counter = 1;
-        if (totalReceivedMessages.containsKey(messageClassName)) {
-            counter = totalReceivedMessages.get(messageClassName) + 1;
-        }
-        totalReceivedMessages.put(messageClassName, counter);
+        String messageClassName = networkEnvelope.getClass().getSimpleName();
+        addMessage(sentMessages, messageClassName, size);
+        addMessage(totalSentMessages, messageClassName, size);
     }
 
-    void addSentMessage(NetworkEnvelope networkEnvelope) {
-        String messageClassName = networkEnvelope.getClass().getSimpleName();
-        int counter = 1;
-        if (sentMessages.containsKey(messageClassName)) {
-            counter = sentMessages.get(messageClassName) + 1;
-        }
-        sentMessages.put(messageClassName, counter);
+    // Used for the round trip time reported by the peer, so we do not add it to the histogram
+    public void setRoundTripTime(int roundTripTime) {
+        this.roundTripTime = roundTripTime;
+        UserThread.execute(() -> roundTripTimeProperty.set(roundTripTime));
+    }
 
-        counter = 1;
-        if (totalSentMessages.containsKey(messageClassName)) {
-            counter = totalSentMessages.get(messageClassName) + 1;
+    // Used for the round trip time we measured ourselves
+    public void recordMeasuredRoundTripTime(int roundTripTime) {
+        setRoundTripTime(roundTripTime);
+        if (roundTripTime > 0) {
+            roundTripTimes.record(roundTripTime);
         }
-        totalSentMessages.put(messageClassName, counter);
     }
 
-    public void setRoundTripTime(int roundTripTime) {
-        this.roundTripTime.set(roundTripTime);
+    private void updateViews() {
+        if (sentBytesProperty != null) {
+            sentBytesProperty.set(getSentBytes());
+        }
+        if (receivedBytesProperty != null) {
+            receivedBytesProperty.set(getReceivedBytes());
+        }
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -215,29 +319,43 @@ public class Statistic {
     }
 
     public long getSentBytes() {
-        return sentBytes.get();
+        return sentBytes.sum();
     }
 
-    public LongProperty sentBytesProperty() {
-        return sentBytes;
+    // Must be called on the user thread
+    public ReadOnlyLongProperty sentBytesProperty() {
+        if (sentBytesProperty == null) {
+            sentBytesProperty = new SimpleLongProperty(getSentBytes());
+            statisticsWithViews.add(this);
+        }
+        return sentBytesProperty;
     }
 
     public long getReceivedBytes() {
-        return receivedBytes.get();
+        return receivedBytes.sum();
     }
 
-    public LongProperty receivedBytesProperty() {
-        return receivedBytes;
+    // Must be called on the user thread
+    public ReadOnlyLongProperty receivedBytesProperty() {
+        if (receivedBytesProperty == null) {
+            receivedBytesProperty = new SimpleLongProperty(getReceivedBytes());
+            statisticsWithViews.add(this);
+        }
+        return receivedBytesProperty;
     }
 
     public Date getCreationDate() {
         return creationDate;
     }
 
-    public IntegerProperty roundTripTimeProperty() {
+    public int getRoundTripTime() {
         return roundTripTime;
     }
 
+    public ReadOnlyIntegerProperty roundTripTimeProperty() {
+        return roundTripTimeProperty;
+    }
+
     @Override
     public String toString() {
         return "Statistic{" +
@@ -250,4 +368,32 @@ public class Statistic {
                 ",\n     roundTripTime=" + roundTripTime +
                 "\n}";
     }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // MessageCounter
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static class MessageCounter {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        private void add(int size) {
+            count.increment();
+            bytes.add(size);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        @Override
+        public String toString() {
+            return getCount() + " (" + Utilities.readableFileSize(getBytes()) + ")";
+        }
+    }
 }
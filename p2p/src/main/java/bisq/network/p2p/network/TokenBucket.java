@@ -0,0 +1,80 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.network;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.function.LongSupplier;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Token bucket used for throttling the messages of a connection. Tokens are refilled continuously with the given
+ * rate up to the burst size. A caller never blocks on the bucket: {@link #reserve()} always takes a token and returns
+ * the delay after which the caller is allowed to use it. If no token was available the bucket goes into debt, so
+ * later callers get increasing delays and the rate is kept even if the caller schedules its work.
+ */
+@ThreadSafe
+class TokenBucket {
+    private final double tokensPerMs;
+    private final int burst;
+    private final LongSupplier clock;
+
+    private double tokens;
+    private long lastRefillTimeStamp;
+
+    TokenBucket(int ratePerSec, int burst) {
+        this(ratePerSec, burst, System::currentTimeMillis);
+    }
+
+    @VisibleForTesting
+    TokenBucket(int ratePerSec, int burst, LongSupplier clock) {
+        checkArgument(ratePerSec > 0, "ratePerSec must be positive");
+        checkArgument(burst > 0, "burst must be positive");
+        this.tokensPerMs = ratePerSec / 1000d;
+        this.burst = burst;
+        this.clock = clock;
+        this.tokens = burst;
+        this.lastRefillTimeStamp = clock.getAsLong();
+    }
+
+    /**
+     * Takes a token.
+     *
+     * @return The delay in ms until the token can be used. 0 if a token was available.
+     */
+    synchronized long reserve() {
+        refill();
+        tokens -= 1;
+        if (tokens >= 0)
+            return 0;
+
+        return (long) Math.ceil(-tokens / tokensPerMs);
+    }
+
+    private void refill() {
+        long now = clock.getAsLong();
+        long elapsed = now - lastRefillTimeStamp;
+        if (elapsed > 0) {
+            tokens = Math.min(burst, tokens + elapsed * tokensPerMs);
+            lastRefillTimeStamp = now;
+        }
+    }
+}
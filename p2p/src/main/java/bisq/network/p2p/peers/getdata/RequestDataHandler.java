@@ -31,6 +31,7 @@ import bisq.network.p2p.storage.payload.ProtectedStorageEntry;
 
 import bisq.common.Timer;
 import bisq.common.UserThread;
+import bisq.common.app.Capability;
 import bisq.common.proto.network.NetworkEnvelope;
 import bisq.common.proto.network.NetworkPayload;
 import bisq.common.util.Tuple2;
@@ -57,6 +58,7 @@ class RequestDataHandler implements MessageListener {
     private static final long TIMEOUT = 180;
 
     private NodeAddress peersNodeAddress;
+    private boolean isPreliminaryDataRequest;
     private String getDataRequestType;
     /*
      */
@@ -118,13 +120,21 @@ class RequestDataHandler implements MessageListener {
 
     void requestData(NodeAddress nodeAddress, boolean isPreliminaryDataRequest) {
         peersNodeAddress = nodeAddress;
+        this.isPreliminaryDataRequest = isPreliminaryDataRequest;
+        // We only send a PayloadHashSketch if we know already that the peer supports it. Otherwise we use the
+        // excluded keys.
+        boolean useReconciliation = peerManager.peerHasCapability(nodeAddress, Capability.SET_RECONCILIATION);
+        sendGetDataRequest(nodeAddress, useReconciliation);
+    }
+
+    private void sendGetDataRequest(NodeAddress nodeAddress, boolean useReconciliation) {
         if (!stopped) {
             GetDataRequest getDataRequest;
 
             if (isPreliminaryDataRequest)
-                getDataRequest = dataStorage.buildPreliminaryGetDataRequest(nonce);
+                getDataRequest = dataStorage.buildPreliminaryGetDataRequest(nonce, useReconciliation);
             else
-                getDataRequest = dataStorage.buildGetUpdatedDataRequest(networkNode.getNodeAddress(), nonce);
+                getDataRequest = dataStorage.buildGetUpdatedDataRequest(networkNode.getNodeAddress(), nonce, useReconciliation);
 
             if (timeoutTimer == null) {
                 timeoutTimer = UserThread.runAfter(() -> {  // setup before sending to avoid race conditions
@@ -191,6 +201,14 @@ class RequestDataHandler implements MessageListener {
                     logContents(getDataResponse);
                     if (getDataResponse.getRequestNonce() == nonce) {
                         stopTimeoutTimer();
+                        if (getDataResponse.isReconciliationFailed()) {
+                            log.info("Peer could not decode our PayloadHashSketch. We repeat the request with " +
+                                    "excluded keys.");
+                            networkNode.removeMessageListener(this);
+                            sendGetDataRequest(peersNodeAddress, false);
+                            return;
+                        }
+
                         if (!connection.getPeersNodeAddressOptional().isPresent()) {
                             log.error("RequestDataHandler.onMessage: connection.getPeersNodeAddressOptional() must be present " +
                                     "at that moment");
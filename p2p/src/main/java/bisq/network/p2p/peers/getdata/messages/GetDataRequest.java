@@ -19,6 +19,7 @@ package bisq.network.p2p.peers.getdata.messages;
 
 import bisq.network.p2p.ExtendedDataSizePermission;
 import bisq.network.p2p.InitialDataRequest;
+import bisq.network.p2p.storage.PayloadHashSketch;
 
 import bisq.common.proto.network.NetworkEnvelope;
 
@@ -44,13 +45,19 @@ public abstract class GetDataRequest extends NetworkEnvelope implements Extended
     @Nullable
     protected final String version;
 
+    // Sketch of the known keys, used instead of excludedKeys if the peer supports Capability.SET_RECONCILIATION
+    @Nullable
+    protected final PayloadHashSketch payloadHashSketch;
+
     public GetDataRequest(int messageVersion,
                           int nonce,
                           Set<byte[]> excludedKeys,
-                          @Nullable String version) {
+                          @Nullable String version,
+                          @Nullable PayloadHashSketch payloadHashSketch) {
         super(messageVersion);
         this.nonce = nonce;
         this.excludedKeys = excludedKeys;
         this.version = version;
+        this.payloadHashSketch = payloadHashSketch;
     }
 }
@@ -31,6 +31,7 @@ import bisq.common.proto.network.NetworkEnvelope;
 import bisq.common.proto.network.NetworkProtoResolver;
 import bisq.common.util.Utilities;
 
+import java.util.HashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -55,6 +56,9 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
     private final int requestNonce;
     private final boolean isGetUpdatedDataResponse;
     private final Capabilities supportedCapabilities;
+    // Set if the PayloadHashSketch of the request could not be decoded. The requester has to repeat the request
+    // with the excluded keys.
+    private final boolean reconciliationFailed;
 
     public GetDataResponse(@NotNull Set<ProtectedStorageEntry> dataSet,
                            @NotNull Set<PersistableNetworkPayload> persistableNetworkPayloadSet,
@@ -64,6 +68,17 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
                 persistableNetworkPayloadSet,
                 requestNonce,
                 isGetUpdatedDataResponse,
+                false,
+                Capabilities.app,
+                Version.getP2PMessageVersion());
+    }
+
+    public static GetDataResponse forFailedReconciliation(int requestNonce, boolean isGetUpdatedDataResponse) {
+        return new GetDataResponse(new HashSet<>(),
+                new HashSet<>(),
+                requestNonce,
+                isGetUpdatedDataResponse,
+                true,
                 Capabilities.app,
                 Version.getP2PMessageVersion());
     }
@@ -76,6 +91,7 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
                             @NotNull Set<PersistableNetworkPayload> persistableNetworkPayloadSet,
                             int requestNonce,
                             boolean isGetUpdatedDataResponse,
+                            boolean reconciliationFailed,
                             @NotNull Capabilities supportedCapabilities,
                             int messageVersion) {
         super(messageVersion);
@@ -84,6 +100,7 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
         this.persistableNetworkPayloadSet = persistableNetworkPayloadSet;
         this.requestNonce = requestNonce;
         this.isGetUpdatedDataResponse = isGetUpdatedDataResponse;
+        this.reconciliationFailed = reconciliationFailed;
         this.supportedCapabilities = supportedCapabilities;
     }
 
@@ -105,6 +122,7 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
                         .collect(Collectors.toList()))
                 .setRequestNonce(requestNonce)
                 .setIsGetUpdatedDataResponse(isGetUpdatedDataResponse)
+                .setReconciliationFailed(reconciliationFailed)
                 .addAllSupportedCapabilities(Capabilities.toIntList(supportedCapabilities));
 
         protobuf.NetworkEnvelope proto = getNetworkEnvelopeBuilder()
@@ -126,6 +144,7 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
                 persistableNetworkPayloadSet,
                 proto.getRequestNonce(),
                 proto.getIsGetUpdatedDataResponse(),
+                proto.getReconciliationFailed(),
                 Capabilities.fromIntList(proto.getSupportedCapabilitiesList()),
                 messageVersion);
     }
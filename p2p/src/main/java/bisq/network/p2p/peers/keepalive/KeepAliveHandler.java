@@ -101,7 +101,7 @@ class KeepAliveHandler implements MessageListener {
 
     private void sendPing(Connection connection) {
         if (!stopped) {
-            Ping ping = new Ping(nonce, connection.getStatistic().roundTripTimeProperty().get());
+            Ping ping = new Ping(nonce, connection.getStatistic().getRoundTripTime());
             sendTs = System.currentTimeMillis();
             SettableFuture<Connection> future = networkNode.sendMessage(connection, ping);
             Futures.addCallback(future, new FutureCallback<Connection>() {
@@ -148,7 +148,7 @@ class KeepAliveHandler implements MessageListener {
                 Pong pong = (Pong) networkEnvelope;
                 if (pong.getRequestNonce() == nonce) {
                     int roundTripTime = (int) (System.currentTimeMillis() - sendTs);
-                    connection.getStatistic().setRoundTripTime(roundTripTime);
+                    connection.getStatistic().recordMeasuredRoundTripTime(roundTripTime);
                     cleanup();
                     listener.onComplete();
                 } else {
@@ -27,4 +27,13 @@ public interface HashMapChangedListener {
     default void onRemoved(Collection<ProtectedStorageEntry> protectedStorageEntries) {
         // Often we are only interested in added data as there is no use case for remove
     }
+
+    /**
+     * Listeners returning true get the entries added while processing a GetDataResponse in a single call once the
+     * whole response is processed, instead of one call per entry. Other listeners get called for each entry as soon
+     * as it got added.
+     */
+    default boolean isBatchedNotificationSupported() {
+        return false;
+    }
 }
@@ -77,6 +77,7 @@ import com.google.inject.name.Named;
 import javax.inject.Inject;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 
 import org.fxmisc.easybind.EasyBind;
@@ -100,11 +101,15 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -126,6 +131,10 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     @VisibleForTesting
     public static final int CHECK_TTL_INTERVAL_SEC = 60;
 
+    // Estimation of the PersistableNetworkPayloads a peer might have missed since its last request. Used for sizing
+    // the PayloadHashSketch. If the difference is larger the decoding fails and we fall back to excluded keys.
+    private static final int EXPECTED_NEW_PERSISTABLE_NETWORK_PAYLOADS = 1000;
+
     private boolean initialRequestApplied = false;
 
     private final Broadcaster broadcaster;
@@ -135,7 +144,14 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
 
     @Getter
     private final Map<ByteArray, ProtectedStorageEntry> map = new ConcurrentHashMap<>();
+    // Number of entries in map by the class name of their payload. Gets updated with each change of map, so we don't
+    // need to iterate the map for the inventory.
+    private final Map<String, AtomicInteger> numEntriesByPayloadClassName = new ConcurrentHashMap<>();
     private final Set<HashMapChangedListener> hashMapChangedListeners = new CopyOnWriteArraySet<>();
+    // Entries added while processing a GetDataResponse. Listeners supporting batched notifications get them in one
+    // call after the response is processed. Null if we are not processing a GetDataResponse.
+    @Nullable
+    private List<ProtectedStorageEntry> batchedAddedEntries;
     private Timer removeExpiredEntriesTimer;
 
     private final PersistenceManager<SequenceNumberMap> persistenceManager;
@@ -192,7 +208,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     @Override
     public void readPersisted(Runnable completeHandler) {
         persistenceManager.readPersisted(persisted -> {
-                    sequenceNumberMap.setMap(getPurgedSequenceNumberMap(persisted.getMap()));
+                    sequenceNumberMap.setAll(persisted);
+                    purgeSequenceNumberMap();
                     completeHandler.run();
                 },
                 completeHandler);
@@ -203,7 +220,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     public void readPersistedSync() {
         SequenceNumberMap persisted = persistenceManager.getPersisted();
         if (persisted != null) {
-            sequenceNumberMap.setMap(getPurgedSequenceNumberMap(persisted.getMap()));
+            sequenceNumberMap.setAll(persisted);
+            purgeSequenceNumberMap();
         }
     }
 
@@ -225,7 +243,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
 
         appendOnlyDataStoreService.readFromResources(postFix, () -> appendOnlyDataStoreServiceReady.set(true));
         protectedDataStoreService.readFromResources(postFix, () -> {
-            map.putAll(protectedDataStoreService.getMap());
+            protectedDataStoreService.getMap().forEach(this::putInMap);
             protectedDataStoreServiceReady.set(true);
         });
         resourceDataStoreService.readFromResources(postFix, () -> resourceDataStoreServiceReady.set(true));
@@ -238,7 +256,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         protectedDataStoreService.readFromResourcesSync(postFix);
         resourceDataStoreService.readFromResourcesSync(postFix);
 
-        map.putAll(protectedDataStoreService.getMap());
+        protectedDataStoreService.getMap().forEach(this::putInMap);
     }
 
     // We get added mailbox message data from MailboxMessageService. We want to add those early so we can get it added
@@ -246,7 +264,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     public void addProtectedMailboxStorageEntryToMap(ProtectedStorageEntry protectedStorageEntry) {
         ProtectedStoragePayload protectedStoragePayload = protectedStorageEntry.getProtectedStoragePayload();
         ByteArray hashOfPayload = get32ByteHashAsByteArray(protectedStoragePayload);
-        map.put(hashOfPayload, protectedStorageEntry);
+        putInMap(hashOfPayload, protectedStorageEntry);
         log.trace("## addProtectedMailboxStorageEntryToMap hashOfPayload={}, map={}", hashOfPayload, printMap());
     }
 
@@ -259,6 +277,19 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
      * Returns a PreliminaryGetDataRequest that can be sent to a peer node to request missing Payload data.
      */
     public PreliminaryGetDataRequest buildPreliminaryGetDataRequest(int nonce) {
+        return buildPreliminaryGetDataRequest(nonce, false);
+    }
+
+    /**
+     * Returns a PreliminaryGetDataRequest that can be sent to a peer node to request missing Payload data.
+     * If useReconciliation is set we send a PayloadHashSketch instead of the excluded keys if that is smaller.
+     * Must only be used if the peer supports Capability.SET_RECONCILIATION.
+     */
+    public PreliminaryGetDataRequest buildPreliminaryGetDataRequest(int nonce, boolean useReconciliation) {
+        PayloadHashSketch payloadHashSketch = useReconciliation ? buildPayloadHashSketch() : null;
+        if (payloadHashSketch != null)
+            return new PreliminaryGetDataRequest(nonce, new HashSet<>(), payloadHashSketch);
+
         return new PreliminaryGetDataRequest(nonce, getKnownPayloadHashes());
     }
 
@@ -266,9 +297,48 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
      * Returns a GetUpdatedDataRequest that can be sent to a peer node to request missing Payload data.
      */
     public GetUpdatedDataRequest buildGetUpdatedDataRequest(NodeAddress senderNodeAddress, int nonce) {
+        return buildGetUpdatedDataRequest(senderNodeAddress, nonce, false);
+    }
+
+    /**
+     * Returns a GetUpdatedDataRequest that can be sent to a peer node to request missing Payload data.
+     * If useReconciliation is set we send a PayloadHashSketch instead of the excluded keys if that is smaller.
+     * Must only be used if the peer supports Capability.SET_RECONCILIATION.
+     */
+    public GetUpdatedDataRequest buildGetUpdatedDataRequest(NodeAddress senderNodeAddress,
+                                                            int nonce,
+                                                            boolean useReconciliation) {
+        PayloadHashSketch payloadHashSketch = useReconciliation ? buildPayloadHashSketch() : null;
+        if (payloadHashSketch != null)
+            return new GetUpdatedDataRequest(senderNodeAddress, nonce, new HashSet<>(), payloadHashSketch);
+
         return new GetUpdatedDataRequest(senderNodeAddress, nonce, getKnownPayloadHashes());
     }
 
+    /**
+     * Returns a sketch of the known payload hashes or null if the sketch would not be smaller than the excluded keys.
+     */
+    @Nullable
+    private PayloadHashSketch buildPayloadHashSketch() {
+        Map<ByteArray, PersistableNetworkPayload> mapForDataRequest = getMapForDataRequest();
+        int numKeys = mapForDataRequest.size() + map.size();
+
+        // PersistableNetworkPayloads are append only, so the difference is dominated by the ProtectedStorageEntries
+        // which got added or removed since we received them, plus the PersistableNetworkPayloads added in the meantime.
+        int expectedDifference = map.size() + EXPECTED_NEW_PERSISTABLE_NETWORK_PAYLOADS;
+        int numCells = PayloadHashSketch.getNumCellsForDifference(expectedDifference);
+        if (PayloadHashSketch.getSerializedSize(numCells) >= numKeys * 32) {
+            log.info("We use excluded keys instead of a PayloadHashSketch as we have only {} keys", numKeys);
+            return null;
+        }
+
+        PayloadHashSketch payloadHashSketch = new PayloadHashSketch(numCells);
+        mapForDataRequest.keySet().forEach(key -> payloadHashSketch.add(key.bytes));
+        map.keySet().forEach(key -> payloadHashSketch.add(key.bytes));
+        log.info("We use a PayloadHashSketch with {} cells for {} known keys", numCells, numKeys);
+        return payloadHashSketch;
+    }
+
     /**
      * Returns the set of known payload hashes. This is used in the GetData path to request missing data from peer nodes
      */
@@ -303,17 +373,38 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
             AtomicBoolean wasProtectedStorageEntriesTruncated,
             Capabilities peerCapabilities) {
 
-        Set<P2PDataStorage.ByteArray> excludedKeysAsByteArray =
-                P2PDataStorage.ByteArray.convertBytesSetToByteArraySet(getDataRequest.getExcludedKeys());
-
         // Pre v 1.4.0 requests do not have set the requesters version field so it is null.
         // The methods in HistoricalDataStoreService will return all historical data in that case.
-        // mapForDataResponse contains the filtered by version data from HistoricalDataStoreService as well as all other
-        // maps of the remaining appendOnlyDataStoreServices.
-        Map<ByteArray, PersistableNetworkPayload> mapForDataResponse = getMapForDataResponse(getDataRequest.getVersion());
+        // mapsForDataResponse contains the filtered by version data from HistoricalDataStoreService as well as all other
+        // maps of the remaining appendOnlyDataStoreServices. We do not merge them to avoid copying all entries.
+        List<Map<ByteArray, PersistableNetworkPayload>> mapsForDataResponse = getMapsForDataResponse(getDataRequest.getVersion());
+        int numPersistableNetworkPayloads = mapsForDataResponse.stream().mapToInt(Map::size).sum();
+
+        List<Map<ByteArray, PersistableNetworkPayload>> persistableNetworkPayloadsToFilter = mapsForDataResponse;
+        Map<ByteArray, ProtectedStorageEntry> protectedStorageEntriesToFilter = map;
+        Set<P2PDataStorage.ByteArray> excludedKeysAsByteArray;
+        PayloadHashSketch requestersSketch = getDataRequest.getPayloadHashSketch();
+        if (requestersSketch != null) {
+            Optional<Set<ByteArray>> missingKeys = getKeysMissingAtRequester(requestersSketch, mapsForDataResponse);
+            if (!missingKeys.isPresent()) {
+                return GetDataResponse.forFailedReconciliation(getDataRequest.getNonce(),
+                        getDataRequest instanceof GetUpdatedDataRequest);
+            }
+
+            persistableNetworkPayloadsToFilter = Collections.singletonList(filterByKeys(mapsForDataResponse, missingKeys.get()));
+            protectedStorageEntriesToFilter = filterByKeys(Collections.singletonList(map), missingKeys.get());
+            excludedKeysAsByteArray = new HashSet<>();
+        } else {
+            excludedKeysAsByteArray = P2PDataStorage.ByteArray.convertBytesSetToByteArraySet(getDataRequest.getExcludedKeys());
+        }
+
+        Iterable<Map.Entry<ByteArray, PersistableNetworkPayload>> persistableNetworkPayloadEntries =
+                Iterables.concat(persistableNetworkPayloadsToFilter.stream()
+                        .map(Map::entrySet)
+                        .collect(Collectors.toList()));
         Set<PersistableNetworkPayload> filteredPersistableNetworkPayloads =
                 filterKnownHashes(
-                        mapForDataResponse,
+                        persistableNetworkPayloadEntries,
                         Function.identity(),
                         excludedKeysAsByteArray,
                         peerCapabilities,
@@ -321,7 +412,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                         wasPersistableNetworkPayloadsTruncated);
         log.info("{} PersistableNetworkPayload entries remained after filtered by excluded keys. " +
                         "Original map had {} entries.",
-                filteredPersistableNetworkPayloads.size(), mapForDataResponse.size());
+                filteredPersistableNetworkPayloads.size(), numPersistableNetworkPayloads);
         log.trace("## buildGetDataResponse filteredPersistableNetworkPayloadHashes={}",
                 filteredPersistableNetworkPayloads.stream()
                         .map(e -> Utilities.encodeToHex(e.getHash()))
@@ -329,7 +420,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
 
         Set<ProtectedStorageEntry> filteredProtectedStorageEntries =
                 filterKnownHashes(
-                        map,
+                        protectedStorageEntriesToFilter.entrySet(),
                         ProtectedStorageEntry::getProtectedStoragePayload,
                         excludedKeysAsByteArray,
                         peerCapabilities,
@@ -355,6 +446,35 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     // Utils for collecting the exclude hashes
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Subtracts the requesters sketch from a sketch of our own keys. If the difference can be decoded we get the keys
+     * we have but the requester does not have.
+     */
+    private Optional<Set<ByteArray>> getKeysMissingAtRequester(PayloadHashSketch requestersSketch,
+                                                               List<Map<ByteArray, PersistableNetworkPayload>> mapsForDataResponse) {
+        long ts = System.currentTimeMillis();
+        PayloadHashSketch sketch = new PayloadHashSketch(requestersSketch.getNumCells());
+        mapsForDataResponse.forEach(serviceMap -> serviceMap.keySet().forEach(key -> sketch.add(key.bytes)));
+        map.keySet().forEach(key -> sketch.add(key.bytes));
+        Optional<Set<ByteArray>> missingKeys = sketch.subtract(requestersSketch).decodeMissingKeys()
+                .map(ByteArray::convertBytesListToByteArraySet);
+        log.info("Reconciliation with PayloadHashSketch of {} cells resulted in {} missing keys and took {} ms",
+                requestersSketch.getNumCells(),
+                missingKeys.map(e -> String.valueOf(e.size())).orElse("undecodable"),
+                System.currentTimeMillis() - ts);
+        return missingKeys;
+    }
+
+    private static <T> Map<ByteArray, T> filterByKeys(List<Map<ByteArray, T>> maps, Set<ByteArray> keys) {
+        Map<ByteArray, T> result = new HashMap<>();
+        keys.forEach(key -> maps.stream()
+                .map(map -> map.get(key))
+                .filter(Objects::nonNull)
+                .findAny()
+                .ifPresent(value -> result.put(key, value)));
+        return result;
+    }
+
     private Map<ByteArray, PersistableNetworkPayload> getMapForDataRequest() {
         Map<ByteArray, PersistableNetworkPayload> map = new HashMap<>();
         appendOnlyDataStoreService.getServices()
@@ -375,8 +495,29 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         return map;
     }
 
+    /**
+     * @return Number of payloads by their class name we would deliver in a data response to a peer with the given
+     * version. Uses the counters of the protected storage entries and the map sizes of the append-only stores, so it
+     * is cheap enough for frequent inventory requests.
+     */
+    public Map<String, Integer> getNumPayloadsByClassName(String requestersVersion) {
+        Map<String, Integer> result = appendOnlyDataStoreService.getNumPayloadsByClassName(requestersVersion);
+        numEntriesByPayloadClassName.forEach((className, numEntries) -> {
+            if (numEntries.get() > 0) {
+                result.merge(className, numEntries.get(), Integer::sum);
+            }
+        });
+        return result;
+    }
+
     public Map<ByteArray, PersistableNetworkPayload> getMapForDataResponse(String requestersVersion) {
         Map<ByteArray, PersistableNetworkPayload> map = new HashMap<>();
+        getMapsForDataResponse(requestersVersion).forEach(map::putAll);
+        return map;
+    }
+
+    private List<Map<ByteArray, PersistableNetworkPayload>> getMapsForDataResponse(String requestersVersion) {
+        List<Map<ByteArray, PersistableNetworkPayload>> maps = new ArrayList<>();
         appendOnlyDataStoreService.getServices()
                 .forEach(service -> {
                     Map<ByteArray, PersistableNetworkPayload> serviceMap;
@@ -386,19 +527,22 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                     } else {
                         serviceMap = service.getMap();
                     }
-                    map.putAll(serviceMap);
+                    maps.add(serviceMap);
                     log.info("We added {} entries from {} to be filtered by excluded keys",
                             serviceMap.size(), service.getClass().getSimpleName());
                 });
-        return map;
+        return maps;
     }
 
     /**
-     * Generic function that can be used to filter a Map<ByteArray, ProtectedStorageEntry || PersistableNetworkPayload>
-     * by a given set of keys and peer capabilities.
+     * Generic function that can be used to filter the entries of a Map<ByteArray, ProtectedStorageEntry ||
+     * PersistableNetworkPayload> by a given set of keys and peer capabilities.
+     * The entries are iterated only once. Of the DateSortedTruncatablePayloads we only keep the most recent
+     * maxItems() in a bounded heap instead of sorting all of them.
      */
-    static private <T extends NetworkPayload> Set<T> filterKnownHashes(
-            Map<ByteArray, T> toFilter,
+    @VisibleForTesting
+    static <T extends NetworkPayload> Set<T> filterKnownHashes(
+            Iterable<Map.Entry<ByteArray, T>> entries,
             Function<T, ? extends NetworkPayload> objToPayload,
             Set<ByteArray> knownHashes,
             Capabilities peerCapabilities,
@@ -407,46 +551,68 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
 
         log.info("Num knownHashes {}", knownHashes.size());
 
-        Set<Map.Entry<ByteArray, T>> entries = toFilter.entrySet();
-        List<T> dateSortedTruncatablePayloads = entries.stream()
-                .filter(entry -> entry.getValue() instanceof DateSortedTruncatablePayload)
-                .filter(entry -> !knownHashes.contains(entry.getKey()))
-                .map(Map.Entry::getValue)
-                .filter(payload -> shouldTransmitPayloadToPeer(peerCapabilities, objToPayload.apply(payload)))
-                .sorted(Comparator.comparing(payload -> ((DateSortedTruncatablePayload) payload).getDate()))
-                .collect(Collectors.toList());
-        log.info("Num filtered dateSortedTruncatablePayloads {}", dateSortedTruncatablePayloads.size());
-        if (!dateSortedTruncatablePayloads.isEmpty()) {
-            int maxItems = ((DateSortedTruncatablePayload) dateSortedTruncatablePayloads.get(0)).maxItems();
-            if (dateSortedTruncatablePayloads.size() > maxItems) {
-                int fromIndex = dateSortedTruncatablePayloads.size() - maxItems;
-                int toIndex = dateSortedTruncatablePayloads.size();
-                dateSortedTruncatablePayloads = dateSortedTruncatablePayloads.subList(fromIndex, toIndex);
-                log.info("Num truncated dateSortedTruncatablePayloads {}", dateSortedTruncatablePayloads.size());
+        // The non-dateSortedTruncatablePayloads have higher prio, so we add dateSortedTruncatablePayloads
+        // after those so in case we need to truncate we first truncate the dateSortedTruncatablePayloads.
+        Set<T> filteredResults = new HashSet<>();
+        int numNonTruncatablePayloads = 0;
+        int numDateSortedTruncatablePayloads = 0;
+        int maxItems = 0;
+        // Min-heap by date, so the head is the oldest of the most recent maxItems payloads
+        PriorityQueue<T> newestDateSortedTruncatablePayloads = null;
+        for (Map.Entry<ByteArray, T> entry : entries) {
+            if (knownHashes.contains(entry.getKey()))
+                continue;
+
+            T payload = entry.getValue();
+            if (!shouldTransmitPayloadToPeer(peerCapabilities, objToPayload.apply(payload)))
+                continue;
+
+            if (payload instanceof DateSortedTruncatablePayload) {
+                DateSortedTruncatablePayload dateSortedTruncatablePayload = (DateSortedTruncatablePayload) payload;
+                if (newestDateSortedTruncatablePayloads == null) {
+                    maxItems = dateSortedTruncatablePayload.maxItems();
+                    newestDateSortedTruncatablePayloads = new PriorityQueue<>(Math.max(1, Math.min(maxItems, maxEntries)),
+                            Comparator.comparing(e -> ((DateSortedTruncatablePayload) e).getDate()));
+                }
+                numDateSortedTruncatablePayloads++;
+                if (newestDateSortedTruncatablePayloads.size() < maxItems) {
+                    newestDateSortedTruncatablePayloads.add(payload);
+                } else if (maxItems > 0 && dateSortedTruncatablePayload.getDate().after(
+                        ((DateSortedTruncatablePayload) newestDateSortedTruncatablePayloads.peek()).getDate())) {
+                    newestDateSortedTruncatablePayloads.poll();
+                    newestDateSortedTruncatablePayloads.add(payload);
+                }
+            } else {
+                numNonTruncatablePayloads++;
+                if (filteredResults.size() < maxEntries)
+                    filteredResults.add(payload);
             }
         }
+        log.info("Num filtered non-dateSortedTruncatablePayloads {}", numNonTruncatablePayloads);
+        log.info("Num filtered dateSortedTruncatablePayloads {}", numDateSortedTruncatablePayloads);
+
+        int numDateSortedTruncatablePayloadsAfterTruncation = 0;
+        if (newestDateSortedTruncatablePayloads != null) {
+            numDateSortedTruncatablePayloadsAfterTruncation = newestDateSortedTruncatablePayloads.size();
+            if (numDateSortedTruncatablePayloads > numDateSortedTruncatablePayloadsAfterTruncation) {
+                log.info("Num truncated dateSortedTruncatablePayloads {}", numDateSortedTruncatablePayloadsAfterTruncation);
+            }
 
-        List<T> filteredResults = entries.stream()
-                .filter(entry -> !(entry.getValue() instanceof DateSortedTruncatablePayload))
-                .filter(entry -> !knownHashes.contains(entry.getKey()))
-                .map(Map.Entry::getValue)
-                .filter(payload -> shouldTransmitPayloadToPeer(peerCapabilities, objToPayload.apply(payload)))
-                .collect(Collectors.toList());
-        log.info("Num filtered non-dateSortedTruncatablePayloads {}", filteredResults.size());
-
-        // The non-dateSortedTruncatablePayloads have higher prio, so we added dateSortedTruncatablePayloads
-        // after those so in case we need to truncate we first truncate the dateSortedTruncatablePayloads.
-        filteredResults.addAll(dateSortedTruncatablePayloads);
+            // We poll the oldest first, so in case we need to truncate we drop the most recent ones as we did when
+            // appending the sorted list.
+            while (filteredResults.size() < maxEntries && !newestDateSortedTruncatablePayloads.isEmpty()) {
+                filteredResults.add(newestDateSortedTruncatablePayloads.poll());
+            }
+        }
 
-        if (filteredResults.size() > maxEntries) {
-            filteredResults = filteredResults.subList(0, maxEntries);
+        if (numNonTruncatablePayloads + numDateSortedTruncatablePayloadsAfterTruncation > maxEntries) {
             outTruncated.set(true);
             log.info("Num truncated filteredResults {}", filteredResults.size());
         } else {
             log.info("Num filteredResults {}", filteredResults.size());
         }
 
-        return new HashSet<>(filteredResults);
+        return filteredResults;
     }
 
 
@@ -459,7 +625,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     /**
      * Returns true if a Payload should be transmit to a peer given the peer's supported capabilities.
      */
-    private static boolean shouldTransmitPayloadToPeer(Capabilities peerCapabilities, NetworkPayload payload) {
+    @VisibleForTesting
+    static boolean shouldTransmitPayloadToPeer(Capabilities peerCapabilities, NetworkPayload payload) {
 
         // Sanity check to ensure this isn't used outside P2PDataStorage
         if (!(payload instanceof ProtectedStoragePayload || payload instanceof PersistableNetworkPayload))
@@ -489,11 +656,22 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         Set<PersistableNetworkPayload> persistableNetworkPayloadSet = getDataResponse.getPersistableNetworkPayloadSet();
 
         long ts2 = System.currentTimeMillis();
-        dataSet.forEach(e -> {
-            // We don't broadcast here (last param) as we are only connected to the seed node and would be pointless
-            addProtectedStorageEntry(e, sender, null, false);
+        batchedAddedEntries = new ArrayList<>();
+        try {
+            dataSet.forEach(e -> {
+                // We don't broadcast here (last param) as we are only connected to the seed node and would be pointless
+                addProtectedStorageEntry(e, sender, null, false);
 
-        });
+            });
+        } finally {
+            List<ProtectedStorageEntry> addedEntries = batchedAddedEntries;
+            batchedAddedEntries = null;
+            if (!addedEntries.isEmpty()) {
+                hashMapChangedListeners.stream()
+                        .filter(HashMapChangedListener::isBatchedNotificationSupported)
+                        .forEach(e -> e.onAdded(addedEntries));
+            }
+        }
         log.info("Processing {} protectedStorageEntries took {} ms.", dataSet.size(), this.clock.millis() - ts2);
 
         ts2 = this.clock.millis();
@@ -556,7 +734,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         removeFromMapAndDataStore(toRemoveList);
 
         if (sequenceNumberMap.size() > this.maxSequenceNumberMapSizeBeforePurge) {
-            sequenceNumberMap.setMap(getPurgedSequenceNumberMap(sequenceNumberMap.getMap()));
+            purgeSequenceNumberMap();
             requestPersistence();
         }
     }
@@ -676,7 +854,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         }
 
         ByteArray hashAsByteArray = new ByteArray(payload.getHash());
-        boolean payloadHashAlreadyInStore = appendOnlyDataStoreService.getMap().containsKey(hashAsByteArray);
+        boolean payloadHashAlreadyInStore = appendOnlyDataStoreService.containsKey(hashAsByteArray);
 
         // Store already knows about this payload. Ignore it unless the caller specifically requests a republish.
         if (payloadHashAlreadyInStore && !reBroadcast) {
@@ -788,8 +966,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         }
 
         // This is an updated entry. Record it and signal listeners.
-        map.put(hashOfPayload, protectedStorageEntry);
-        hashMapChangedListeners.forEach(e -> e.onAdded(Collections.singletonList(protectedStorageEntry)));
+        putInMap(hashOfPayload, protectedStorageEntry);
+        notifyAdded(protectedStorageEntry);
 
         // Record the updated sequence number and persist it. Higher delay so we can batch more items.
         sequenceNumberMap.put(hashOfPayload, new MapValue(protectedStorageEntry.getSequenceNumber(), this.clock.millis()));
@@ -877,7 +1055,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
             return false;
 
         // Update the hash map with the updated entry
-        map.put(hashOfPayload, updatedEntry);
+        putInMap(hashOfPayload, updatedEntry);
 
         // Record the latest sequence number and persist it
         sequenceNumberMap.put(hashOfPayload, new MapValue(updatedEntry.getSequenceNumber(), this.clock.millis()));
@@ -1010,10 +1188,43 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     // Private
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    private void notifyAdded(ProtectedStorageEntry protectedStorageEntry) {
+        List<ProtectedStorageEntry> addedEntries = Collections.singletonList(protectedStorageEntry);
+        if (batchedAddedEntries == null) {
+            hashMapChangedListeners.forEach(e -> e.onAdded(addedEntries));
+            return;
+        }
+
+        batchedAddedEntries.add(protectedStorageEntry);
+        hashMapChangedListeners.stream()
+                .filter(e -> !e.isBatchedNotificationSupported())
+                .forEach(e -> e.onAdded(addedEntries));
+    }
+
     private void removeFromMapAndDataStore(ProtectedStorageEntry protectedStorageEntry, ByteArray hashOfPayload) {
         removeFromMapAndDataStore(Collections.singletonList(Maps.immutableEntry(hashOfPayload, protectedStorageEntry)));
     }
 
+    private void putInMap(ByteArray hashOfPayload, ProtectedStorageEntry protectedStorageEntry) {
+        ProtectedStorageEntry previous = map.put(hashOfPayload, protectedStorageEntry);
+        if (previous != null) {
+            updateNumEntries(previous, -1);
+        }
+        updateNumEntries(protectedStorageEntry, 1);
+    }
+
+    private void removeFromMap(ByteArray hashOfPayload) {
+        ProtectedStorageEntry removed = map.remove(hashOfPayload);
+        if (removed != null) {
+            updateNumEntries(removed, -1);
+        }
+    }
+
+    private void updateNumEntries(ProtectedStorageEntry protectedStorageEntry, int delta) {
+        String className = protectedStorageEntry.getProtectedStoragePayload().getClass().getSimpleName();
+        numEntriesByPayloadClassName.computeIfAbsent(className, key -> new AtomicInteger()).addAndGet(delta);
+    }
+
     private void removeFromMapAndDataStore(Collection<Map.Entry<ByteArray, ProtectedStorageEntry>> entriesToRemove) {
         if (entriesToRemove.isEmpty())
             return;
@@ -1024,7 +1235,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
             ProtectedStorageEntry protectedStorageEntry = entry.getValue();
 
             log.trace("## removeFromMapAndDataStore: hashOfPayload={}, map before remove={}", hashOfPayload, printMap());
-            map.remove(hashOfPayload);
+            removeFromMap(hashOfPayload);
             log.trace("## removeFromMapAndDataStore: map after remove={}", printMap());
 
             // We inform listeners even the entry was not found in our map
@@ -1079,14 +1290,9 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     }
 
     // Get a new map with entries older than PURGE_AGE_DAYS purged from the given map.
-    private Map<ByteArray, MapValue> getPurgedSequenceNumberMap(Map<ByteArray, MapValue> persisted) {
-        Map<ByteArray, MapValue> purged = new HashMap<>();
+    private void purgeSequenceNumberMap() {
         long maxAgeTs = this.clock.millis() - TimeUnit.DAYS.toMillis(PURGE_AGE_DAYS);
-        persisted.forEach((key, value) -> {
-            if (value.timeStamp > maxAgeTs)
-                purged.put(key, value);
-        });
-        return purged;
+        sequenceNumberMap.removeEntriesOlderThan(maxAgeTs);
     }
 
     private void printData(String info) {
@@ -1175,12 +1381,13 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
 
     /**
      * Used as key object in map for cryptographic hash of stored data as byte[] as primitive data type cannot be
-     * used as key
+     * used as key. The bytes must not be modified after the object got created.
      */
-    @EqualsAndHashCode
     public static final class ByteArray implements PersistablePayload {
         // That object is saved to disc. We need to take care of changes to not break deserialization.
         public final byte[] bytes;
+        // Cached hash code as it gets used for every map lookup. 0 if not calculated yet (same as in String).
+        private int hashCode;
 
         @Override
         public String toString() {
@@ -1193,6 +1400,30 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
             this.bytes = bytes;
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof ByteArray))
+                return false;
+
+            ByteArray other = (ByteArray) o;
+            // Comparing the cached hash codes first avoids comparing the bytes of most unequal keys
+            if (hashCode != 0 && other.hashCode != 0 && hashCode != other.hashCode)
+                return false;
+            return Arrays.equals(bytes, other.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = hashCode;
+            if (result == 0) {
+                result = Arrays.hashCode(bytes);
+                hashCode = result;
+            }
+            return result;
+        }
+
 
         ///////////////////////////////////////////////////////////////////////////////////////////
         // Protobuffer
@@ -1216,6 +1447,12 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
             return Utilities.encodeToHex(bytes);
         }
 
+        public static Set<P2PDataStorage.ByteArray> convertBytesListToByteArraySet(List<byte[]> list) {
+            return list.stream()
+                    .map(P2PDataStorage.ByteArray::new)
+                    .collect(Collectors.toSet());
+        }
+
         public static Set<P2PDataStorage.ByteArray> convertBytesSetToByteArraySet(Set<byte[]> set) {
             return set != null ?
                     set.stream()
@@ -1235,7 +1472,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         final public int sequenceNr;
         final public long timeStamp;
 
-        MapValue(int sequenceNr, long timeStamp) {
+        public MapValue(int sequenceNr, long timeStamp) {
             this.sequenceNr = sequenceNr;
             this.timeStamp = timeStamp;
         }
@@ -0,0 +1,291 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.storage;
+
+import bisq.common.proto.network.NetworkPayload;
+
+import com.google.protobuf.ByteString;
+
+import java.nio.ByteBuffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Invertible Bloom lookup table over payload hashes. Used in the GetData path instead of the full list of excluded
+ * keys if both peers support {@link bisq.common.app.Capability#SET_RECONCILIATION}.
+ *
+ * The requester inserts all hashes it knows, the responder builds a sketch of the same size from its own hashes and
+ * subtracts the requester's sketch. If the symmetric difference is small enough compared to the number of cells it
+ * can be decoded, so the responder learns which hashes the requester is missing without ever receiving the full set.
+ * The size of the sketch only depends on the expected difference, not on the size of the network history.
+ */
+@EqualsAndHashCode
+@Slf4j
+public final class PayloadHashSketch implements NetworkPayload {
+    // Hashes of PersistableNetworkPayloads are 20 or 32 bytes. We pad shorter keys with zeros and keep the XOR of the
+    // lengths so we can restore them when decoding.
+    public static final int MAX_KEY_LENGTH = 32;
+    // Each key is mapped to one cell in each of NUM_HASH_FUNCTIONS partitions of the table.
+    private static final int NUM_HASH_FUNCTIONS = 3;
+    // With 3 hash functions decoding succeeds with high probability if there are at least 1.3 cells per element for
+    // large tables. Small tables need more headroom, so we use 2 cells per element and a minimum size.
+    private static final double CELLS_PER_DIFFERENCE = 2;
+    private static final int MIN_NUM_CELLS = 3 * 100;
+    // 10 MB is the permitted size for ExtendedDataSizePermission messages, so we must never exceed that.
+    public static final int MAX_NUM_CELLS = 200_000;
+    // count (4 bytes) + length sum (1 byte) + key sum (32 bytes) + checksum sum (8 bytes)
+    private static final int CELL_SIZE = 4 + 1 + MAX_KEY_LENGTH + 8;
+    private static final long CHECKSUM_SEED = 0x5bd1e9955bd1e995L;
+
+    @Getter
+    private final int numCells;
+    private final int[] counts;
+    private final byte[] lengthSums;
+    private final byte[] keySums;
+    private final long[] checksumSums;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public PayloadHashSketch(int numCells) {
+        checkArgument(numCells > 0 && numCells % NUM_HASH_FUNCTIONS == 0 && numCells <= MAX_NUM_CELLS,
+                "Invalid numCells " + numCells);
+        this.numCells = numCells;
+        this.counts = new int[numCells];
+        this.lengthSums = new byte[numCells];
+        this.keySums = new byte[numCells * MAX_KEY_LENGTH];
+        this.checksumSums = new long[numCells];
+    }
+
+    /**
+     * Returns the number of cells required to decode a difference of the given size.
+     */
+    public static int getNumCellsForDifference(int expectedDifference) {
+        int numCells = Math.max(MIN_NUM_CELLS, (int) Math.ceil(expectedDifference * CELLS_PER_DIFFERENCE));
+        numCells += (NUM_HASH_FUNCTIONS - numCells % NUM_HASH_FUNCTIONS) % NUM_HASH_FUNCTIONS;
+        return Math.min(numCells, MAX_NUM_CELLS);
+    }
+
+    /**
+     * Returns the serialized size of a sketch with the given number of cells. Used to decide if the sketch is
+     * smaller than the list of excluded keys it would replace.
+     */
+    public static int getSerializedSize(int numCells) {
+        return numCells * CELL_SIZE;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // PROTO BUFFER
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public protobuf.PayloadHashSketch toProtoMessage() {
+        ByteBuffer buffer = ByteBuffer.allocate(getSerializedSize(numCells));
+        for (int i = 0; i < numCells; i++) {
+            buffer.putInt(counts[i]);
+            buffer.put(lengthSums[i]);
+            buffer.put(keySums, i * MAX_KEY_LENGTH, MAX_KEY_LENGTH);
+            buffer.putLong(checksumSums[i]);
+        }
+        return protobuf.PayloadHashSketch.newBuilder()
+                .setNumCells(numCells)
+                .setCells(ByteString.copyFrom(buffer.array()))
+                .build();
+    }
+
+    public static PayloadHashSketch fromProto(protobuf.PayloadHashSketch proto) {
+        int numCells = proto.getNumCells();
+        checkArgument(proto.getCells().size() == getSerializedSize(numCells),
+                "Size of cells does not match numCells " + numCells);
+        PayloadHashSketch sketch = new PayloadHashSketch(numCells);
+        ByteBuffer buffer = proto.getCells().asReadOnlyByteBuffer();
+        for (int i = 0; i < numCells; i++) {
+            sketch.counts[i] = buffer.getInt();
+            sketch.lengthSums[i] = buffer.get();
+            buffer.get(sketch.keySums, i * MAX_KEY_LENGTH, MAX_KEY_LENGTH);
+            sketch.checksumSums[i] = buffer.getLong();
+        }
+        return sketch;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public void add(byte[] key) {
+        checkArgument(key.length <= MAX_KEY_LENGTH, "Key exceeds max length. key.length=" + key.length);
+        long[] words = toWords(key, 0, key.length);
+        long checksum = checksum(words, key.length);
+        for (int i = 0; i < NUM_HASH_FUNCTIONS; i++) {
+            toggle(getCellIndex(words, key.length, i), key, key.length, checksum, 1);
+        }
+    }
+
+    /**
+     * Returns a new sketch representing this sketch minus the other one. Keys contained in both cancel each other out.
+     */
+    public PayloadHashSketch subtract(PayloadHashSketch other) {
+        checkArgument(other.numCells == numCells, "Sketches must have the same size");
+        PayloadHashSketch result = new PayloadHashSketch(numCells);
+        for (int i = 0; i < numCells; i++) {
+            result.counts[i] = counts[i] - other.counts[i];
+            result.lengthSums[i] = (byte) (lengthSums[i] ^ other.lengthSums[i]);
+            result.checksumSums[i] = checksumSums[i] ^ other.checksumSums[i];
+        }
+        for (int i = 0; i < keySums.length; i++) {
+            result.keySums[i] = (byte) (keySums[i] ^ other.keySums[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Decodes a sketch resulting from {@link #subtract(PayloadHashSketch)}. The sketch is consumed by the decoding.
+     *
+     * @return The keys only contained in the minuend, or empty if the difference was too large to be decoded.
+     */
+    public Optional<List<byte[]>> decodeMissingKeys() {
+        List<byte[]> missingKeys = new ArrayList<>();
+        List<Integer> pureCells = new ArrayList<>();
+        for (int i = 0; i < numCells; i++) {
+            if (isPure(i))
+                pureCells.add(i);
+        }
+
+        while (!pureCells.isEmpty()) {
+            int cellIndex = pureCells.remove(pureCells.size() - 1);
+            // A cell might have become empty or impure since we added it
+            if (!isPure(cellIndex))
+                continue;
+
+            int count = counts[cellIndex];
+            int length = lengthSums[cellIndex] & 0xff;
+            byte[] key = Arrays.copyOfRange(keySums, cellIndex * MAX_KEY_LENGTH, cellIndex * MAX_KEY_LENGTH + length);
+            if (count == 1)
+                missingKeys.add(key);
+
+            long[] words = toWords(key, 0, length);
+            long checksum = checksumSums[cellIndex];
+            for (int i = 0; i < NUM_HASH_FUNCTIONS; i++) {
+                int index = getCellIndex(words, length, i);
+                toggle(index, key, length, checksum, -count);
+                if (isPure(index))
+                    pureCells.add(index);
+            }
+        }
+
+        for (int i = 0; i < numCells; i++) {
+            if (!isEmpty(i)) {
+                log.info("Decoding of PayloadHashSketch with {} cells failed after {} decoded keys",
+                        numCells, missingKeys.size());
+                return Optional.empty();
+            }
+        }
+        return Optional.of(missingKeys);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void toggle(int cellIndex, byte[] key, int length, long checksum, int delta) {
+        counts[cellIndex] += delta;
+        lengthSums[cellIndex] ^= (byte) length;
+        checksumSums[cellIndex] ^= checksum;
+        int offset = cellIndex * MAX_KEY_LENGTH;
+        for (int i = 0; i < length; i++) {
+            keySums[offset + i] ^= key[i];
+        }
+    }
+
+    private boolean isPure(int cellIndex) {
+        int count = counts[cellIndex];
+        if (count != 1 && count != -1)
+            return false;
+
+        int length = lengthSums[cellIndex] & 0xff;
+        if (length > MAX_KEY_LENGTH)
+            return false;
+
+        int offset = cellIndex * MAX_KEY_LENGTH;
+        return checksum(toWords(keySums, offset, length), length) == checksumSums[cellIndex];
+    }
+
+    private boolean isEmpty(int cellIndex) {
+        if (counts[cellIndex] != 0 || lengthSums[cellIndex] != 0 || checksumSums[cellIndex] != 0)
+            return false;
+
+        int offset = cellIndex * MAX_KEY_LENGTH;
+        for (int i = offset; i < offset + MAX_KEY_LENGTH; i++) {
+            if (keySums[i] != 0)
+                return false;
+        }
+        return true;
+    }
+
+    private int getCellIndex(long[] words, int length, int hashFunction) {
+        int partitionSize = numCells / NUM_HASH_FUNCTIONS;
+        long hash = mix(words, length, hashFunction + 1);
+        return hashFunction * partitionSize + (int) Long.remainderUnsigned(hash, partitionSize);
+    }
+
+    private static long checksum(long[] words, int length) {
+        return mix(words, length, CHECKSUM_SEED);
+    }
+
+    // Keys are cryptographic hashes so a simple non-linear mixing is sufficient to derive independent indices and a
+    // checksum which does not cancel out when XOR-ing keys.
+    private static long mix(long[] words, int length, long seed) {
+        long hash = fmix64(seed ^ length);
+        for (long word : words) {
+            hash = fmix64(hash ^ word);
+        }
+        return hash;
+    }
+
+    // Finalization mix of MurmurHash3
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static long[] toWords(byte[] bytes, int offset, int length) {
+        long[] words = new long[MAX_KEY_LENGTH / Long.BYTES];
+        for (int i = 0; i < length; i++) {
+            words[i / Long.BYTES] |= (bytes[offset + i] & 0xffL) << (8 * (i % Long.BYTES));
+        }
+        return words;
+    }
+}
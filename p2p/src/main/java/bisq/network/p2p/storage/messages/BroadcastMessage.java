@@ -21,9 +21,28 @@ import bisq.common.proto.network.NetworkEnvelope;
 
 import lombok.EqualsAndHashCode;
 
+import javax.annotation.Nullable;
+
 @EqualsAndHashCode(callSuper = true)
 public abstract class BroadcastMessage extends NetworkEnvelope {
+    // Broadcast messages are sent unchanged to many peers. We build the proto once and all connections share it, so
+    // the protobuf conversion and the size calculation (memoized by protobuf) are not repeated per peer.
+    @EqualsAndHashCode.Exclude
+    @Nullable
+    private transient volatile protobuf.NetworkEnvelope cachedProtoNetworkEnvelope;
+
     protected BroadcastMessage(int messageVersion) {
         super(messageVersion);
     }
+
+    @Override
+    public protobuf.NetworkEnvelope getCachedProtoNetworkEnvelope() {
+        protobuf.NetworkEnvelope proto = cachedProtoNetworkEnvelope;
+        if (proto == null) {
+            // Concurrent calls might build the proto twice but the result is the same
+            proto = toProtoNetworkEnvelope();
+            cachedProtoNetworkEnvelope = proto;
+        }
+        return proto;
+    }
 }
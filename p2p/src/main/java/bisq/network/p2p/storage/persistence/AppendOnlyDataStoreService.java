@@ -25,8 +25,10 @@ import javax.inject.Inject;
 import com.google.common.annotations.VisibleForTesting;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -87,6 +89,35 @@ public class AppendOnlyDataStoreService {
                 .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
     }
 
+    // Does not create the merged map of getMap, so historical payloads do not get deserialized.
+    public boolean containsKey(P2PDataStorage.ByteArray hashAsByteArray) {
+        return services.stream().anyMatch(service -> service.containsKey(hashAsByteArray));
+    }
+
+    /**
+     * @return Number of payloads by their class name which we deliver in a data response to a peer with the given
+     * version. Each service handles one payload type, so we only use the sizes of the maps and a sample payload for the
+     * class name instead of iterating all payloads.
+     */
+    public Map<String, Integer> getNumPayloadsByClassName(String requestersVersion) {
+        Map<String, Integer> result = new HashMap<>();
+        services.forEach(service -> {
+            int numPayloads;
+            Optional<PersistableNetworkPayload> anyPayload;
+            if (service instanceof HistoricalDataStoreService) {
+                HistoricalDataStoreService<?> historicalDataStoreService = (HistoricalDataStoreService<?>) service;
+                numPayloads = historicalDataStoreService.getNumEntriesSinceVersion(requestersVersion);
+                anyPayload = historicalDataStoreService.findAnyPayload();
+            } else {
+                Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> map = service.getMap();
+                numPayloads = map.size();
+                anyPayload = map.values().stream().findAny();
+            }
+            anyPayload.ifPresent(payload -> result.merge(payload.getClass().getSimpleName(), numPayloads, Integer::sum));
+        });
+        return result;
+    }
+
     public void put(P2PDataStorage.ByteArray hashAsByteArray, PersistableNetworkPayload payload) {
         services.stream()
                 .filter(service -> service.canHandle(payload))
@@ -0,0 +1,164 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.storage.persistence;
+
+import bisq.network.p2p.storage.P2PDataStorage;
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
+
+import bisq.common.persistence.PersistenceManager;
+import bisq.common.proto.persistable.PersistenceProtoResolver;
+
+import java.io.File;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+
+/**
+ * Handles stores of PersistableNetworkPayloads which only grow. Added payloads get appended to an
+ * {@link AppendOnlyPayloadLog} instead of requesting a rewrite of the whole store file. The log is replayed into the
+ * store after the store file has been read. Once the log has grown too large we write the store file and delete the
+ * log segments it contains, so the payloads are not read twice at startup.
+ *
+ * @param <T>
+ */
+@Slf4j
+public abstract class AppendOnlyMapStoreService<T extends PersistableNetworkPayloadStore<? extends PersistableNetworkPayload>>
+        extends MapStoreService<T, PersistableNetworkPayload> {
+    private static final String LOG_DIR_POSTFIX = "_log";
+
+    // Null if the persistenceManager does not provide a resolver (e.g. in tests). In that case we request persistence
+    // of the whole store as in MapStoreService.
+    @Nullable
+    private AppendOnlyPayloadLog payloadLog;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public AppendOnlyMapStoreService(File storageDir, PersistenceManager<T> persistenceManager) {
+        super(storageDir, persistenceManager);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // MapStoreService
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    protected void put(P2PDataStorage.ByteArray hash, PersistableNetworkPayload payload) {
+        store.getMap().put(hash, payload);
+        persistAddedPayload(payload);
+    }
+
+    @Override
+    protected PersistableNetworkPayload putIfAbsent(P2PDataStorage.ByteArray hash, PersistableNetworkPayload payload) {
+        PersistableNetworkPayload previous = store.getMap().putIfAbsent(hash, payload);
+        if (previous == null) {
+            persistAddedPayload(payload);
+        }
+        return previous;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // StoreService
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    protected void readStore(Consumer<T> consumer) {
+        super.readStore(persisted -> {
+            replayPayloadLog();
+            consumer.accept(persisted);
+        });
+    }
+
+    @Override
+    protected void readStoreSync() {
+        super.readStoreSync();
+        replayPayloadLog();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Protected
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Payloads of the log which are contained in other stores are not added to the store at replay. They got pruned
+    // from the store after they were logged.
+    protected boolean isContainedInOtherStores(P2PDataStorage.ByteArray hash) {
+        return false;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void persistAddedPayload(PersistableNetworkPayload payload) {
+        if (payloadLog == null) {
+            requestPersistence();
+            return;
+        }
+
+        payloadLog.append(payload);
+        maybeWriteCheckpoint();
+    }
+
+    private void replayPayloadLog() {
+        if (payloadLog == null) {
+            PersistenceProtoResolver persistenceProtoResolver = persistenceManager.getPersistenceProtoResolver();
+            if (persistenceProtoResolver == null) {
+                return;
+            }
+            payloadLog = new AppendOnlyPayloadLog(new File(absolutePathOfStorageDir, getFileName() + LOG_DIR_POSTFIX),
+                    persistenceProtoResolver);
+        }
+
+        long ts = System.currentTimeMillis();
+        Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> map = store.getMap();
+        int sizeBefore = map.size();
+        List<PersistableNetworkPayload> payloads = payloadLog.read();
+        payloads.forEach(payload -> {
+            P2PDataStorage.ByteArray hash = new P2PDataStorage.ByteArray(payload.getHash());
+            if (!isContainedInOtherStores(hash)) {
+                map.putIfAbsent(hash, payload);
+            }
+        });
+        log.info("Replaying {} payloads from the log of {} added {} entries and took {} ms",
+                payloads.size(), getFileName(), map.size() - sizeBefore, System.currentTimeMillis() - ts);
+    }
+
+    // The store is persisted from a snapshot taken after the log segments got closed, so it contains all payloads of
+    // those segments and we can delete them once it is written.
+    private void maybeWriteCheckpoint() {
+        if (payloadLog == null || !PersistenceManager.isAllServicesInitialized() || !payloadLog.isCheckpointRequired()) {
+            return;
+        }
+
+        AppendOnlyPayloadLog payloadLog = this.payloadLog;
+        payloadLog.startCheckpoint();
+        persistenceManager.persistNow(() -> payloadLog.completeCheckpoint(true),
+                () -> payloadLog.completeCheckpoint(false));
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.storage.persistence;
+
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
+
+import bisq.common.file.FileUtil;
+import bisq.common.proto.ProtoResolver;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+
+/**
+ * Log of the PersistableNetworkPayloads added to an append-only store. Adding a payload appends a single record to
+ * the active segment file instead of rewriting the whole store. Each record consists of the length and the CRC32
+ * checksum of the serialized payload followed by the payload, so a record of an interrupted write gets detected and
+ * dropped when reading the log.
+ *
+ * Segments get rolled over at MAX_SEGMENT_SIZE. If there are more than MAX_NUM_SEGMENTS segments the owner writes the
+ * whole store file, which then contains all payloads of the closed segments, and we delete those segments. So each
+ * payload is read either from the store file or from the log but not from both, except for the payloads appended
+ * while the store file got written.
+ *
+ * We don't sync the appended records to disk. The data can be requested again from the network.
+ */
+@Slf4j
+class AppendOnlyPayloadLog {
+    private static final String SEGMENT_PREFIX = "segment_";
+    // Used by former versions for compacted segments
+    private static final String TEMP_POSTFIX = ".tmp";
+    // Length and checksum of the serialized payload
+    private static final int RECORD_HEADER_SIZE = 8;
+    // Larger records can only be the result of a corrupted length field
+    private static final int MAX_RECORD_SIZE = 1024 * 1024;
+    private static final long MAX_SEGMENT_SIZE = 1024 * 1024;
+    private static final int MAX_NUM_SEGMENTS = 8;
+
+    private final File dir;
+    private final ProtoResolver protoResolver;
+    private final long maxSegmentSize;
+    private final int maxNumSegments;
+    // Ids of all segments including the active one. Guarded by this.
+    private final TreeSet<Long> segmentIds = new TreeSet<>();
+    // Ids of the segments which get deleted once the store file got written. Null if no checkpoint is in progress.
+    @Nullable
+    private Set<Long> checkpointSegmentIds;
+    private long nextSegmentId;
+    @Nullable
+    private FileOutputStream activeSegment;
+    private long activeSegmentSize;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    AppendOnlyPayloadLog(File dir, ProtoResolver protoResolver) {
+        this(dir, protoResolver, MAX_SEGMENT_SIZE, MAX_NUM_SEGMENTS);
+    }
+
+    @VisibleForTesting
+    AppendOnlyPayloadLog(File dir, ProtoResolver protoResolver, long maxSegmentSize, int maxNumSegments) {
+        this.dir = dir;
+        this.protoResolver = protoResolver;
+        this.maxSegmentSize = maxSegmentSize;
+        this.maxNumSegments = maxNumSegments;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Reads the payloads of all segments. A corrupted record and all following records of the same segment get
+     * dropped and the segment gets truncated, so further appends go after the last valid record.
+     */
+    synchronized List<PersistableNetworkPayload> read() {
+        closeActiveSegment();
+        segmentIds.clear();
+        checkpointSegmentIds = null;
+        List<PersistableNetworkPayload> payloads = new ArrayList<>();
+        if (!dir.exists() && !dir.mkdirs()) {
+            log.warn("make dir failed.\ndir={}", dir.getAbsolutePath());
+            return payloads;
+        }
+
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(TEMP_POSTFIX)) {
+                    // Left over from an interrupted compaction of a former version. The compacted segments still exist.
+                    delete(file);
+                } else if (name.startsWith(SEGMENT_PREFIX)) {
+                    try {
+                        segmentIds.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length())));
+                    } catch (NumberFormatException e) {
+                        log.warn("Unexpected file {} in {}", name, dir.getAbsolutePath());
+                    }
+                }
+            }
+        }
+
+        segmentIds.forEach(id -> readSegment(getSegmentFile(id), payloads));
+        nextSegmentId = segmentIds.isEmpty() ? 0 : segmentIds.last() + 1;
+        return payloads;
+    }
+
+    synchronized void append(PersistableNetworkPayload payload) {
+        byte[] bytes = payload.toProtoMessage().toByteArray();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + bytes.length)
+                .putInt(bytes.length)
+                .putInt(checksum(bytes))
+                .put(bytes);
+        try {
+            if (activeSegment == null || activeSegmentSize >= maxSegmentSize) {
+                openNewSegment();
+            }
+            activeSegment.write(record.array());
+            activeSegmentSize += record.capacity();
+        } catch (IOException e) {
+            log.error("Appending to {} failed", dir.getAbsolutePath(), e);
+            // A partially written record gets dropped at the next read. We continue in a new segment so that no
+            // valid records follow the partial one.
+            closeActiveSegment();
+        }
+    }
+
+    synchronized boolean isCheckpointRequired() {
+        return segmentIds.size() > maxNumSegments && checkpointSegmentIds == null;
+    }
+
+    /**
+     * Closes the active segment, so all payloads appended so far are in closed segments. The owner has to write the
+     * store file afterwards and call completeCheckpoint once it is written. Payloads appended in the meantime go to a
+     * new segment which is kept.
+     */
+    synchronized void startCheckpoint() {
+        closeActiveSegment();
+        checkpointSegmentIds = new HashSet<>(segmentIds);
+    }
+
+    // Deletes the segments closed at startCheckpoint if the store file got written, otherwise we keep them and try
+    // again at the next append.
+    void completeCheckpoint(boolean storeFileWritten) {
+        Set<Long> deletedSegmentIds;
+        synchronized (this) {
+            if (checkpointSegmentIds == null) {
+                return;
+            }
+
+            deletedSegmentIds = storeFileWritten ? checkpointSegmentIds : new HashSet<>();
+            segmentIds.removeAll(deletedSegmentIds);
+            checkpointSegmentIds = null;
+        }
+        if (storeFileWritten) {
+            deletedSegmentIds.forEach(id -> delete(getSegmentFile(id)));
+            log.info("The store file of {} got written. We deleted {} log segments.", dir.getName(), deletedSegmentIds.size());
+        } else {
+            log.warn("The store file of {} did not get written. We keep the log segments.", dir.getName());
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void readSegment(File file, List<PersistableNetworkPayload> payloads) {
+        long fileLength = file.length();
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (validLength + RECORD_HEADER_SIZE <= fileLength) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 0 || length > MAX_RECORD_SIZE || validLength + RECORD_HEADER_SIZE + length > fileLength) {
+                    break;
+                }
+
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                if (checksum(bytes) != checksum) {
+                    break;
+                }
+
+                validLength += RECORD_HEADER_SIZE + length;
+                PersistableNetworkPayload payload = toPayload(bytes);
+                if (payload != null) {
+                    payloads.add(payload);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Reading {} failed", file.getAbsolutePath(), e);
+        }
+
+        if (validLength < fileLength) {
+            log.warn("{} is corrupted after {} bytes. We drop the remaining {} bytes.",
+                    file.getAbsolutePath(), validLength, fileLength - validLength);
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            } catch (IOException e) {
+                log.error("Truncating {} failed", file.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    @Nullable
+    private PersistableNetworkPayload toPayload(byte[] bytes) {
+        try {
+            return PersistableNetworkPayload.fromProto(protobuf.PersistableNetworkPayload.parseFrom(bytes), protoResolver);
+        } catch (Throwable t) {
+            // Can be a payload type we do not support anymore. The checksum was valid so we keep the other records.
+            log.warn("Could not create payload from record in {}: {}", dir.getName(), t.toString());
+            return null;
+        }
+    }
+
+    private void openNewSegment() throws IOException {
+        closeActiveSegment();
+        if (!dir.exists() && !dir.mkdirs()) {
+            log.warn("make dir failed.\ndir={}", dir.getAbsolutePath());
+        }
+
+        long id = nextSegmentId++;
+        activeSegment = new FileOutputStream(getSegmentFile(id), true);
+        activeSegmentSize = 0;
+        segmentIds.add(id);
+    }
+
+    private void closeActiveSegment() {
+        if (activeSegment == null) {
+            return;
+        }
+
+        try {
+            activeSegment.close();
+        } catch (IOException e) {
+            log.error("Closing segment of {} failed", dir.getAbsolutePath(), e);
+        }
+        activeSegment = null;
+    }
+
+    private File getSegmentFile(long id) {
+        return new File(dir, SEGMENT_PREFIX + id);
+    }
+
+    private static void delete(File file) {
+        try {
+            FileUtil.deleteFileIfExists(file);
+        } catch (IOException e) {
+            log.error("Deleting {} failed", file.getAbsolutePath(), e);
+        }
+    }
+
+    private static int checksum(byte[] bytes) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes);
+        return (int) crc32.getValue();
+    }
+}
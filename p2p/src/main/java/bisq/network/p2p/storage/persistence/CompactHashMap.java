@@ -0,0 +1,294 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.storage.persistence;
+
+import java.nio.ByteBuffer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Open addressing hash map with 32 byte hashes as keys and a fixed number of longs as value. Keys and values are stored
+ * in primitive arrays, a key as 4 longs, so the map does not need any objects per entry. As the keys are hashes already
+ * we use their first bytes as index and resolve collisions by linear probing.
+ *
+ * Entries are accessed by their slot, e.g. {@code getValue(indexOf(hash), 0)}. Slots stay valid until the next put
+ * or removal.
+ *
+ * The packed format used for persistence is the list of entries, each the 32 bytes of the key followed by the values.
+ *
+ * Not thread safe.
+ */
+class CompactHashMap {
+    static final int HASH_LENGTH = 32;
+    private static final int KEY_LONGS = HASH_LENGTH / 8;
+    private static final int MIN_CAPACITY = 16;
+
+    interface SlotPredicate {
+        boolean test(int slot);
+    }
+
+    interface SlotConsumer {
+        void accept(int slot);
+    }
+
+    private final int valueLongs;
+    private long[] keys;
+    private long[] values;
+    private boolean[] used;
+    private int size;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    CompactHashMap(int valueLongs) {
+        this(valueLongs, MIN_CAPACITY);
+    }
+
+    private CompactHashMap(int valueLongs, int capacity) {
+        this.valueLongs = valueLongs;
+        allocate(capacity);
+    }
+
+    CompactHashMap copy() {
+        CompactHashMap copy = new CompactHashMap(valueLongs, 0);
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.used = used.clone();
+        copy.size = size;
+        return copy;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Packed format
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    static CompactHashMap fromPacked(ByteBuffer packed, int valueLongs) {
+        int entrySize = HASH_LENGTH + valueLongs * 8;
+        checkArgument(packed.remaining() % entrySize == 0, "Invalid size of packed map");
+        int numEntries = packed.remaining() / entrySize;
+        CompactHashMap map = new CompactHashMap(valueLongs, getCapacity(numEntries));
+        long[] key = new long[KEY_LONGS];
+        for (int i = 0; i < numEntries; i++) {
+            for (int k = 0; k < KEY_LONGS; k++) {
+                key[k] = packed.getLong();
+            }
+            int slot = map.putKey(key);
+            for (int v = 0; v < valueLongs; v++) {
+                map.values[slot * valueLongs + v] = packed.getLong();
+            }
+        }
+        return map;
+    }
+
+    byte[] toPacked() {
+        ByteBuffer packed = ByteBuffer.allocate(size * (HASH_LENGTH + valueLongs * 8));
+        for (int slot = 0; slot < used.length; slot++) {
+            if (used[slot]) {
+                for (int k = 0; k < KEY_LONGS; k++) {
+                    packed.putLong(keys[slot * KEY_LONGS + k]);
+                }
+                for (int v = 0; v < valueLongs; v++) {
+                    packed.putLong(values[slot * valueLongs + v]);
+                }
+            }
+        }
+        return packed.array();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The slot of the hash or -1 if the map does not contain the hash.
+     */
+    int indexOf(byte[] hash) {
+        checkHash(hash);
+        long k0 = getLong(hash, 0), k1 = getLong(hash, 8), k2 = getLong(hash, 16), k3 = getLong(hash, 24);
+        int mask = used.length - 1;
+        for (int slot = getIndex(k0, mask); used[slot]; slot = (slot + 1) & mask) {
+            int offset = slot * KEY_LONGS;
+            if (keys[offset] == k0 && keys[offset + 1] == k1 && keys[offset + 2] == k2 && keys[offset + 3] == k3) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    boolean containsKey(byte[] hash) {
+        return indexOf(hash) >= 0;
+    }
+
+    /**
+     * Adds the hash if not contained yet. The values of a new entry are 0.
+     *
+     * @return The slot of the hash.
+     */
+    int putKey(byte[] hash) {
+        checkHash(hash);
+        return putKey(new long[]{getLong(hash, 0), getLong(hash, 8), getLong(hash, 16), getLong(hash, 24)});
+    }
+
+    long getValue(int slot, int valueIndex) {
+        return values[slot * valueLongs + valueIndex];
+    }
+
+    void setValue(int slot, int valueIndex, long value) {
+        values[slot * valueLongs + valueIndex] = value;
+    }
+
+    byte[] getKey(int slot) {
+        ByteBuffer key = ByteBuffer.allocate(HASH_LENGTH);
+        for (int k = 0; k < KEY_LONGS; k++) {
+            key.putLong(keys[slot * KEY_LONGS + k]);
+        }
+        return key.array();
+    }
+
+    void forEach(SlotConsumer consumer) {
+        for (int slot = 0; slot < used.length; slot++) {
+            if (used[slot]) {
+                consumer.accept(slot);
+            }
+        }
+    }
+
+    // Rebuilds the map, so it is meant for bulk removals like purging old entries.
+    void removeIf(SlotPredicate predicate) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+        boolean[] retained = new boolean[oldUsed.length];
+        int numRetained = 0;
+        for (int slot = 0; slot < oldUsed.length; slot++) {
+            if (oldUsed[slot] && !predicate.test(slot)) {
+                retained[slot] = true;
+                numRetained++;
+            }
+        }
+        if (numRetained == size) {
+            return;
+        }
+
+        allocate(getCapacity(numRetained));
+        long[] key = new long[KEY_LONGS];
+        for (int slot = 0; slot < retained.length; slot++) {
+            if (retained[slot]) {
+                System.arraycopy(oldKeys, slot * KEY_LONGS, key, 0, KEY_LONGS);
+                int newSlot = putKey(key);
+                System.arraycopy(oldValues, slot * valueLongs, values, newSlot * valueLongs, valueLongs);
+            }
+        }
+    }
+
+    void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private int putKey(long[] key) {
+        int mask = used.length - 1;
+        int slot = getIndex(key[0], mask);
+        for (; used[slot]; slot = (slot + 1) & mask) {
+            int offset = slot * KEY_LONGS;
+            if (keys[offset] == key[0] && keys[offset + 1] == key[1] && keys[offset + 2] == key[2] &&
+                    keys[offset + 3] == key[3]) {
+                return slot;
+            }
+        }
+
+        // We keep the load factor below 0.75 so probe sequences stay short
+        if ((size + 1) * 4 > used.length * 3) {
+            grow();
+            return putKey(key);
+        }
+
+        System.arraycopy(key, 0, keys, slot * KEY_LONGS, KEY_LONGS);
+        used[slot] = true;
+        size++;
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(oldUsed.length * 2);
+        long[] key = new long[KEY_LONGS];
+        for (int slot = 0; slot < oldUsed.length; slot++) {
+            if (oldUsed[slot]) {
+                System.arraycopy(oldKeys, slot * KEY_LONGS, key, 0, KEY_LONGS);
+                int newSlot = putKey(key);
+                System.arraycopy(oldValues, slot * valueLongs, values, newSlot * valueLongs, valueLongs);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity * KEY_LONGS];
+        values = new long[capacity * valueLongs];
+        used = new boolean[capacity];
+        size = 0;
+    }
+
+    // Smallest power of 2 which keeps the load factor of the given number of entries below 0.75
+    private static int getCapacity(int numEntries) {
+        int capacity = MIN_CAPACITY;
+        while (numEntries * 4L >= capacity * 3L) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    private static int getIndex(long firstKeyLong, int mask) {
+        return (int) (firstKeyLong ^ (firstKeyLong >>> 32)) & mask;
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xff);
+        }
+        return value;
+    }
+
+    private static void checkHash(byte[] hash) {
+        checkArgument(hash.length == HASH_LENGTH, "Hash must have %s bytes but has %s", HASH_LENGTH, hash.length);
+    }
+
+    @Override
+    public String toString() {
+        return "CompactHashMap{" +
+                "\n     size=" + size +
+                ",\n     capacity=" + used.length +
+                ",\n     valueLongs=" + valueLongs +
+                "\n}";
+    }
+}
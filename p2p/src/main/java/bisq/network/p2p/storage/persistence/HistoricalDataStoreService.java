@@ -23,28 +23,39 @@ import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
 import bisq.common.app.DevEnv;
 import bisq.common.app.Version;
 import bisq.common.persistence.PersistenceManager;
+import bisq.common.proto.persistable.PersistenceProtoResolver;
 
 import com.google.common.collect.ImmutableMap;
 
 import java.io.File;
+import java.io.IOException;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Manages historical data stores tagged with the release versions.
  * New data is added to the default map in the store (live data). Historical data is created from resource files.
+ * Historical stores are kept in memory-mapped files (see {@link MappedPayloadStore}), so their payloads only get
+ * deserialized when accessed.
  * For initial data requests we only use the live data as the users version is sent with the
  * request so the responding (seed)node can figure out if we miss any of the historical data.
  */
 @Slf4j
-public abstract class HistoricalDataStoreService<T extends PersistableNetworkPayloadStore<? extends PersistableNetworkPayload>> extends MapStoreService<T, PersistableNetworkPayload> {
-    private ImmutableMap<String, PersistableNetworkPayloadStore<? extends PersistableNetworkPayload>> storesByVersion;
-    // Cache to avoid that we have to recreate the historical data at each request
-    private ImmutableMap<P2PDataStorage.ByteArray, PersistableNetworkPayload> allHistoricalPayloads;
+public abstract class HistoricalDataStoreService<T extends PersistableNetworkPayloadStore<? extends PersistableNetworkPayload>> extends AppendOnlyMapStoreService<T> {
+    private static final String MAPPED_FILE_POSTFIX = ".mapped";
+
+    private volatile ImmutableMap<String, Map<P2PDataStorage.ByteArray, PersistableNetworkPayload>> storesByVersion = ImmutableMap.of();
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -62,49 +73,72 @@ public abstract class HistoricalDataStoreService<T extends PersistableNetworkPay
 
     // We give back a map of our live map and all historical maps newer than the requested version.
     // If requestersVersion is null we return all historical data.
+    // The returned map is a read-only view of the live data and the historical stores, so nothing gets copied and
+    // the historical payloads only get deserialized when the values get accessed. The mapped stores are the only
+    // representation of the historical data and are shared by all requests.
     public Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> getMapSinceVersion(String requestersVersion) {
-        // We add all our live data
-        Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> result = new HashMap<>(store.getMap());
-
-        // If we have a store with a newer version than the requesters version we will add those as well.
-        storesByVersion.entrySet().stream()
-                .filter(entry -> {
-                    // Old nodes not sending the version will get delivered all data
-                    if (requestersVersion == null) {
-                        log.info("The requester did not send a version. This is expected for not updated nodes.");
-                        return true;
-                    }
+        List<String> versions = getVersionsSince(requestersVersion);
+        var storesByVersion = this.storesByVersion;
+        // The historical stores contain the data added in the period of their release, so they do not overlap. The
+        // live data does not contain historical data either, see pruneLiveData.
+        List<Map<P2PDataStorage.ByteArray, PersistableNetworkPayload>> maps = new ArrayList<>();
+        maps.add(Collections.unmodifiableMap(getMapOfLiveData()));
+        versions.forEach(version -> maps.add(storesByVersion.get(version)));
+
+        Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> result = new PayloadMapsView(maps);
+        log.info("We found {} entries of historical stores of versions {} and the live data since requesters version {}",
+                result.size(), versions, requestersVersion);
+        return result;
+    }
 
-                    // Otherwise we only add data if the requesters version is older then
-                    // the version of the particular store.
-                    String storeVersion = entry.getKey();
-                    boolean newVersion = Version.isNewVersion(storeVersion, requestersVersion);
-                    String details = newVersion ?
-                            "As our historical store is a newer version we add the data to our result map." :
-                            "As the requester version is not older as our historical store we do not " +
-                                    "add the data to the result map.";
-                    log.info("The requester had version {}. Our historical data store has version {}.\n{}",
-                            requestersVersion, storeVersion, details);
-                    return newVersion;
-                })
-                .map(e -> e.getValue().getMap())
-                .forEach(result::putAll);
+    // Number of entries of getMapSinceVersion. The live map maintains its size on put and remove and the mapped stores
+    // know their number of entries, so we neither iterate nor deserialize any payloads.
+    public int getNumEntriesSinceVersion(String requestersVersion) {
+        var storesByVersion = this.storesByVersion;
+        return getMapOfLiveData().size() + getVersionsSince(requestersVersion).stream()
+                .mapToInt(version -> storesByVersion.get(version).size())
+                .sum();
+    }
 
-        log.info("We found {} entries since requesters version {}",
-                result.size(), requestersVersion);
-        return result;
+    public Optional<PersistableNetworkPayload> findAnyPayload() {
+        return Stream.concat(Stream.of(getMapOfLiveData()), storesByVersion.values().stream())
+                .filter(map -> !map.isEmpty())
+                .map(map -> map.values().iterator().next())
+                .filter(Objects::nonNull)
+                .findAny();
     }
 
     public Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> getMapOfLiveData() {
         return store.getMap();
     }
 
+    // Deserializes all historical payloads. For lookups by hash containsKey should be used.
     public Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> getMapOfAllData() {
         Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> result = new HashMap<>(getMapOfLiveData());
-        result.putAll(allHistoricalPayloads);
+        // Payloads of a corrupted mapped store cannot be deserialized until the store got replaced.
+        storesByVersion.values().forEach(historicalMap -> historicalMap.forEach((hash, payload) -> {
+            if (payload != null) {
+                result.put(hash, payload);
+            }
+        }));
         return result;
     }
 
+    @Override
+    public boolean containsKey(P2PDataStorage.ByteArray hash) {
+        return anyMapContainsKey(hash);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // AppendOnlyMapStoreService
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    protected boolean isContainedInOtherStores(P2PDataStorage.ByteArray hash) {
+        return storesByVersion.values().stream().anyMatch(historicalMap -> historicalMap.containsKey(hash));
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // MapStoreService
@@ -123,8 +157,7 @@ public abstract class HistoricalDataStoreService<T extends PersistableNetworkPay
             return;
         }
 
-        getMapOfLiveData().put(hash, payload);
-        requestPersistence();
+        super.put(hash, payload);
     }
 
     @Override
@@ -133,38 +166,44 @@ public abstract class HistoricalDataStoreService<T extends PersistableNetworkPay
             return null;
         }
 
-        // We do not return the value from getMapOfLiveData().put as we checked before that it does not contain any value.
+        // We do not return the value from super.putIfAbsent as we checked before that it does not contain any value.
         // So it will be always null. We still keep the return type as we override the method from MapStoreService which
         // follow the Map.putIfAbsent signature.
-        getMapOfLiveData().put(hash, payload);
-        requestPersistence();
+        super.putIfAbsent(hash, payload);
         return null;
     }
 
 
+    // We read the historical data stores first, so the payloads of the log which are contained in the historical
+    // stores do not get replayed into the live data. Otherwise we would prune them and rewrite the live store at
+    // each start.
     @Override
     protected void readFromResources(String postFix, Runnable completeHandler) {
-        readStore(persisted -> {
-            log.info("We have created the {} store for the live data and filled it with {} entries from the persisted data.",
-                    getFileName(), getMapOfLiveData().size());
-
-            // Now we add our historical data stores.
-            Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> allHistoricalPayloads = new HashMap<>();
-            Map<String, PersistableNetworkPayloadStore<? extends PersistableNetworkPayload>> storesByVersion = new HashMap<>();
-            AtomicInteger numFiles = new AtomicInteger(Version.HISTORICAL_RESOURCE_FILE_VERSION_TAGS.size());
-            Version.HISTORICAL_RESOURCE_FILE_VERSION_TAGS.forEach(version -> readHistoricalStoreFromResources(version,
-                    postFix,
-                    allHistoricalPayloads,
-                    storesByVersion,
-                    () -> {
-                        if (numFiles.decrementAndGet() == 0) {
-                            // At last iteration we set the immutable map
-                            this.allHistoricalPayloads = ImmutableMap.copyOf(allHistoricalPayloads);
-                            this.storesByVersion = ImmutableMap.copyOf(storesByVersion);
-                            completeHandler.run();
-                        }
-                    }));
-        });
+        Map<String, Map<P2PDataStorage.ByteArray, PersistableNetworkPayload>> storesByVersion = new HashMap<>();
+        AtomicInteger numFiles = new AtomicInteger(Version.HISTORICAL_RESOURCE_FILE_VERSION_TAGS.size());
+        Runnable onHistoricalStoresRead = () -> {
+            // At last iteration we set the immutable map
+            this.storesByVersion = ImmutableMap.copyOf(storesByVersion);
+            readStore(persisted -> {
+                log.info("We have created the {} store for the live data and filled it with {} entries from the persisted data.",
+                        getFileName(), getMapOfLiveData().size());
+                pruneLiveData();
+                completeHandler.run();
+            });
+        };
+        if (numFiles.get() == 0) {
+            onHistoricalStoresRead.run();
+            return;
+        }
+
+        Version.HISTORICAL_RESOURCE_FILE_VERSION_TAGS.forEach(version -> readHistoricalStoreFromResources(version,
+                postFix,
+                storesByVersion,
+                () -> {
+                    if (numFiles.decrementAndGet() == 0) {
+                        onHistoricalStoresRead.run();
+                    }
+                }));
     }
 
 
@@ -172,43 +211,113 @@ public abstract class HistoricalDataStoreService<T extends PersistableNetworkPay
     // Private
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    // If we have a store with a newer version than the requesters version we will add those as well.
+    private List<String> getVersionsSince(String requestersVersion) {
+        return storesByVersion.keySet().stream()
+                .filter(storeVersion -> {
+                    // Old nodes not sending the version will get delivered all data
+                    if (requestersVersion == null) {
+                        return true;
+                    }
+
+                    // Otherwise we only add data if the requesters version is older then
+                    // the version of the particular store.
+                    return Version.isNewVersion(storeVersion, requestersVersion);
+                })
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
     private void readHistoricalStoreFromResources(String version,
                                                   String postFix,
-                                                  Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> allHistoricalPayloads,
-                                                  Map<String, PersistableNetworkPayloadStore<? extends PersistableNetworkPayload>> storesByVersion,
+                                                  Map<String, Map<P2PDataStorage.ByteArray, PersistableNetworkPayload>> storesByVersion,
                                                   Runnable completeHandler) {
 
         String fileName = getFileName() + "_" + version;
         boolean wasCreatedFromResources = makeFileFromResourceFile(fileName, postFix);
 
+        File storeFile = new File(absolutePathOfStorageDir, fileName);
+        File mappedFile = new File(absolutePathOfStorageDir, fileName + MAPPED_FILE_POSTFIX);
+        PersistenceProtoResolver persistenceProtoResolver = persistenceManager.getPersistenceProtoResolver();
+        if (persistenceProtoResolver != null && storeFile.exists()) {
+            MappedPayloadStore mappedStore = MappedPayloadStore.open(mappedFile, storeFile.length(), persistenceProtoResolver);
+            if (mappedStore != null) {
+                mappedStore.setCorruptionHandler(() -> onMappedStoreCorrupted(version, fileName));
+                onHistoricalStoreRead(version, fileName, mappedStore, storesByVersion);
+                completeHandler.run();
+                return;
+            }
+        }
+
         // If resource file does not exist we do not create a new store as it would never get filled.
+        // Otherwise we parse the store file once and create the mapped file from it, so at the next start we only
+        // need to map it.
         persistenceManager.readPersisted(fileName, persisted -> {
-                    storesByVersion.put(version, persisted);
-                    allHistoricalPayloads.putAll(persisted.getMap());
-                    log.info("We have read from {} {} historical items.", fileName, persisted.getMap().size());
-                    pruneStore(persisted, version);
+                    Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> map = persisted.getMap();
+                    if (persistenceProtoResolver != null) {
+                        try {
+                            MappedPayloadStore.write(mappedFile, map.values(), storeFile.length());
+                            MappedPayloadStore mappedStore = MappedPayloadStore.open(mappedFile, storeFile.length(),
+                                    persistenceProtoResolver);
+                            if (mappedStore != null) {
+                                mappedStore.setCorruptionHandler(() -> onMappedStoreCorrupted(version, fileName));
+                                map = mappedStore;
+                            }
+                        } catch (IOException e) {
+                            log.error("Creating {} failed. We keep the historical data in memory.", mappedFile.getName(), e);
+                        }
+                    }
+                    onHistoricalStoreRead(version, fileName, map, storesByVersion);
                     completeHandler.run();
                 },
                 completeHandler::run);
     }
 
-    private void pruneStore(PersistableNetworkPayloadStore<? extends PersistableNetworkPayload> historicalStore,
-                            String version) {
+    private void onHistoricalStoreRead(String version,
+                                       String fileName,
+                                       Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> historicalMap,
+                                       Map<String, Map<P2PDataStorage.ByteArray, PersistableNetworkPayload>> storesByVersion) {
+        storesByVersion.put(version, historicalMap);
+        log.info("We have read from {} {} historical items.", fileName, historicalMap.size());
+    }
+
+    // The mapped file got deleted by the MappedPayloadStore and gets created again at the next start. Until then we
+    // keep the historical data of that version in memory.
+    private void onMappedStoreCorrupted(String version, String fileName) {
+        persistenceManager.readPersisted(fileName, persisted -> {
+                    Map<String, Map<P2PDataStorage.ByteArray, PersistableNetworkPayload>> storesByVersion =
+                            new HashMap<>(this.storesByVersion);
+                    storesByVersion.put(version, persisted.getMap());
+                    this.storesByVersion = ImmutableMap.copyOf(storesByVersion);
+                    log.info("We replaced the corrupted mapped store of {} with {} historical items read from the store file.",
+                            fileName, persisted.getMap().size());
+                },
+                () -> log.error("We could not read {} to replace its corrupted mapped store.", fileName));
+    }
+
+    // We prune the live data once all historical stores are set. From then on put does not add historical data to the
+    // live data, so the live data and the historical stores stay disjoint.
+    private void pruneLiveData() {
+        storesByVersion.forEach((version, historicalMap) -> pruneStore(historicalMap, version));
+    }
+
+    private void pruneStore(Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> historicalMap, String version) {
         Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> mapOfLiveData = getMapOfLiveData();
         int preLive = mapOfLiveData.size();
-        mapOfLiveData.keySet().removeAll(historicalStore.getMap().keySet());
+        // The live data is small compared to the historical data, so we look up each live entry by hash.
+        mapOfLiveData.keySet().removeIf(historicalMap::containsKey);
         int postLive = mapOfLiveData.size();
         if (preLive > postLive) {
             log.info("We pruned data from our live data store which are already contained in the historical data store with version {}. " +
                             "The live map had {} entries before pruning and has {} entries afterwards.",
                     version, preLive, postLive);
+            requestPersistence();
         } else {
             log.info("No pruning from historical data store with version {} was applied", version);
         }
-        requestPersistence();
     }
 
     private boolean anyMapContainsKey(P2PDataStorage.ByteArray hash) {
-        return getMapOfLiveData().containsKey(hash) || allHistoricalPayloads.containsKey(hash);
+        return getMapOfLiveData().containsKey(hash) || isContainedInOtherStores(hash);
     }
 }
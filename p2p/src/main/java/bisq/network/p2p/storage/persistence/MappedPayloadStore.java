@@ -0,0 +1,390 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.storage.persistence;
+
+import bisq.network.p2p.storage.P2PDataStorage;
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
+
+import bisq.common.file.FileUtil;
+import bisq.common.proto.ProtoResolver;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+
+/**
+ * Read-only map of the PersistableNetworkPayloads of a historical data store backed by a memory-mapped file. The file
+ * starts with an index of the hashes sorted in unsigned lexicographic order, followed by the serialized payloads.
+ * Lookups by hash use a binary search on the index and payloads are only deserialized if they get accessed, so the
+ * data does not occupy the heap.
+ *
+ * The file is created from the historical store file at the first start with a new release. As the historical store
+ * files never change we only check that the file is complete and was created from a source file of the same size.
+ * If a payload cannot be deserialized we treat the file as corrupted: We delete it, so it gets created again at the
+ * next start, and notify the corruption handler so the owner can replace the store.
+ */
+@Slf4j
+class MappedPayloadStore extends AbstractMap<P2PDataStorage.ByteArray, PersistableNetworkPayload> {
+    private static final int MAGIC = 0x48504d53;
+    private static final int FORMAT_VERSION = 1;
+    // magic, format version, length of the source file, number of entries
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+    private static final int MAX_HASH_LENGTH = 32;
+    // hash length, hash padded with zeros, offset and length of the serialized payload
+    private static final int INDEX_ENTRY_SIZE = 1 + MAX_HASH_LENGTH + 8 + 4;
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final int numEntries;
+    private final ProtoResolver protoResolver;
+    private final AtomicBoolean corrupted = new AtomicBoolean();
+    // Called once at the first payload which cannot be deserialized. Might be called from any thread.
+    @Setter
+    @Nullable
+    private Runnable corruptionHandler;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private MappedPayloadStore(File file, ByteBuffer buffer, int numEntries, ProtoResolver protoResolver) {
+        this.file = file;
+        this.buffer = buffer;
+        this.numEntries = numEntries;
+        this.protoResolver = protoResolver;
+    }
+
+    /**
+     * @return The mapped store or null if the file does not exist or was not created from a source file with the
+     * given length.
+     */
+    @Nullable
+    static MappedPayloadStore open(File file, long sourceLength, ProtoResolver protoResolver) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileLength = channel.size();
+            if (fileLength < HEADER_SIZE || fileLength > Integer.MAX_VALUE) {
+                log.warn("{} has an invalid size of {} bytes", file.getName(), fileLength);
+                return null;
+            }
+
+            // The mapping stays valid after the channel got closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileLength);
+            int numEntries = buffer.getInt(16);
+            if (buffer.getInt(0) != MAGIC ||
+                    buffer.getInt(4) != FORMAT_VERSION ||
+                    buffer.getLong(8) != sourceLength ||
+                    numEntries < 0 ||
+                    HEADER_SIZE + (long) numEntries * INDEX_ENTRY_SIZE > fileLength) {
+                log.info("{} does not match the source file. We will create it again.", file.getName());
+                return null;
+            }
+
+            if (numEntries > 0) {
+                int lastEntry = HEADER_SIZE + (numEntries - 1) * INDEX_ENTRY_SIZE;
+                long end = buffer.getLong(lastEntry + 1 + MAX_HASH_LENGTH) + buffer.getInt(lastEntry + 1 + MAX_HASH_LENGTH + 8);
+                if (end != fileLength) {
+                    log.warn("{} is incomplete. We will create it again.", file.getName());
+                    return null;
+                }
+            }
+            return new MappedPayloadStore(file, buffer, numEntries, protoResolver);
+        } catch (IOException e) {
+            log.error("Mapping {} failed", file.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    static void write(File file, Collection<? extends PersistableNetworkPayload> payloads, long sourceLength)
+            throws IOException {
+        List<PersistableNetworkPayload> sorted = payloads.stream()
+                .filter(payload -> payload.getHash().length <= MAX_HASH_LENGTH)
+                .sorted(Comparator.comparing(PersistableNetworkPayload::getHash, MappedPayloadStore::compareHashes))
+                .collect(Collectors.toList());
+        List<byte[]> serialized = sorted.stream()
+                .map(payload -> payload.toProtoMessage().toByteArray())
+                .collect(Collectors.toList());
+
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOutputStream))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(sourceLength);
+            out.writeInt(sorted.size());
+
+            long offset = HEADER_SIZE + (long) sorted.size() * INDEX_ENTRY_SIZE;
+            for (int i = 0; i < sorted.size(); i++) {
+                byte[] hash = sorted.get(i).getHash();
+                out.writeByte(hash.length);
+                out.write(Arrays.copyOf(hash, MAX_HASH_LENGTH));
+                out.writeLong(offset);
+                out.writeInt(serialized.get(i).length);
+                offset += serialized.get(i).length;
+            }
+            for (byte[] bytes : serialized) {
+                out.write(bytes);
+            }
+            out.flush();
+            fileOutputStream.getFD().sync();
+        }
+        FileUtil.renameFile(tempFile, file);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Map
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public int size() {
+        return numEntries;
+    }
+
+    // Once the file is corrupted we deserialize the payload, so we do not report keys for which get returns null.
+    @Override
+    public boolean containsKey(Object key) {
+        if (corrupted.get())
+            return get(key) != null;
+
+        return key instanceof P2PDataStorage.ByteArray && indexOf(((P2PDataStorage.ByteArray) key).bytes) >= 0;
+    }
+
+    @Override
+    @Nullable
+    public PersistableNetworkPayload get(Object key) {
+        if (!(key instanceof P2PDataStorage.ByteArray))
+            return null;
+
+        int index = indexOf(((P2PDataStorage.ByteArray) key).bytes);
+        return index >= 0 ? getPayload(index) : null;
+    }
+
+    @Override
+    public Set<P2PDataStorage.ByteArray> keySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<P2PDataStorage.ByteArray> iterator() {
+                return new IndexIterator<>() {
+                    @Override
+                    P2PDataStorage.ByteArray get(int index) {
+                        return new P2PDataStorage.ByteArray(getHash(index));
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public int size() {
+                return numEntries;
+            }
+        };
+    }
+
+    // The payload of an entry gets deserialized when its value is accessed.
+    @Override
+    public Set<Entry<P2PDataStorage.ByteArray, PersistableNetworkPayload>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<P2PDataStorage.ByteArray, PersistableNetworkPayload>> iterator() {
+                return new IndexIterator<>() {
+                    @Override
+                    Entry<P2PDataStorage.ByteArray, PersistableNetworkPayload> get(int index) {
+                        return new LazyEntry(index);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return numEntries;
+            }
+        };
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private abstract class IndexIterator<E> implements Iterator<E> {
+        private int index;
+
+        @Override
+        public boolean hasNext() {
+            return index < numEntries;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            return get(index++);
+        }
+
+        abstract E get(int index);
+    }
+
+    private class LazyEntry implements Entry<P2PDataStorage.ByteArray, PersistableNetworkPayload> {
+        private final int index;
+        private final P2PDataStorage.ByteArray key;
+
+        LazyEntry(int index) {
+            this.index = index;
+            this.key = new P2PDataStorage.ByteArray(getHash(index));
+        }
+
+        @Override
+        public P2PDataStorage.ByteArray getKey() {
+            return key;
+        }
+
+        @Override
+        public PersistableNetworkPayload getValue() {
+            return getPayload(index);
+        }
+
+        @Override
+        public PersistableNetworkPayload setValue(PersistableNetworkPayload value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry))
+                return false;
+
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            return key.equals(entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(getValue());
+        }
+    }
+
+    private int indexOf(byte[] hash) {
+        if (hash.length > MAX_HASH_LENGTH)
+            return -1;
+
+        int low = 0;
+        int high = numEntries - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int result = compareHashes(getHash(mid), hash);
+            if (result < 0) {
+                low = mid + 1;
+            } else if (result > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private byte[] getHash(int index) {
+        int position = HEADER_SIZE + index * INDEX_ENTRY_SIZE;
+        byte[] hash = new byte[buffer.get(position) & 0xff];
+        // We use a duplicate as relative reads change the position, so concurrent reads would interfere.
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(position + 1);
+        duplicate.get(hash);
+        return hash;
+    }
+
+    @Nullable
+    private PersistableNetworkPayload getPayload(int index) {
+        int position = HEADER_SIZE + index * INDEX_ENTRY_SIZE + 1 + MAX_HASH_LENGTH;
+        int offset = (int) buffer.getLong(position);
+        int length = buffer.getInt(position + 8);
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.limit(offset + length);
+        try {
+            return PersistableNetworkPayload.fromProto(protobuf.PersistableNetworkPayload.parseFrom(duplicate),
+                    protoResolver);
+        } catch (Throwable t) {
+            onCorrupted(index, t);
+            return null;
+        }
+    }
+
+    private void onCorrupted(int index, Throwable t) {
+        if (!corrupted.compareAndSet(false, true)) {
+            log.error("Could not create payload at index {} of {}", index, file.getName());
+            return;
+        }
+
+        log.error("Could not create payload at index {} of {}. We delete the file so it gets created again.",
+                index, file.getName(), t);
+        try {
+            FileUtil.deleteFileIfExists(file);
+        } catch (IOException e) {
+            log.error("Could not delete {}", file.getAbsolutePath(), e);
+        }
+        if (corruptionHandler != null)
+            corruptionHandler.run();
+    }
+
+    // Unsigned lexicographic order. Shorter hashes come first if they are a prefix of the other hash.
+    private static int compareHashes(byte[] hash1, byte[] hash2) {
+        int length = Math.min(hash1.length, hash2.length);
+        for (int i = 0; i < length; i++) {
+            int result = Integer.compare(hash1[i] & 0xff, hash2[i] & 0xff);
+            if (result != 0)
+                return result;
+        }
+        return Integer.compare(hash1.length, hash2.length);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package bisq.network.p2p.storage.persistence;
+
+import bisq.network.p2p.storage.P2PDataStorage;
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only view of disjoint maps of PersistableNetworkPayloads, e.g. the historical stores of a
+ * HistoricalDataStoreService. Nothing gets copied, so the payloads of memory-mapped stores only get deserialized if a
+ * value is accessed. As the maps do not contain the same keys the size is the sum of their sizes.
+ */
+class PayloadMapsView extends AbstractMap<P2PDataStorage.ByteArray, PersistableNetworkPayload> {
+    private final List<Map<P2PDataStorage.ByteArray, PersistableNetworkPayload>> maps;
+
+    PayloadMapsView(List<Map<P2PDataStorage.ByteArray, PersistableNetworkPayload>> maps) {
+        this.maps = ImmutableList.copyOf(maps);
+    }
+
+    @Override
+    public int size() {
+        return maps.stream().mapToInt(Map::size).sum();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return maps.stream().allMatch(Map::isEmpty);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return maps.stream().anyMatch(map -> map.containsKey(key));
+    }
+
+    @Override
+    public PersistableNetworkPayload get(Object key) {
+        for (Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> map : maps) {
+            PersistableNetworkPayload payload = map.get(key);
+            if (payload != null)
+                return payload;
+        }
+        return null;
+    }
+
+    @Override
+    public Set<Entry<P2PDataStorage.ByteArray, PersistableNetworkPayload>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<P2PDataStorage.ByteArray, PersistableNetworkPayload>> iterator() {
+                return Iterators.unmodifiableIterator(Iterators.concat(
+                        Iterators.transform(maps.iterator(), map -> map.entrySet().iterator())));
+            }
+
+            @Override
+            public int size() {
+                return PayloadMapsView.this.size();
+            }
+        };
+    }
+}
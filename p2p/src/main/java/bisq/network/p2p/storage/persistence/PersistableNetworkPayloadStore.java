@@ -21,6 +21,7 @@ import bisq.network.p2p.storage.P2PDataStorage;
 import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
 
 import bisq.common.proto.persistable.PersistableEnvelope;
+import bisq.common.proto.persistable.SnapshotPersistableEnvelope;
 
 import java.util.Collection;
 import java.util.Map;
@@ -34,7 +35,7 @@ import lombok.extern.slf4j.Slf4j;
  * Store for PersistableNetworkPayload map entries with it's data hash as key.
  */
 @Slf4j
-public abstract class PersistableNetworkPayloadStore<T extends PersistableNetworkPayload> implements PersistableEnvelope {
+public abstract class PersistableNetworkPayloadStore<T extends PersistableNetworkPayload> implements SnapshotPersistableEnvelope {
     @Getter
     protected final Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> map = new ConcurrentHashMap<>();
 
@@ -48,4 +49,12 @@ public abstract class PersistableNetworkPayloadStore<T extends PersistableNetwor
     public boolean containsKey(P2PDataStorage.ByteArray hash) {
         return map.containsKey(hash);
     }
+
+    // The stores are too large for copying them. Payloads are immutable and only get added or removed, and iterating
+    // the ConcurrentHashMap is safe while it gets modified. So we serialize the store itself, payloads added during
+    // the serialization trigger another persistence request anyway.
+    @Override
+    public PersistableEnvelope getSnapshot() {
+        return this;
+    }
 }
@@ -21,54 +21,99 @@ package bisq.network.p2p.storage.persistence;
 import bisq.network.p2p.storage.P2PDataStorage;
 
 import bisq.common.proto.persistable.PersistableEnvelope;
+import bisq.common.proto.persistable.SnapshotPersistableEnvelope;
 import bisq.common.util.Utilities;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.stream.Collectors;
+import com.google.protobuf.UnsafeByteOperations;
 
-import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Date of removal by the 32 byte hash of the removed payloads. Entries are kept in a {@link CompactHashMap} and
+ * persisted in its packed format.
+ */
 @Slf4j
-public class RemovedPayloadsMap implements PersistableEnvelope {
-    @Getter
-    private final Map<P2PDataStorage.ByteArray, Long> dateByHashes;
+public class RemovedPayloadsMap implements SnapshotPersistableEnvelope {
+    private static final int DATE = 0;
+
+    // Guarded by this
+    private final CompactHashMap dateByHashes;
 
     public RemovedPayloadsMap() {
-        this.dateByHashes = new HashMap<>();
+        this(new CompactHashMap(1));
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // PROTO BUFFER
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    private RemovedPayloadsMap(Map<P2PDataStorage.ByteArray, Long> dateByHashes) {
+    private RemovedPayloadsMap(CompactHashMap dateByHashes) {
         this.dateByHashes = dateByHashes;
     }
 
-    // Protobuf map only supports strings or integers as key, but no bytes or complex object so we convert the
-    // bytes to a hex string, otherwise we would need to make a extra value object to wrap it.
     @Override
-    public protobuf.PersistableEnvelope toProtoMessage() {
+    public synchronized protobuf.PersistableEnvelope toProtoMessage() {
+        // The packed bytes are not shared, so we don't need to copy them again.
         protobuf.RemovedPayloadsMap.Builder builder = protobuf.RemovedPayloadsMap.newBuilder()
-                .putAllDateByHashes(dateByHashes.entrySet().stream()
-                        .collect(Collectors.toMap(e -> Utilities.encodeToHex(e.getKey().bytes),
-                                Map.Entry::getValue)));
+                .setPackedDateByHashes(UnsafeByteOperations.unsafeWrap(dateByHashes.toPacked()));
         return protobuf.PersistableEnvelope.newBuilder()
                 .setRemovedPayloadsMap(builder)
                 .build();
     }
 
     public static RemovedPayloadsMap fromProto(protobuf.RemovedPayloadsMap proto) {
-        Map<P2PDataStorage.ByteArray, Long> dateByHashes = proto.getDateByHashesMap().entrySet().stream()
-                .collect(Collectors.toMap(e -> new P2PDataStorage.ByteArray(Utilities.decodeFromHex(e.getKey())),
-                        Map.Entry::getValue));
-        return new RemovedPayloadsMap(dateByHashes);
+        if (!proto.getPackedDateByHashes().isEmpty()) {
+            return new RemovedPayloadsMap(CompactHashMap.fromPacked(proto.getPackedDateByHashes().asReadOnlyByteBuffer(), 1));
+        }
+
+        // Data persisted by older versions used the hex string of the hash as key
+        RemovedPayloadsMap removedPayloadsMap = new RemovedPayloadsMap();
+        proto.getDateByHashesMap().forEach((hex, date) ->
+                removedPayloadsMap.putIfAbsent(new P2PDataStorage.ByteArray(Utilities.decodeFromHex(hex)), date));
+        return removedPayloadsMap;
+    }
+
+    @Override
+    public synchronized PersistableEnvelope getSnapshot() {
+        return new RemovedPayloadsMap(dateByHashes.copy());
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public synchronized int size() {
+        return dateByHashes.size();
+    }
+
+    public synchronized boolean containsKey(P2PDataStorage.ByteArray hash) {
+        return dateByHashes.containsKey(hash.bytes);
+    }
+
+    public synchronized void putIfAbsent(P2PDataStorage.ByteArray hash, long date) {
+        if (!dateByHashes.containsKey(hash.bytes)) {
+            dateByHashes.setValue(dateByHashes.putKey(hash.bytes), DATE, date);
+        }
+    }
+
+    // Entries we have already are kept.
+    public void putAll(RemovedPayloadsMap removedPayloadsMap) {
+        CompactHashMap other;
+        synchronized (removedPayloadsMap) {
+            other = removedPayloadsMap.dateByHashes.copy();
+        }
+        synchronized (this) {
+            other.forEach(slot -> putIfAbsent(new P2PDataStorage.ByteArray(other.getKey(slot)), other.getValue(slot, DATE)));
+        }
+    }
+
+    public synchronized void removeEntriesOlderThan(long date) {
+        dateByHashes.removeIf(slot -> dateByHashes.getValue(slot, DATE) <= date);
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
         return "RemovedPayloadsMap{" +
                 "\n     dateByHashes=" + dateByHashes +
                 "\n}";
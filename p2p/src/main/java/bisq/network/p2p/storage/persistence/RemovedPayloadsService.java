@@ -55,10 +55,9 @@ public class RemovedPayloadsService implements PersistedDataHost {
     public void readPersisted(Runnable completeHandler) {
         long cutOffDate = System.currentTimeMillis() - MailboxStoragePayload.TTL;
         persistenceManager.readPersisted(persisted -> {
-                    persisted.getDateByHashes().entrySet().stream()
-                            .filter(e -> e.getValue() > cutOffDate)
-                            .forEach(e -> removedPayloadsMap.getDateByHashes().put(e.getKey(), e.getValue()));
-                    log.trace("## readPersisted: removedPayloadsMap size={}", removedPayloadsMap.getDateByHashes().size());
+                    removedPayloadsMap.putAll(persisted);
+                    removedPayloadsMap.removeEntriesOlderThan(cutOffDate);
+                    log.trace("## readPersisted: removedPayloadsMap size={}", removedPayloadsMap.size());
                     persistenceManager.requestPersistence();
                     completeHandler.run();
                 },
@@ -67,12 +66,12 @@ public class RemovedPayloadsService implements PersistedDataHost {
 
     public boolean wasRemoved(P2PDataStorage.ByteArray hashOfPayload) {
         log.trace("## called wasRemoved: hashOfPayload={}, removedPayloadsMap={}", hashOfPayload.toString(), removedPayloadsMap);
-        return removedPayloadsMap.getDateByHashes().containsKey(hashOfPayload);
+        return removedPayloadsMap.containsKey(hashOfPayload);
     }
 
     public void addHash(P2PDataStorage.ByteArray hashOfPayload) {
         log.trace("## called addHash: hashOfPayload={}, removedPayloadsMap={}", hashOfPayload.toString(), removedPayloadsMap);
-        removedPayloadsMap.getDateByHashes().putIfAbsent(hashOfPayload, System.currentTimeMillis());
+        removedPayloadsMap.putIfAbsent(hashOfPayload, System.currentTimeMillis());
         persistenceManager.requestPersistence();
     }
 }
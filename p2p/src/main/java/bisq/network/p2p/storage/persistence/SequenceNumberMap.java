@@ -20,26 +20,25 @@ package bisq.network.p2p.storage.persistence;
 import bisq.network.p2p.storage.P2PDataStorage;
 
 import bisq.common.proto.persistable.PersistableEnvelope;
+import bisq.common.proto.persistable.SnapshotPersistableEnvelope;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import com.google.protobuf.UnsafeByteOperations;
 
-import lombok.Getter;
-import lombok.Setter;
+import javax.annotation.Nullable;
 
 /**
- * This class was not generalized to HashMapPersistable (like we did with #ListPersistable) because
- * in protobuffer the map construct can't be anything, so the straightforward mapping was not possible.
- * Hence this Persistable class.
+ * Sequence numbers and time stamps by the 32 byte hash of the payloads. Entries are kept in a {@link CompactHashMap}
+ * and persisted in its packed format, as the map can have many entries and gets persisted frequently.
  */
-public class SequenceNumberMap implements PersistableEnvelope {
-    @Getter
-    @Setter
-    private Map<P2PDataStorage.ByteArray, P2PDataStorage.MapValue> map = new ConcurrentHashMap<>();
+public class SequenceNumberMap implements SnapshotPersistableEnvelope {
+    private static final int SEQUENCE_NR = 0;
+    private static final int TIME_STAMP = 1;
+
+    // Guarded by this
+    private CompactHashMap map;
 
     public SequenceNumberMap() {
+        this(new CompactHashMap(2));
     }
 
 
@@ -47,28 +46,35 @@ public class SequenceNumberMap implements PersistableEnvelope {
     // PROTO BUFFER
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    private SequenceNumberMap(Map<P2PDataStorage.ByteArray, P2PDataStorage.MapValue> map) {
-        this.map.putAll(map);
+    private SequenceNumberMap(CompactHashMap map) {
+        this.map = map;
     }
 
     @Override
-    public protobuf.PersistableEnvelope toProtoMessage() {
+    public synchronized protobuf.PersistableEnvelope toProtoMessage() {
+        // The packed bytes are not shared, so we don't need to copy them again.
         return protobuf.PersistableEnvelope.newBuilder()
                 .setSequenceNumberMap(protobuf.SequenceNumberMap.newBuilder()
-                        .addAllSequenceNumberEntries(map.entrySet().stream()
-                                .map(entry -> protobuf.SequenceNumberEntry.newBuilder()
-                                        .setBytes(entry.getKey().toProtoMessage())
-                                        .setMapValue(entry.getValue().toProtoMessage())
-                                        .build())
-                                .collect(Collectors.toList())))
+                        .setPackedEntries(UnsafeByteOperations.unsafeWrap(map.toPacked())))
                 .build();
     }
 
     public static SequenceNumberMap fromProto(protobuf.SequenceNumberMap proto) {
-        HashMap<P2PDataStorage.ByteArray, P2PDataStorage.MapValue> map = new HashMap<>();
+        if (!proto.getPackedEntries().isEmpty()) {
+            return new SequenceNumberMap(CompactHashMap.fromPacked(proto.getPackedEntries().asReadOnlyByteBuffer(), 2));
+        }
+
+        // Data persisted by older versions
+        SequenceNumberMap sequenceNumberMap = new SequenceNumberMap();
         proto.getSequenceNumberEntriesList()
-                .forEach(e -> map.put(P2PDataStorage.ByteArray.fromProto(e.getBytes()), P2PDataStorage.MapValue.fromProto(e.getMapValue())));
-        return new SequenceNumberMap(map);
+                .forEach(e -> sequenceNumberMap.put(P2PDataStorage.ByteArray.fromProto(e.getBytes()),
+                        P2PDataStorage.MapValue.fromProto(e.getMapValue())));
+        return sequenceNumberMap;
+    }
+
+    @Override
+    public synchronized PersistableEnvelope getSnapshot() {
+        return new SequenceNumberMap(map.copy());
     }
 
 
@@ -76,20 +82,46 @@ public class SequenceNumberMap implements PersistableEnvelope {
     // API
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    // Delegates
-    public int size() {
+    public synchronized int size() {
         return map.size();
     }
 
-    public boolean containsKey(P2PDataStorage.ByteArray key) {
-        return map.containsKey(key);
+    public synchronized boolean containsKey(P2PDataStorage.ByteArray key) {
+        return map.containsKey(key.bytes);
+    }
+
+    @Nullable
+    public synchronized P2PDataStorage.MapValue get(P2PDataStorage.ByteArray key) {
+        int slot = map.indexOf(key.bytes);
+        return slot >= 0 ?
+                new P2PDataStorage.MapValue((int) map.getValue(slot, SEQUENCE_NR), map.getValue(slot, TIME_STAMP)) :
+                null;
+    }
+
+    public synchronized void put(P2PDataStorage.ByteArray key, P2PDataStorage.MapValue value) {
+        int slot = map.putKey(key.bytes);
+        map.setValue(slot, SEQUENCE_NR, value.sequenceNr);
+        map.setValue(slot, TIME_STAMP, value.timeStamp);
     }
 
-    public P2PDataStorage.MapValue get(P2PDataStorage.ByteArray key) {
-        return map.get(key);
+    public void setAll(SequenceNumberMap sequenceNumberMap) {
+        CompactHashMap copy;
+        synchronized (sequenceNumberMap) {
+            copy = sequenceNumberMap.map.copy();
+        }
+        synchronized (this) {
+            map = copy;
+        }
     }
 
-    public void put(P2PDataStorage.ByteArray key, P2PDataStorage.MapValue value) {
-        map.put(key, value);
+    public synchronized void removeEntriesOlderThan(long timeStamp) {
+        map.removeIf(slot -> map.getValue(slot, TIME_STAMP) <= timeStamp);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SequenceNumberMap{" +
+                "\n     map=" + map +
+                "\n}";
     }
 }
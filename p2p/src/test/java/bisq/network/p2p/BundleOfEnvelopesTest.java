@@ -0,0 +1,62 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p;
+
+import bisq.network.p2p.storage.messages.RefreshOfferMessage;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BundleOfEnvelopesTest {
+
+    private static RefreshOfferMessage newMessage(int sequenceNumber) {
+        return new RefreshOfferMessage(new byte[32], new byte[46], new byte[32], sequenceNumber);
+    }
+
+    @Test
+    public void getEnvelopesSize_matchesSerializedEnvelopes() {
+        BundleOfEnvelopes bundle = new BundleOfEnvelopes();
+        Assert.assertEquals(0, bundle.getEnvelopesSize());
+
+        for (int i = 1; i <= 3; i++) {
+            bundle.add(newMessage(i * 1000));
+            Assert.assertEquals(bundle.toProtoNetworkEnvelope().getBundleOfEnvelopes().getSerializedSize(),
+                    bundle.getEnvelopesSize());
+        }
+    }
+
+    @Test
+    public void getEnvelopesSize_calculatedForEnvelopesPassedToConstructor() {
+        BundleOfEnvelopes bundle = new BundleOfEnvelopes(Arrays.asList(newMessage(1), newMessage(2)));
+
+        Assert.assertEquals(bundle.toProtoNetworkEnvelope().getBundleOfEnvelopes().getSerializedSize(),
+                bundle.getEnvelopesSize());
+    }
+
+    @Test
+    public void getCachedProtoNetworkEnvelope_sharedBetweenBundles() {
+        RefreshOfferMessage message = newMessage(1);
+        BundleOfEnvelopes bundle1 = new BundleOfEnvelopes(Arrays.asList(message, newMessage(2)));
+        BundleOfEnvelopes bundle2 = new BundleOfEnvelopes(Arrays.asList(message, newMessage(3)));
+
+        Assert.assertSame(bundle1.toProtoNetworkEnvelope().getBundleOfEnvelopes().getEnvelopes(0),
+                bundle2.toProtoNetworkEnvelope().getBundleOfEnvelopes().getEnvelopes(0));
+    }
+}
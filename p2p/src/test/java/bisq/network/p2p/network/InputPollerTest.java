@@ -0,0 +1,100 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package bisq.network.p2p.network;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InputPollerTest {
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final CountDownLatch runs = new CountDownLatch(1);
+    private final Runnable inputHandler = runs::countDown;
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void register_runsInputHandlerOnceInputIsAvailable() throws Exception {
+        InputPoller inputPoller = new InputPoller(MoreExecutors.directExecutor(), scheduler, 5, TimeUnit.MINUTES.toMillis(1));
+        PipedOutputStream outputStream = new PipedOutputStream();
+        InputStream inputStream = new PipedInputStream(outputStream);
+
+        inputPoller.register(inputHandler, inputStream);
+        Assert.assertFalse(runs.await(100, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(inputPoller.isRegistered(inputHandler));
+
+        outputStream.write(1);
+        Assert.assertTrue(runs.await(5, TimeUnit.SECONDS));
+        Assert.assertFalse(inputPoller.isRegistered(inputHandler));
+    }
+
+    @Test
+    public void register_runsInputHandlerAfterIdleTimeout() throws Exception {
+        InputPoller inputPoller = new InputPoller(MoreExecutors.directExecutor(), scheduler, 5, 50);
+        InputStream inputStream = new PipedInputStream(new PipedOutputStream());
+
+        inputPoller.register(inputHandler, inputStream);
+        Assert.assertTrue(runs.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void register_runsInputHandlerIfStreamIsClosed() throws Exception {
+        InputPoller inputPoller = new InputPoller(MoreExecutors.directExecutor(), scheduler, 5, TimeUnit.MINUTES.toMillis(1));
+        InputStream closedInputStream = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Stream closed");
+            }
+
+            @Override
+            public int available() throws IOException {
+                throw new IOException("Stream closed");
+            }
+        };
+
+        inputPoller.register(inputHandler, closedInputStream);
+        Assert.assertTrue(runs.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void poll_continuesIfInputHandlerFails() throws Exception {
+        InputPoller inputPoller = new InputPoller(MoreExecutors.directExecutor(), scheduler, 5, 0);
+        inputPoller.register(() -> {
+            throw new IllegalStateException();
+        }, new PipedInputStream(new PipedOutputStream()));
+
+        inputPoller.register(inputHandler, new PipedInputStream(new PipedOutputStream()));
+        Assert.assertTrue(runs.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package bisq.network.p2p.network;
+
+import bisq.network.p2p.peers.keepalive.messages.Ping;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LockingProtoOutputStreamTest {
+    private static final int THREADS = 8;
+    private static final int ENVELOPES_PER_THREAD = 200;
+
+    @Test
+    public void writeEnvelope_concurrentWritesAreNotInterleaved() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        LockingProtoOutputStream protoOutputStream = new LockingProtoOutputStream(outputStream, new Statistic());
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int firstNonce = thread * ENVELOPES_PER_THREAD;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ENVELOPES_PER_THREAD; i++) {
+                        protoOutputStream.writeEnvelope(new Ping(firstNonce + i, 0));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
+        Set<Integer> nonces = new HashSet<>();
+        protobuf.NetworkEnvelope proto;
+        while ((proto = protobuf.NetworkEnvelope.parseDelimitedFrom(inputStream)) != null) {
+            Assert.assertTrue(proto.hasPing());
+            nonces.add(proto.getPing().getNonce());
+        }
+        Assert.assertEquals(THREADS * ENVELOPES_PER_THREAD, nonces.size());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package bisq.network.p2p.network;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SharedConnectionExecutorsTest {
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService writerExecutor = Executors.newCachedThreadPool();
+    private final ExecutorService inputHandlerExecutor = Executors.newCachedThreadPool();
+    private final InputPoller inputPoller = new InputPoller(inputHandlerExecutor, scheduler, 5, TimeUnit.MINUTES.toMillis(1));
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+        writerExecutor.shutdownNow();
+        inputHandlerExecutor.shutdownNow();
+    }
+
+    @Test
+    public void executeOnWriter_runsTasksOfConnectionInOrder() throws Exception {
+        ConnectionExecutors executors = new ConnectionExecutors.Shared(inputPoller, scheduler, writerExecutor);
+        List<Integer> written = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        for (int i = 0; i < 100; i++) {
+            int index = i;
+            executors.executeOnWriter(() -> written.add(index), 0);
+        }
+        executors.executeOnWriter(done::countDown, 0);
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i, (int) written.get(i));
+        }
+    }
+
+    @Test
+    public void executeOnWriter_blockedWriterDoesNotDelayOtherConnections() throws Exception {
+        ConnectionExecutors slowPeer = new ConnectionExecutors.Shared(inputPoller, scheduler, writerExecutor);
+        ConnectionExecutors otherPeer = new ConnectionExecutors.Shared(inputPoller, scheduler, writerExecutor);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch slowPeerDone = new CountDownLatch(1);
+        CountDownLatch otherPeerDone = new CountDownLatch(1);
+
+        // Simulates a blocking socket write to a peer which does not read
+        slowPeer.executeOnWriter(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 0);
+        slowPeer.executeOnWriter(slowPeerDone::countDown, 0);
+        otherPeer.executeOnWriter(otherPeerDone::countDown, 10);
+
+        Assert.assertTrue(otherPeerDone.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, slowPeerDone.getCount());
+
+        release.countDown();
+        Assert.assertTrue(slowPeerDone.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TokenBucketTest {
+    private final AtomicLong now = new AtomicLong(1000);
+
+    @Test
+    public void reserve_burstWithoutDelay() {
+        TokenBucket tokenBucket = new TokenBucket(10, 3, now::get);
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0, tokenBucket.reserve());
+        }
+        // 10 tokens per sec result in one token every 100 ms
+        Assert.assertEquals(100, tokenBucket.reserve());
+        Assert.assertEquals(200, tokenBucket.reserve());
+    }
+
+    @Test
+    public void reserve_refillsOverTime() {
+        TokenBucket tokenBucket = new TokenBucket(10, 2, now::get);
+        tokenBucket.reserve();
+        tokenBucket.reserve();
+        Assert.assertEquals(100, tokenBucket.reserve());
+
+        now.addAndGet(150);
+        Assert.assertEquals(50, tokenBucket.reserve());
+
+        // Refill is capped at burst size
+        now.addAndGet(10_000);
+        Assert.assertEquals(0, tokenBucket.reserve());
+        Assert.assertEquals(0, tokenBucket.reserve());
+        Assert.assertEquals(100, tokenBucket.reserve());
+    }
+}
@@ -63,6 +63,8 @@ public class P2PDataStorageBuildGetDataResponseTest {
 
         abstract GetDataRequest buildGetDataRequest(int nonce, Set<byte[]> knownKeys);
 
+        abstract GetDataRequest buildGetDataRequest(int nonce, PayloadHashSketch payloadHashSketch);
+
         @Mock
         NetworkNode networkNode;
 
@@ -462,6 +464,59 @@ public class P2PDataStorageBuildGetDataResponseTest {
             Assert.assertTrue(getDataResponse.getPersistableNetworkPayloadSet().isEmpty());
             Assert.assertTrue(getDataResponse.getDataSet().contains(onlyLocal));
         }
+
+        // TESTCASE: Given a GetDataRequest w/ sketch, only send back the entries missing in the sketch
+        @Test
+        public void buildGetDataResponse_sketchSendBackOnlyUnknown() throws NoSuchAlgorithmException {
+            PersistableNetworkPayload fromPeerAndLocal = new PersistableNetworkPayloadStub(new byte[]{1});
+            PersistableNetworkPayload onlyLocal = new PersistableNetworkPayloadStub(new byte[]{2});
+            ProtectedStorageEntry onlyLocalPSE = getProtectedStorageEntryForAdd();
+
+            this.testState.mockedStorage.addPersistableNetworkPayload(
+                    fromPeerAndLocal, this.localNodeAddress, false);
+            this.testState.mockedStorage.addPersistableNetworkPayload(
+                    onlyLocal, this.localNodeAddress, false);
+            this.testState.mockedStorage.addProtectedStorageEntry(
+                    onlyLocalPSE, this.localNodeAddress, null);
+
+            PayloadHashSketch payloadHashSketch = new PayloadHashSketch(PayloadHashSketch.getNumCellsForDifference(10));
+            payloadHashSketch.add(fromPeerAndLocal.getHash());
+            payloadHashSketch.add(new byte[]{3});
+            GetDataRequest getDataRequest = this.buildGetDataRequest(1, payloadHashSketch);
+
+            AtomicBoolean outPNPTruncated = new AtomicBoolean(false);
+            AtomicBoolean outPSETruncated = new AtomicBoolean(false);
+            Capabilities peerCapabilities = new Capabilities();
+            GetDataResponse getDataResponse = this.testState.mockedStorage.buildGetDataResponse(
+                    getDataRequest, 10, outPNPTruncated, outPSETruncated, peerCapabilities);
+
+            Assert.assertFalse(getDataResponse.isReconciliationFailed());
+            Assert.assertEquals(1, getDataResponse.getRequestNonce());
+            Assert.assertEquals(Collections.singleton(onlyLocal), getDataResponse.getPersistableNetworkPayloadSet());
+            Assert.assertEquals(Collections.singleton(onlyLocalPSE), getDataResponse.getDataSet());
+        }
+
+        // TESTCASE: Given a GetDataRequest w/ undecodable sketch, signal the failed reconciliation
+        @Test
+        public void buildGetDataResponse_sketchUndecodable() {
+            PayloadHashSketch payloadHashSketch = new PayloadHashSketch(PayloadHashSketch.getNumCellsForDifference(1));
+            for (int i = 0; i < 10 * payloadHashSketch.getNumCells(); i++) {
+                payloadHashSketch.add(new byte[]{(byte) i, (byte) (i >> 8), (byte) (i >> 16)});
+            }
+            GetDataRequest getDataRequest = this.buildGetDataRequest(1, payloadHashSketch);
+
+            AtomicBoolean outPNPTruncated = new AtomicBoolean(false);
+            AtomicBoolean outPSETruncated = new AtomicBoolean(false);
+            Capabilities peerCapabilities = new Capabilities();
+            GetDataResponse getDataResponse = this.testState.mockedStorage.buildGetDataResponse(
+                    getDataRequest, 10, outPNPTruncated, outPSETruncated, peerCapabilities);
+
+            Assert.assertTrue(getDataResponse.isReconciliationFailed());
+            Assert.assertEquals(1, getDataResponse.getRequestNonce());
+            Assert.assertEquals(getDataRequest instanceof GetUpdatedDataRequest, getDataResponse.isGetUpdatedDataResponse());
+            Assert.assertTrue(getDataResponse.getPersistableNetworkPayloadSet().isEmpty());
+            Assert.assertTrue(getDataResponse.getDataSet().isEmpty());
+        }
     }
 
     public static class P2PDataStorageBuildGetDataResponseTestPreliminary extends P2PDataStorageBuildGetDataResponseTestBase {
@@ -470,6 +525,11 @@ public class P2PDataStorageBuildGetDataResponseTest {
         GetDataRequest buildGetDataRequest(int nonce, Set<byte[]> knownKeys) {
             return new PreliminaryGetDataRequest(nonce, knownKeys);
         }
+
+        @Override
+        GetDataRequest buildGetDataRequest(int nonce, PayloadHashSketch payloadHashSketch) {
+            return new PreliminaryGetDataRequest(nonce, new HashSet<>(), payloadHashSketch);
+        }
     }
 
     public static class P2PDataStorageBuildGetDataResponseTestUpdated extends P2PDataStorageBuildGetDataResponseTestBase {
@@ -478,5 +538,10 @@ public class P2PDataStorageBuildGetDataResponseTest {
         GetDataRequest buildGetDataRequest(int nonce, Set<byte[]> knownKeys) {
             return new GetUpdatedDataRequest(new NodeAddress("peer", 10), nonce, knownKeys);
         }
+
+        @Override
+        GetDataRequest buildGetDataRequest(int nonce, PayloadHashSketch payloadHashSketch) {
+            return new GetUpdatedDataRequest(new NodeAddress("peer", 10), nonce, new HashSet<>(), payloadHashSketch);
+        }
     }
 }
@@ -0,0 +1,137 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.storage;
+
+import bisq.network.p2p.storage.mocks.PersistableNetworkPayloadStub;
+import bisq.network.p2p.storage.payload.DateSortedTruncatablePayload;
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
+
+import bisq.common.app.Capabilities;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class P2PDataStorageFilterKnownHashesTest {
+    private static final int MAX_ITEMS = 3;
+
+    static class DateSortedTruncatablePayloadStub extends PersistableNetworkPayloadStub
+            implements DateSortedTruncatablePayload {
+        private final Date date;
+
+        DateSortedTruncatablePayloadStub(byte[] hash, long date) {
+            super(hash);
+            this.date = new Date(date);
+        }
+
+        @Override
+        public Date getDate() {
+            return date;
+        }
+
+        @Override
+        public int maxItems() {
+            return MAX_ITEMS;
+        }
+    }
+
+    private Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> map;
+
+    @Before
+    public void setUp() {
+        map = new LinkedHashMap<>();
+    }
+
+    private PersistableNetworkPayload add(PersistableNetworkPayload payload) {
+        map.put(new P2PDataStorage.ByteArray(payload.getHash()), payload);
+        return payload;
+    }
+
+    private Set<PersistableNetworkPayload> filter(Set<P2PDataStorage.ByteArray> knownHashes,
+                                                  int maxEntries,
+                                                  AtomicBoolean outTruncated) {
+        return P2PDataStorage.filterKnownHashes(map.entrySet(),
+                Function.identity(),
+                knownHashes,
+                new Capabilities(),
+                maxEntries,
+                outTruncated);
+    }
+
+    // TESTCASE: Only the most recent maxItems DateSortedTruncatablePayloads are kept
+    @Test
+    public void filterKnownHashes_keepsMostRecentDateSortedTruncatablePayloads() {
+        PersistableNetworkPayload oldest = add(new DateSortedTruncatablePayloadStub(new byte[]{1}, 1));
+        PersistableNetworkPayload newest = add(new DateSortedTruncatablePayloadStub(new byte[]{2}, 5));
+        PersistableNetworkPayload old = add(new DateSortedTruncatablePayloadStub(new byte[]{3}, 2));
+        PersistableNetworkPayload newer = add(new DateSortedTruncatablePayloadStub(new byte[]{4}, 4));
+        PersistableNetworkPayload middle = add(new DateSortedTruncatablePayloadStub(new byte[]{5}, 3));
+        PersistableNetworkPayload other = add(new PersistableNetworkPayloadStub(new byte[]{6}));
+
+        AtomicBoolean outTruncated = new AtomicBoolean();
+        Set<PersistableNetworkPayload> result = filter(new HashSet<>(), 10, outTruncated);
+
+        Set<PersistableNetworkPayload> expected = new HashSet<>();
+        expected.add(newest);
+        expected.add(newer);
+        expected.add(middle);
+        expected.add(other);
+        Assert.assertEquals(expected, result);
+        Assert.assertFalse(outTruncated.get());
+        Assert.assertFalse(result.contains(oldest));
+        Assert.assertFalse(result.contains(old));
+    }
+
+    // TESTCASE: Known hashes are not considered for the most recent DateSortedTruncatablePayloads
+    @Test
+    public void filterKnownHashes_skipsKnownHashes() {
+        PersistableNetworkPayload known = add(new DateSortedTruncatablePayloadStub(new byte[]{1}, 5));
+        PersistableNetworkPayload unknown = add(new DateSortedTruncatablePayloadStub(new byte[]{2}, 1));
+
+        Set<P2PDataStorage.ByteArray> knownHashes = new HashSet<>();
+        knownHashes.add(new P2PDataStorage.ByteArray(known.getHash()));
+        Set<PersistableNetworkPayload> result = filter(knownHashes, 10, new AtomicBoolean());
+
+        Assert.assertEquals(1, result.size());
+        Assert.assertTrue(result.contains(unknown));
+    }
+
+    // TESTCASE: Non truncatable payloads have priority and the newest DateSortedTruncatablePayloads are dropped first
+    @Test
+    public void filterKnownHashes_truncatesAtMaxEntries() {
+        PersistableNetworkPayload other = add(new PersistableNetworkPayloadStub(new byte[]{1}));
+        PersistableNetworkPayload old = add(new DateSortedTruncatablePayloadStub(new byte[]{2}, 1));
+        add(new DateSortedTruncatablePayloadStub(new byte[]{3}, 2));
+
+        AtomicBoolean outTruncated = new AtomicBoolean();
+        Set<PersistableNetworkPayload> result = filter(new HashSet<>(), 2, outTruncated);
+
+        Assert.assertTrue(outTruncated.get());
+        Assert.assertEquals(2, result.size());
+        Assert.assertTrue(result.contains(other));
+        Assert.assertTrue(result.contains(old));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package bisq.network.p2p.storage;
+
+import bisq.network.p2p.TestUtils;
+import bisq.network.p2p.storage.messages.RefreshOfferMessage;
+import bisq.network.p2p.storage.mocks.ExpirableProtectedStoragePayloadStub;
+import bisq.network.p2p.storage.mocks.PersistableExpirableProtectedStoragePayloadStub;
+import bisq.network.p2p.storage.mocks.PersistableNetworkPayloadStub;
+import bisq.network.p2p.storage.mocks.ProtectedStoragePayloadStub;
+import bisq.network.p2p.storage.payload.ProtectedStorageEntry;
+import bisq.network.p2p.storage.payload.ProtectedStoragePayload;
+
+import bisq.common.app.Version;
+import bisq.common.crypto.CryptoException;
+
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the counters used for getNumPayloadsByClassName are kept in sync with the map at all map changes.
+ */
+public class P2PDataStorageNumPayloadsTest {
+    private TestState testState;
+
+    @Before
+    public void setUp() {
+        this.testState = new TestState();
+
+        // Deep in the bowels of protobuf we grab the messageID from the version module. This is required to hash the
+        // full MailboxStoragePayload so make sure it is initialized.
+        Version.setBaseCryptoNetworkId(1);
+    }
+
+    private void add(ProtectedStoragePayload protectedStoragePayload, KeyPair ownerKeys) throws CryptoException {
+        ProtectedStorageEntry protectedStorageEntry = testState.mockedStorage.getProtectedStorageEntry(protectedStoragePayload, ownerKeys);
+        Assert.assertTrue(testState.mockedStorage.addProtectedStorageEntry(protectedStorageEntry, TestState.getTestNodeAddress(), null));
+    }
+
+    // Counts the entries of the map by scanning it
+    private Map<String, Integer> scanMap() {
+        Map<String, Integer> result = new HashMap<>();
+        testState.mockedStorage.getMap().values().forEach(protectedStorageEntry -> result.merge(
+                protectedStorageEntry.getProtectedStoragePayload().getClass().getSimpleName(), 1, Integer::sum));
+        return result;
+    }
+
+    private void assertCountsMatchMap() {
+        Assert.assertEquals(scanMap(), testState.mockedStorage.getNumPayloadsByClassName(null));
+    }
+
+    @Test
+    public void getNumPayloadsByClassName_matchesMapAfterAllChanges() throws NoSuchAlgorithmException, CryptoException {
+        assertCountsMatchMap();
+
+        // The hash of the stubs is derived from the owner key, so each payload needs its own keys
+        KeyPair ownerKeys = TestUtils.generateKeyPair();
+        ProtectedStoragePayload payload = new ProtectedStoragePayloadStub(ownerKeys.getPublic());
+        add(payload, ownerKeys);
+        KeyPair expiringOwnerKeys = TestUtils.generateKeyPair();
+        add(new ExpirableProtectedStoragePayloadStub(expiringOwnerKeys.getPublic(), 0), expiringOwnerKeys);
+        KeyPair persistableOwnerKeys = TestUtils.generateKeyPair();
+        add(new PersistableExpirableProtectedStoragePayloadStub(persistableOwnerKeys.getPublic()), persistableOwnerKeys);
+        Assert.assertEquals(3, testState.mockedStorage.getMap().size());
+        assertCountsMatchMap();
+
+        // Replace by an entry with a higher sequence number
+        add(payload, ownerKeys);
+        Assert.assertEquals(3, testState.mockedStorage.getMap().size());
+        assertCountsMatchMap();
+
+        // Refresh replaces the entry with an updated one
+        KeyPair refreshedOwnerKeys = TestUtils.generateKeyPair();
+        ProtectedStoragePayload refreshedPayload = new ExpirableProtectedStoragePayloadStub(refreshedOwnerKeys.getPublic());
+        add(refreshedPayload, refreshedOwnerKeys);
+        RefreshOfferMessage refreshOfferMessage = testState.mockedStorage.getRefreshTTLMessage(refreshedPayload, refreshedOwnerKeys);
+        Assert.assertTrue(testState.mockedStorage.refreshTTL(refreshOfferMessage, TestState.getTestNodeAddress()));
+        Assert.assertEquals(4, testState.mockedStorage.getMap().size());
+        assertCountsMatchMap();
+
+        // Remove
+        ProtectedStorageEntry protectedStorageEntry = testState.mockedStorage.getProtectedStorageEntry(payload, ownerKeys);
+        Assert.assertTrue(testState.mockedStorage.remove(protectedStorageEntry, TestState.getTestNodeAddress()));
+        Assert.assertEquals(3, testState.mockedStorage.getMap().size());
+        assertCountsMatchMap();
+
+        // Expire
+        testState.incrementClock();
+        testState.mockedStorage.removeExpiredEntries();
+        Assert.assertEquals(2, testState.mockedStorage.getMap().size());
+        assertCountsMatchMap();
+
+        // Persisted entries are counted after a restart
+        testState.simulateRestart();
+        Assert.assertEquals(1, testState.mockedStorage.getMap().size());
+        assertCountsMatchMap();
+    }
+
+    @Test
+    public void getNumPayloadsByClassName_includesPersistableNetworkPayloads() throws NoSuchAlgorithmException, CryptoException {
+        KeyPair ownerKeys = TestUtils.generateKeyPair();
+        add(new ProtectedStoragePayloadStub(ownerKeys.getPublic()), ownerKeys);
+        Assert.assertTrue(testState.mockedStorage.addPersistableNetworkPayload(new PersistableNetworkPayloadStub(true),
+                TestState.getTestNodeAddress(), false));
+
+        Map<String, Integer> expected = scanMap();
+        expected.put(PersistableNetworkPayloadStub.class.getSimpleName(), 1);
+        Assert.assertEquals(expected, testState.mockedStorage.getNumPayloadsByClassName(null));
+    }
+}
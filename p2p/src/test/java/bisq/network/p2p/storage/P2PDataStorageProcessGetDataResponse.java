@@ -30,10 +30,14 @@ import bisq.network.p2p.storage.payload.ProtectedStoragePayload;
 import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -260,4 +264,32 @@ public class P2PDataStorageProcessGetDataResponse {
         this.testState.verifyProtectedStorageAdd(
                 beforeState, protectedStorageEntry, true, true, false, true);
     }
+
+    // TESTCASE: Listeners supporting batched notifications get all PSEs of a GetDataResponse in one call
+    @Test
+    public void processGetDataResponse_batchedListenerNotifiedOnce() throws NoSuchAlgorithmException {
+        ProtectedStorageEntry protectedStorageEntry1 = getProtectedStorageEntryForAdd();
+        ProtectedStorageEntry protectedStorageEntry2 = getProtectedStorageEntryForAdd();
+        GetDataResponse getDataResponse = buildGetDataResponse(
+                Arrays.asList(protectedStorageEntry1, protectedStorageEntry2), Collections.emptyList());
+
+        List<Collection<ProtectedStorageEntry>> notifications = new ArrayList<>();
+        this.testState.mockedStorage.addHashMapChangedListener(new HashMapChangedListener() {
+            @Override
+            public void onAdded(Collection<ProtectedStorageEntry> protectedStorageEntries) {
+                notifications.add(new ArrayList<>(protectedStorageEntries));
+            }
+
+            @Override
+            public boolean isBatchedNotificationSupported() {
+                return true;
+            }
+        });
+
+        this.testState.mockedStorage.processGetDataResponse(getDataResponse, this.peerNodeAddress);
+
+        Assert.assertEquals(1, notifications.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(protectedStorageEntry1, protectedStorageEntry2)),
+                new HashSet<>(notifications.get(0)));
+    }
 }
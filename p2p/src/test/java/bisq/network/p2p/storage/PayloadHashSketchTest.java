@@ -0,0 +1,88 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PayloadHashSketchTest {
+    private final Random random = new Random(1);
+
+    private byte[] randomKey(int length) {
+        byte[] key = new byte[length];
+        random.nextBytes(key);
+        return key;
+    }
+
+    @Test
+    public void decodeMissingKeys_commonKeysCancelOut() {
+        int numCells = PayloadHashSketch.getNumCellsForDifference(100);
+        PayloadHashSketch requester = new PayloadHashSketch(numCells);
+        PayloadHashSketch responder = new PayloadHashSketch(numCells);
+        for (int i = 0; i < 10_000; i++) {
+            byte[] key = randomKey(i % 2 == 0 ? 32 : 20);
+            requester.add(key);
+            responder.add(key);
+        }
+
+        List<byte[]> onlyAtResponder = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            byte[] key = randomKey(i % 2 == 0 ? 32 : 20);
+            onlyAtResponder.add(key);
+            responder.add(key);
+        }
+        for (int i = 0; i < 30; i++) {
+            requester.add(randomKey(32));
+        }
+
+        Optional<List<byte[]>> missingKeys = responder.subtract(requester).decodeMissingKeys();
+
+        Assert.assertTrue(missingKeys.isPresent());
+        Set<P2PDataStorage.ByteArray> expected = P2PDataStorage.ByteArray.convertBytesListToByteArraySet(onlyAtResponder);
+        Set<P2PDataStorage.ByteArray> actual = P2PDataStorage.ByteArray.convertBytesListToByteArraySet(missingKeys.get());
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void decodeMissingKeys_failsIfDifferenceTooLarge() {
+        int numCells = PayloadHashSketch.getNumCellsForDifference(100);
+        PayloadHashSketch requester = new PayloadHashSketch(numCells);
+        PayloadHashSketch responder = new PayloadHashSketch(numCells);
+        for (int i = 0; i < 10 * numCells; i++) {
+            responder.add(randomKey(32));
+        }
+
+        Assert.assertFalse(responder.subtract(requester).decodeMissingKeys().isPresent());
+    }
+
+    @Test
+    public void protoRoundTrip() {
+        PayloadHashSketch sketch = new PayloadHashSketch(PayloadHashSketch.getNumCellsForDifference(10));
+        for (int i = 0; i < 20; i++) {
+            sketch.add(randomKey(32));
+        }
+
+        Assert.assertEquals(sketch, PayloadHashSketch.fromProto(sketch.toProtoMessage()));
+    }
+}
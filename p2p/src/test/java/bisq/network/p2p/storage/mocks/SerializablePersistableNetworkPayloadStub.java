@@ -0,0 +1,67 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.storage.mocks;
+
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
+
+import bisq.common.Payload;
+import bisq.common.proto.ProtoResolver;
+import bisq.common.proto.persistable.PersistablePayload;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Stub implementation of a PersistableNetworkPayload which supports protobuf, for tests of the storage files. It is
+ * serialized as an AccountAgeWitness with the hash of the stub and PROTO_RESOLVER creates the stub from it again.
+ */
+public class SerializablePersistableNetworkPayloadStub implements PersistableNetworkPayload {
+    public static final ProtoResolver PROTO_RESOLVER = new ProtoResolver() {
+        @Override
+        public Payload fromProto(protobuf.PaymentAccountPayload proto) {
+            throw new UnsupportedOperationException("Stub does not support PaymentAccountPayload");
+        }
+
+        @Override
+        public PersistablePayload fromProto(protobuf.PersistableNetworkPayload proto) {
+            return new SerializablePersistableNetworkPayloadStub(proto.getAccountAgeWitness().getHash().toByteArray());
+        }
+    };
+
+    private final byte[] hash;
+
+    public SerializablePersistableNetworkPayloadStub(byte[] hash) {
+        this.hash = hash;
+    }
+
+    @Override
+    public protobuf.PersistableNetworkPayload toProtoMessage() {
+        return protobuf.PersistableNetworkPayload.newBuilder()
+                .setAccountAgeWitness(protobuf.AccountAgeWitness.newBuilder().setHash(ByteString.copyFrom(hash)))
+                .build();
+    }
+
+    @Override
+    public byte[] getHash() {
+        return hash;
+    }
+
+    @Override
+    public boolean verifyHashSize() {
+        return true;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.storage.persistence;
+
+import bisq.network.p2p.storage.P2PDataStorage;
+import bisq.network.p2p.storage.mocks.SerializablePersistableNetworkPayloadStub;
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
+
+import bisq.common.file.FileUtil;
+import bisq.common.proto.ProtoResolver;
+
+import java.nio.file.Files;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AppendOnlyPayloadLogTest {
+    private static final ProtoResolver PROTO_RESOLVER = SerializablePersistableNetworkPayloadStub.PROTO_RESOLVER;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("AppendOnlyPayloadLogTest").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtil.deleteDirectory(dir);
+    }
+
+    private static Set<P2PDataStorage.ByteArray> toHashes(List<PersistableNetworkPayload> payloads) {
+        return payloads.stream()
+                .map(payload -> new P2PDataStorage.ByteArray(payload.getHash()))
+                .collect(Collectors.toSet());
+    }
+
+    private static List<PersistableNetworkPayload> createPayloads(int from, int to) {
+        List<PersistableNetworkPayload> payloads = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            payloads.add(new SerializablePersistableNetworkPayloadStub(new byte[]{(byte) i, 1, 2, 3}));
+        }
+        return payloads;
+    }
+
+    private int getNumSegmentFiles() {
+        return Objects.requireNonNull(dir.listFiles()).length;
+    }
+
+    @Test
+    public void read_returnsAppendedPayloads() {
+        AppendOnlyPayloadLog payloadLog = new AppendOnlyPayloadLog(dir, PROTO_RESOLVER, 50, 100);
+        Assert.assertTrue(payloadLog.read().isEmpty());
+        List<PersistableNetworkPayload> payloads = createPayloads(0, 10);
+        payloads.forEach(payloadLog::append);
+
+        Assert.assertTrue(getNumSegmentFiles() > 1);
+        Assert.assertEquals(toHashes(payloads), toHashes(new AppendOnlyPayloadLog(dir, PROTO_RESOLVER).read()));
+    }
+
+    @Test
+    public void read_dropsCorruptedRecords() throws IOException {
+        AppendOnlyPayloadLog payloadLog = new AppendOnlyPayloadLog(dir, PROTO_RESOLVER);
+        payloadLog.read();
+        List<PersistableNetworkPayload> payloads = createPayloads(0, 2);
+        payloads.forEach(payloadLog::append);
+
+        // Simulate an interrupted write
+        try (FileOutputStream out = new FileOutputStream(new File(dir, "segment_0"), true)) {
+            out.write(new byte[]{0, 0, 0, 20, 1, 2, 3});
+        }
+
+        payloadLog = new AppendOnlyPayloadLog(dir, PROTO_RESOLVER);
+        Assert.assertEquals(toHashes(payloads), toHashes(payloadLog.read()));
+
+        List<PersistableNetworkPayload> morePayloads = createPayloads(2, 4);
+        morePayloads.forEach(payloadLog::append);
+        payloads.addAll(morePayloads);
+        Assert.assertEquals(toHashes(payloads), toHashes(new AppendOnlyPayloadLog(dir, PROTO_RESOLVER).read()));
+    }
+
+    @Test
+    public void completeCheckpoint_deletesClosedSegmentsIfStoreFileGotWritten() {
+        AppendOnlyPayloadLog payloadLog = new AppendOnlyPayloadLog(dir, PROTO_RESOLVER, 1, 3);
+        payloadLog.read();
+        createPayloads(0, 5).forEach(payloadLog::append);
+        Assert.assertTrue(payloadLog.isCheckpointRequired());
+
+        payloadLog.startCheckpoint();
+        Assert.assertFalse(payloadLog.isCheckpointRequired());
+        // Appended while the store file gets written, so it is not contained in the store file
+        List<PersistableNetworkPayload> appendedDuringCheckpoint = createPayloads(5, 6);
+        appendedDuringCheckpoint.forEach(payloadLog::append);
+
+        payloadLog.completeCheckpoint(true);
+        Assert.assertEquals(1, getNumSegmentFiles());
+        Assert.assertFalse(payloadLog.isCheckpointRequired());
+        Assert.assertEquals(toHashes(appendedDuringCheckpoint), toHashes(new AppendOnlyPayloadLog(dir, PROTO_RESOLVER).read()));
+    }
+
+    @Test
+    public void completeCheckpoint_keepsSegmentsIfStoreFileDidNotGetWritten() {
+        AppendOnlyPayloadLog payloadLog = new AppendOnlyPayloadLog(dir, PROTO_RESOLVER, 1, 3);
+        payloadLog.read();
+        List<PersistableNetworkPayload> payloads = createPayloads(0, 5);
+        payloads.forEach(payloadLog::append);
+
+        payloadLog.startCheckpoint();
+        payloadLog.completeCheckpoint(false);
+        Assert.assertEquals(5, getNumSegmentFiles());
+        Assert.assertTrue(payloadLog.isCheckpointRequired());
+        Assert.assertEquals(toHashes(payloads), toHashes(new AppendOnlyPayloadLog(dir, PROTO_RESOLVER).read()));
+    }
+}
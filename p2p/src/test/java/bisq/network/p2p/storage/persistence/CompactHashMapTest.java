@@ -0,0 +1,109 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.storage.persistence;
+
+import java.nio.ByteBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompactHashMapTest {
+    private final Random random = new Random(1);
+
+    private List<byte[]> createHashes(int numHashes) {
+        List<byte[]> hashes = new ArrayList<>();
+        for (int i = 0; i < numHashes; i++) {
+            byte[] hash = new byte[CompactHashMap.HASH_LENGTH];
+            random.nextBytes(hash);
+            hashes.add(hash);
+        }
+        return hashes;
+    }
+
+    private static CompactHashMap createMap(List<byte[]> hashes) {
+        CompactHashMap map = new CompactHashMap(2);
+        for (int i = 0; i < hashes.size(); i++) {
+            int slot = map.putKey(hashes.get(i));
+            map.setValue(slot, 0, i);
+            map.setValue(slot, 1, -i);
+        }
+        return map;
+    }
+
+    private static void assertContainsAll(CompactHashMap map, List<byte[]> hashes) {
+        for (int i = 0; i < hashes.size(); i++) {
+            int slot = map.indexOf(hashes.get(i));
+            Assert.assertTrue(slot >= 0);
+            Assert.assertArrayEquals(hashes.get(i), map.getKey(slot));
+            Assert.assertEquals(i, map.getValue(slot, 0));
+            Assert.assertEquals(-i, map.getValue(slot, 1));
+        }
+    }
+
+    @Test
+    public void putKey_growsAndKeepsEntries() {
+        List<byte[]> hashes = createHashes(10000);
+        CompactHashMap map = createMap(hashes);
+
+        Assert.assertEquals(hashes.size(), map.size());
+        assertContainsAll(map, hashes);
+        Assert.assertFalse(map.containsKey(createHashes(1).get(0)));
+
+        // Adding an existing key does not change the size or the values
+        int slot = map.putKey(hashes.get(0).clone());
+        Assert.assertEquals(hashes.size(), map.size());
+        Assert.assertEquals(0, map.getValue(slot, 0));
+    }
+
+    @Test
+    public void toPacked_roundTrip() {
+        List<byte[]> hashes = createHashes(1000);
+        CompactHashMap map = createMap(hashes);
+        byte[] packed = map.toPacked();
+
+        Assert.assertEquals(hashes.size() * (CompactHashMap.HASH_LENGTH + 16), packed.length);
+        CompactHashMap restored = CompactHashMap.fromPacked(ByteBuffer.wrap(packed), 2);
+        Assert.assertEquals(hashes.size(), restored.size());
+        assertContainsAll(restored, hashes);
+    }
+
+    @Test
+    public void removeIf_removesMatchingEntries() {
+        List<byte[]> hashes = createHashes(1000);
+        CompactHashMap map = createMap(hashes);
+        CompactHashMap copy = map.copy();
+
+        map.removeIf(slot -> map.getValue(slot, 0) % 2 == 0);
+
+        Assert.assertEquals(hashes.size() / 2, map.size());
+        for (int i = 0; i < hashes.size(); i++) {
+            Assert.assertEquals(i % 2 != 0, map.containsKey(hashes.get(i)));
+        }
+        // The copy is not affected
+        assertContainsAll(copy, hashes);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void indexOf_rejectsOtherHashLengths() {
+        new CompactHashMap(1).indexOf(new byte[20]);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bisq.network.p2p.storage.persistence;
+
+import bisq.network.p2p.storage.P2PDataStorage;
+import bisq.network.p2p.storage.mocks.SerializablePersistableNetworkPayloadStub;
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
+
+import bisq.common.file.FileUtil;
+import bisq.common.proto.ProtoResolver;
+
+import java.nio.file.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedPayloadStoreTest {
+    private static final ProtoResolver PROTO_RESOLVER = SerializablePersistableNetworkPayloadStub.PROTO_RESOLVER;
+    private static final long SOURCE_LENGTH = 1234;
+
+    private File dir;
+    private File file;
+    private final Random random = new Random(1);
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("MappedPayloadStoreTest").toFile();
+        file = new File(dir, "store.mapped");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtil.deleteDirectory(dir);
+    }
+
+    private List<PersistableNetworkPayload> createPayloads(int numPayloads) {
+        List<PersistableNetworkPayload> payloads = new ArrayList<>();
+        for (int i = 0; i < numPayloads; i++) {
+            byte[] hash = new byte[i % 2 == 0 ? 32 : 20];
+            random.nextBytes(hash);
+            payloads.add(new SerializablePersistableNetworkPayloadStub(hash));
+        }
+        return payloads;
+    }
+
+    @Test
+    public void open_findsAllWrittenPayloads() throws IOException {
+        List<PersistableNetworkPayload> payloads = createPayloads(1000);
+        MappedPayloadStore.write(file, payloads, SOURCE_LENGTH);
+        MappedPayloadStore store = MappedPayloadStore.open(file, SOURCE_LENGTH, PROTO_RESOLVER);
+
+        Assert.assertNotNull(store);
+        Assert.assertEquals(payloads.size(), store.size());
+        Set<P2PDataStorage.ByteArray> expectedKeys = new HashSet<>();
+        for (PersistableNetworkPayload payload : payloads) {
+            P2PDataStorage.ByteArray hash = new P2PDataStorage.ByteArray(payload.getHash());
+            expectedKeys.add(hash);
+            Assert.assertTrue(store.containsKey(hash));
+            Assert.assertArrayEquals(payload.getHash(), store.get(hash).getHash());
+        }
+        Assert.assertEquals(expectedKeys, new HashSet<>(store.keySet()));
+
+        P2PDataStorage.ByteArray unknownHash = new P2PDataStorage.ByteArray(createPayloads(1).get(0).getHash());
+        Assert.assertFalse(store.containsKey(unknownHash));
+        Assert.assertNull(store.get(unknownHash));
+    }
+
+    @Test
+    public void open_returnsNullIfSourceChanged() throws IOException {
+        MappedPayloadStore.write(file, createPayloads(10), SOURCE_LENGTH);
+
+        Assert.assertNull(MappedPayloadStore.open(file, SOURCE_LENGTH + 1, PROTO_RESOLVER));
+        Assert.assertNull(MappedPayloadStore.open(new File(dir, "missing"), SOURCE_LENGTH, PROTO_RESOLVER));
+    }
+
+    @Test
+    public void entrySet_deserializesPayloads() throws IOException {
+        List<PersistableNetworkPayload> payloads = createPayloads(10);
+        MappedPayloadStore.write(file, payloads, SOURCE_LENGTH);
+        MappedPayloadStore store = MappedPayloadStore.open(file, SOURCE_LENGTH, PROTO_RESOLVER);
+
+        Assert.assertNotNull(store);
+        store.forEach((hash, payload) -> Assert.assertArrayEquals(hash.bytes, payload.getHash()));
+        Assert.assertEquals(payloads.size(), store.entrySet().size());
+    }
+
+    @Test
+    public void get_deletesFileIfPayloadCannotBeDeserialized() throws IOException {
+        List<PersistableNetworkPayload> payloads = createPayloads(10);
+        MappedPayloadStore.write(file, payloads, SOURCE_LENGTH);
+
+        // The payloads are stored after the index, so we overwrite all of them with invalid protobuf data
+        int payloadsSize = payloads.stream()
+                .mapToInt(payload -> payload.toProtoMessage().getSerializedSize())
+                .sum();
+        byte[] invalidData = new byte[payloadsSize];
+        Arrays.fill(invalidData, (byte) 0xff);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(file.length() - payloadsSize);
+            randomAccessFile.write(invalidData);
+        }
+
+        MappedPayloadStore store = MappedPayloadStore.open(file, SOURCE_LENGTH, PROTO_RESOLVER);
+        Assert.assertNotNull(store);
+        AtomicInteger numCorruptionHandlerCalls = new AtomicInteger();
+        store.setCorruptionHandler(numCorruptionHandlerCalls::incrementAndGet);
+
+        P2PDataStorage.ByteArray hash = new P2PDataStorage.ByteArray(payloads.get(0).getHash());
+        Assert.assertTrue(store.containsKey(hash));
+        Assert.assertNull(store.get(hash));
+        // containsKey is consistent with get once the corruption was detected
+        Assert.assertFalse(store.containsKey(hash));
+        Assert.assertNull(store.get(new P2PDataStorage.ByteArray(payloads.get(1).getHash())));
+
+        Assert.assertEquals(1, numCorruptionHandlerCalls.get());
+        Assert.assertFalse(file.exists());
+    }
+}
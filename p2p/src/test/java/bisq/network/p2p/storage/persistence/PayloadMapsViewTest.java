@@ -0,0 +1,135 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package bisq.network.p2p.storage.persistence;
+
+import bisq.network.p2p.storage.P2PDataStorage;
+import bisq.network.p2p.storage.mocks.SerializablePersistableNetworkPayloadStub;
+import bisq.network.p2p.storage.payload.PersistableNetworkPayload;
+
+import bisq.common.Payload;
+import bisq.common.file.FileUtil;
+import bisq.common.proto.ProtoResolver;
+import bisq.common.proto.persistable.PersistablePayload;
+
+import java.nio.file.Files;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PayloadMapsViewTest {
+    private static final long SOURCE_LENGTH = 1234;
+
+    private final AtomicInteger numDeserializedPayloads = new AtomicInteger();
+    private final ProtoResolver countingProtoResolver = new ProtoResolver() {
+        @Override
+        public Payload fromProto(protobuf.PaymentAccountPayload proto) {
+            return SerializablePersistableNetworkPayloadStub.PROTO_RESOLVER.fromProto(proto);
+        }
+
+        @Override
+        public PersistablePayload fromProto(protobuf.PersistableNetworkPayload proto) {
+            numDeserializedPayloads.incrementAndGet();
+            return SerializablePersistableNetworkPayloadStub.PROTO_RESOLVER.fromProto(proto);
+        }
+    };
+
+    private File dir;
+    private MappedPayloadStore mappedStore;
+    private Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> map;
+    private PayloadMapsView view;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("PayloadMapsViewTest").toFile();
+        File file = new File(dir, "store.mapped");
+        MappedPayloadStore.write(file, Arrays.asList(createPayload(1), createPayload(2)), SOURCE_LENGTH);
+        mappedStore = MappedPayloadStore.open(file, SOURCE_LENGTH, countingProtoResolver);
+        Assert.assertNotNull(mappedStore);
+
+        map = new HashMap<>();
+        PersistableNetworkPayload payload = createPayload(3);
+        map.put(new P2PDataStorage.ByteArray(payload.getHash()), payload);
+
+        view = new PayloadMapsView(Arrays.asList(map, mappedStore));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtil.deleteDirectory(dir);
+    }
+
+    private static PersistableNetworkPayload createPayload(int id) {
+        byte[] hash = new byte[20];
+        Arrays.fill(hash, (byte) id);
+        return new SerializablePersistableNetworkPayloadStub(hash);
+    }
+
+    private static P2PDataStorage.ByteArray getHash(int id) {
+        return new P2PDataStorage.ByteArray(createPayload(id).getHash());
+    }
+
+    @Test
+    public void lookups_useAllMaps() {
+        Assert.assertEquals(3, view.size());
+        Assert.assertFalse(view.isEmpty());
+        for (int id = 1; id <= 3; id++) {
+            Assert.assertTrue(view.containsKey(getHash(id)));
+            Assert.assertEquals(getHash(id), new P2PDataStorage.ByteArray(view.get(getHash(id)).getHash()));
+        }
+        Assert.assertFalse(view.containsKey(getHash(4)));
+        Assert.assertNull(view.get(getHash(4)));
+    }
+
+    @Test
+    public void entrySet_deserializesOnlyAccessedValues() {
+        Set<P2PDataStorage.ByteArray> keys = new HashSet<>();
+        view.entrySet().forEach(entry -> keys.add(entry.getKey()));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(getHash(1), getHash(2), getHash(3))), keys);
+        Assert.assertEquals(0, numDeserializedPayloads.get());
+
+        view.forEach((hash, payload) -> Assert.assertEquals(hash, new P2PDataStorage.ByteArray(payload.getHash())));
+        Assert.assertEquals(2, numDeserializedPayloads.get());
+    }
+
+    @Test
+    public void view_reflectsChangesOfMaps() {
+        PersistableNetworkPayload payload = createPayload(4);
+        map.put(new P2PDataStorage.ByteArray(payload.getHash()), payload);
+
+        Assert.assertEquals(4, view.size());
+        Assert.assertTrue(view.containsKey(getHash(4)));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void entrySet_isReadOnly() {
+        view.entrySet().iterator().remove();
+    }
+}